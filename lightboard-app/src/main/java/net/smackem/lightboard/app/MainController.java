@@ -5,6 +5,7 @@ import javafx.beans.Observable;
 import javafx.beans.binding.Bindings;
 import javafx.beans.property.DoubleProperty;
 import javafx.beans.property.SimpleDoubleProperty;
+import javafx.concurrent.Task;
 import javafx.event.ActionEvent;
 import javafx.fxml.FXML;
 import javafx.scene.canvas.Canvas;
@@ -16,30 +17,57 @@ import javafx.scene.shape.StrokeLineCap;
 import javafx.scene.shape.StrokeLineJoin;
 import javafx.stage.FileChooser;
 import javafx.stage.WindowEvent;
+import net.smackem.lightboard.io.Board;
+import net.smackem.lightboard.io.HostConfig;
 import net.smackem.lightboard.io.MessageExchangeHost;
-import net.smackem.lightboard.io.SvgWriter;
-import net.smackem.lightboard.messaging.*;
+import net.smackem.lightboard.messaging.IngestionQueue;
+import net.smackem.lightboard.metrics.Histogram;
+import net.smackem.lightboard.metrics.MetricsRegistry;
 import net.smackem.lightboard.model.Document;
+import net.smackem.lightboard.model.Drawing;
+import net.smackem.lightboard.model.DrawingSnapshot;
 import net.smackem.lightboard.model.Figure;
+import net.smackem.lightboard.model.PointSequence;
 import net.smackem.lightboard.model.Rgba;
-import org.locationtech.jts.geom.Coordinate;
+import net.smackem.lightboard.model.SimplificationMode;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.*;
-import java.util.concurrent.Flow;
+import java.net.InetAddress;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
 
 public class MainController {
     private static final Logger log = LoggerFactory.getLogger(MainController.class);
-    private final Document document = new Document();
+    private static final Path DATA_DIRECTORY = Path.of(System.getProperty("lightboard.data",
+            Path.of(System.getProperty("user.home"), ".lightboard").toString()));
+    private static final long HEAP_BUDGET = Long.getLong("lightboard.heapBudget", 256L << 20);
+    private static final String BIND_ADDRESS = System.getProperty("lightboard.bind");
+    private static final Histogram fullRenderDuration = MetricsRegistry.defaultRegistry().histogram(
+            "lightboard_render_seconds", "Time to render the drawing", Map.of("kind", "full"));
+    private static final Histogram incrementalRenderDuration = MetricsRegistry.defaultRegistry().histogram(
+            "lightboard_render_seconds", "Time to render the drawing", Map.of("kind", "incremental"));
+    private final Board board;
+    private final Document document;
     private final MessageExchangeHost mex;
+    private final RenderRequestSubscriber messageSubscriber =
+            new RenderRequestSubscriber(Platform::runLater, this::handleRenderRequest);
     private final DoubleProperty worldWidth = new SimpleDoubleProperty();
     private final DoubleProperty worldHeight = new SimpleDoubleProperty();
-    private final DoubleProperty simplificationTolerance = new SimpleDoubleProperty(0.5);
+    private Task<Void> exportTask;
+    private Drawing renderedDrawing;
+    private int renderedFigureCount;
+    private Figure lastRenderedFigure;
+    private int renderedStrokeIndex = -1;
+    private int renderedStrokePointCount;
 
     @FXML
     private Canvas canvas;
     @FXML
+    private Canvas strokeCanvas;
+    @FXML
     private CheckBox fitToWindowCheck;
     @FXML
     private ToolBar topBar;
@@ -47,10 +75,31 @@ public class MainController {
     private Pane root;
     @FXML
     private Slider simplificationSlider;
+    @FXML
+    private CheckBox streamingSimplificationCheck;
+    @FXML
+    private Button exportButton;
+    @FXML
+    private ProgressBar exportProgress;
 
+    /**
+     * The document is maintained by the model thread of the default board, the controller only renders
+     * the document whenever messages have been applied.
+     */
     public MainController() throws IOException {
-        this.mex = new MessageExchangeHost(() -> this.document);
-        this.mex.inboundMessagePublisher().subscribe(new InboundMessageSubscriber());
+        this.mex = new MessageExchangeHost(HostConfig.defaults()
+                .withBindAddress(BIND_ADDRESS != null ? InetAddress.getByName(BIND_ADDRESS) : null)
+                .withOscPort(Integer.getInteger("lightboard.oscPort", HostConfig.DEFAULT_OSC_PORT))
+                .withHttpPort(Integer.getInteger("lightboard.httpPort", HostConfig.DEFAULT_HTTP_PORT))
+                .withOscReceiveThreads(Integer.getInteger("lightboard.oscThreads",
+                        HostConfig.defaults().oscReceiveThreads()))
+                .withOverflowPolicy(IngestionQueue.OverflowPolicy.COALESCE_POINTS)
+                .withJournalDirectory(DATA_DIRECTORY.resolve("boards"))
+                .withSpillDirectory(DATA_DIRECTORY.resolve("spill"))
+                .withHeapBudget(HEAP_BUDGET));
+        this.board = this.mex.boards().defaultBoard();
+        this.document = this.board.document();
+        this.board.appliedMessagePublisher().subscribe(this.messageSubscriber);
     }
 
     @FXML
@@ -63,17 +112,29 @@ public class MainController {
         this.canvas.heightProperty().bind(Bindings.when(fitToWindowCheck.selectedProperty())
                 .then(this.root.heightProperty().subtract(topBar.getHeight()))
                 .otherwise(this.worldHeight));
+        this.strokeCanvas.widthProperty().bind(this.canvas.widthProperty());
+        this.strokeCanvas.heightProperty().bind(this.canvas.heightProperty());
         this.canvas.widthProperty().addListener(this::onCanvasResize);
         this.canvas.heightProperty().addListener(this::onCanvasResize);
+        this.worldWidth.set(this.document.width());
+        this.worldHeight.set(this.document.height());
         this.simplificationSlider.valueProperty().addListener((prop, old, v) -> {
             if (this.simplificationSlider.isValueChanging() == false) {
                 log.info("simplification value: {}", v);
-                this.simplificationTolerance.set(v.doubleValue());
+                this.board.applier().setSimplificationTolerance(v.doubleValue());
             }
         });
+        this.streamingSimplificationCheck.selectedProperty().addListener((prop, old, v) -> updateSimplificationMode());
+        updateSimplificationMode();
         render();
     }
 
+    private void updateSimplificationMode() {
+        this.board.applier().setSimplificationMode(this.streamingSimplificationCheck.isSelected()
+                ? SimplificationMode.STREAMING
+                : SimplificationMode.END_OF_STROKE);
+    }
+
     private void onCanvasResize(Observable observable) {
         log.info("world size: {}x{}, canvas size: {}x{}",
                 this.worldWidth.get(), this.worldHeight.get(),
@@ -81,54 +142,149 @@ public class MainController {
         render();
     }
 
+    /**
+     * Redraws the finished figures onto {@link #canvas} and the stroke in progress onto {@link #strokeCanvas}.
+     */
     private void render() {
+        final long startNanos = System.nanoTime();
+        final Drawing drawing = this.document.drawing();
+        final DrawingSnapshot snapshot = drawing.snapshot();
+        final List<Figure> figures = snapshot.figures();
+        final int finishedFigureCount = finishedFigureCount(snapshot);
         final GraphicsContext gc = this.canvas.getGraphicsContext2D();
-        final double worldWidth = this.worldWidth.get();
-        final double worldHeight =this.worldHeight.get();
         gc.save();
+        applyWorldTransform(gc);
+        gc.setFill(Color.WHITE);
+        gc.fillRect(0, 0, this.worldWidth.get(), this.worldHeight.get());
+        for (int i = 0; i < finishedFigureCount; i++) {
+            renderFigure(gc, figures.get(i), 0);
+        }
+        gc.restore();
+        this.renderedDrawing = drawing;
+        this.renderedFigureCount = finishedFigureCount;
+        this.lastRenderedFigure = finishedFigureCount > 0 ? figures.get(finishedFigureCount - 1) : null;
+        renderStroke(snapshot, true);
+        fullRenderDuration.recordSince(startNanos);
+    }
+
+    /**
+     * Renders the figures finished since the last rendering and the progress of the current stroke or,
+     * if figures have been modified or removed meanwhile, redraws everything.
+     */
+    private void renderIncrementally() {
+        final long startNanos = System.nanoTime();
+        final Drawing drawing = this.document.drawing();
+        final DrawingSnapshot snapshot = drawing.snapshot();
+        final List<Figure> figures = snapshot.figures();
+        final int finishedFigureCount = finishedFigureCount(snapshot);
+        if (drawing != this.renderedDrawing
+                || finishedFigureCount < this.renderedFigureCount
+                || this.renderedFigureCount > 0 && figures.get(this.renderedFigureCount - 1) != this.lastRenderedFigure) {
+            render();
+            return;
+        }
+        if (finishedFigureCount > this.renderedFigureCount) {
+            final GraphicsContext gc = this.canvas.getGraphicsContext2D();
+            gc.save();
+            applyWorldTransform(gc);
+            for (int i = this.renderedFigureCount; i < finishedFigureCount; i++) {
+                renderFigure(gc, figures.get(i), 0);
+            }
+            gc.restore();
+            this.renderedFigureCount = finishedFigureCount;
+            this.lastRenderedFigure = figures.get(finishedFigureCount - 1);
+        }
+        renderStroke(snapshot, false);
+        incrementalRenderDuration.recordSince(startNanos);
+    }
+
+    private void renderStroke(DrawingSnapshot snapshot, boolean clear) {
+        final GraphicsContext gc = this.strokeCanvas.getGraphicsContext2D();
+        final Figure figure = snapshot.isFigureInProgress() ? snapshot.currentFigure() : null;
+        final int strokeIndex = figure != null ? snapshot.figures().size() - 1 : -1;
+        if (clear
+                || strokeIndex != this.renderedStrokeIndex
+                || figure != null && figure.points().size() < this.renderedStrokePointCount) {
+            gc.clearRect(0, 0, this.strokeCanvas.getWidth(), this.strokeCanvas.getHeight());
+            this.renderedStrokeIndex = strokeIndex;
+            this.renderedStrokePointCount = 0;
+        }
+        if (figure == null) {
+            return;
+        }
+        gc.save();
+        applyWorldTransform(gc);
+        renderFigure(gc, figure, this.renderedStrokePointCount);
+        gc.restore();
+        this.renderedStrokePointCount = figure.points().size();
+    }
+
+    private static int finishedFigureCount(DrawingSnapshot snapshot) {
+        final int figureCount = snapshot.figures().size();
+        return snapshot.isFigureInProgress() ? figureCount - 1 : figureCount;
+    }
+
+    private void applyWorldTransform(GraphicsContext gc) {
         if (this.fitToWindowCheck.isSelected()) {
-            final double scaleX = this.canvas.getWidth() / worldWidth;
-            final double scaleY = this.canvas.getHeight() / worldHeight;
+            final double scaleX = this.canvas.getWidth() / this.worldWidth.get();
+            final double scaleY = this.canvas.getHeight() / this.worldHeight.get();
             gc.scale(scaleX, scaleY);
         }
         gc.setLineCap(StrokeLineCap.ROUND);
         gc.setLineJoin(StrokeLineJoin.ROUND);
-        gc.setFill(Color.WHITE);
-        gc.fillRect(0, 0, worldWidth, worldHeight);
-        for (final Figure figure : this.document.drawing().figures()) {
-            Coordinate prevPt = null;
-            final Rgba rgba = figure.color();
-            gc.setStroke(Color.rgb(rgba.r(), rgba.g(), rgba.b(), rgba.a() / 255.0));
-            gc.setLineWidth(figure.strokeWidth());
-            for (final Coordinate point : figure.points()) {
-                if (prevPt != null) {
-                    gc.strokeLine(prevPt.getX(), prevPt.getY(), point.getX(), point.getY());
-                }
-                prevPt = point;
-            }
+    }
+
+    private static void renderFigure(GraphicsContext gc, Figure figure, int startIndex) {
+        final Rgba rgba = figure.color();
+        gc.setStroke(Color.rgb(rgba.r(), rgba.g(), rgba.b(), rgba.a() / 255.0));
+        gc.setLineWidth(figure.strokeWidth());
+        final PointSequence points = figure.points();
+        for (int i = Math.max(startIndex, 1); i < points.size(); i++) {
+            gc.strokeLine(points.x(i - 1), points.y(i - 1), points.x(i), points.y(i));
         }
-        gc.restore();
     }
 
     @FXML
     private void onExportSvg(ActionEvent ignored) {
+        if (this.exportTask != null) {
+            this.exportTask.cancel();
+            return;
+        }
         final FileChooser dialog = new FileChooser();
         dialog.setInitialFileName("LightBoard.svg");
         final File file = dialog.showSaveDialog(root.getScene().getWindow());
         if (file == null) {
             return;
         }
-        final SvgWriter writer = new SvgWriter();
-        try (final FileWriter fileWriter = new FileWriter(file)) {
-            writer.write(this.document, fileWriter);
-        } catch (IOException e) {
+        final Task<Void> task = new SvgExportTask(this.document, file.toPath());
+        task.setOnFailed(event -> {
+            onExportFinished();
             new Alert(Alert.AlertType.ERROR,
-                    "Error saving file: " + e.getMessage(),
+                    "Error saving file: " + task.getException().getMessage(),
                     ButtonType.OK).showAndWait();
-        }
+        });
+        task.setOnSucceeded(event -> onExportFinished());
+        task.setOnCancelled(event -> onExportFinished());
+        this.exportTask = task;
+        this.exportProgress.progressProperty().bind(task.progressProperty());
+        this.exportProgress.setVisible(true);
+        this.exportButton.setText("Cancel Export");
+        final Thread thread = new Thread(task, "svg-export");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private void onExportFinished() {
+        this.exportTask = null;
+        this.exportProgress.progressProperty().unbind();
+        this.exportProgress.setVisible(false);
+        this.exportButton.setText("Export SVG...");
     }
 
     private void onWindowClosed(WindowEvent windowEvent) {
+        log.info("{} messages received, rendered {} times",
+                this.messageSubscriber.messageCount(),
+                this.messageSubscriber.renderCount());
         try {
             this.mex.close();
         } catch (Exception e) {
@@ -137,68 +293,20 @@ public class MainController {
         }
     }
 
-    private void handleMessage(Message message) {
-        if (message instanceof InitSizeMessage initSize) {
-            this.document.setSize(initSize.width(), initSize.height());
-            if (this.document.drawing().isBlank() == false) {
-                this.document.insertNewDrawing();
-            }
-            this.worldWidth.set(initSize.width());
-            this.worldHeight.set(initSize.height());
-            render();
-            return;
-        }
-        if (message instanceof FigureBeginMessage figureBegin) {
-            this.document.drawing().beginFigure(figureBegin.point(), figureBegin.color(), figureBegin.strokeWidth());
-            return;
-        }
-        if (message instanceof FigurePointMessage figurePoint) {
-            this.document.drawing().addPoint(figurePoint.point());
-            render();
-            return;
+    /**
+     * Renders the document once for all messages applied since the last rendering. Strokes are rendered
+     * incrementally, all other changes cause the drawing to be redrawn.
+     */
+    private void handleRenderRequest(boolean fullRender) {
+        if (this.worldWidth.get() != this.document.width() || this.worldHeight.get() != this.document.height()) {
+            this.worldWidth.set(this.document.width());
+            this.worldHeight.set(this.document.height());
+            fullRender = true;
         }
-        if (message instanceof FigureEndMessage figureEnd) {
-            this.document.drawing().endFigure(figureEnd.point(), this.simplificationTolerance.get());
+        if (fullRender) {
             render();
-            return;
-        }
-        if (message instanceof FigureRemoveMessage figureRemove) {
-            this.document.drawing().removeFigure(figureRemove.figureIndex());
-            render();
-            return;
-        }
-        if (message instanceof RedrawMessage) {
-            render();
-            return;
-        }
-        throw new IllegalArgumentException("unsupported message type " + message.getClass());
-    }
-
-    private class InboundMessageSubscriber implements Flow.Subscriber<Message> {
-        private Flow.Subscription subscription;
-
-        @Override
-        public void onSubscribe(Flow.Subscription subscription) {
-            this.subscription = subscription;
-            subscription.request(1);
-        }
-
-        @Override
-        public void onNext(Message item) {
-            Platform.runLater(() -> {
-                handleMessage(item);
-                subscription.request(1);
-            });
-        }
-
-        @Override
-        public void onError(Throwable throwable) {
-            log.error("error consuming message", throwable);
-        }
-
-        @Override
-        public void onComplete() {
-            log.info("message stream complete");
+        } else {
+            renderIncrementally();
         }
     }
 }
@@ -0,0 +1,102 @@
+package net.smackem.lightboard.app;
+
+import net.smackem.lightboard.messaging.FigureBeginMessage;
+import net.smackem.lightboard.messaging.FigureEndMessage;
+import net.smackem.lightboard.messaging.FigurePointMessage;
+import net.smackem.lightboard.messaging.Message;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Objects;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+
+/**
+ * Turns the applied messages of a board into render requests. The view renders the document rather than
+ * the messages, so a message only marks the view dirty, and a single render is scheduled for all messages
+ * that arrive until it runs. Thus a view that falls behind neither holds back the model thread nor
+ * accumulates messages.
+ */
+final class RenderRequestSubscriber implements Flow.Subscriber<Message> {
+    private static final Logger log = LoggerFactory.getLogger(RenderRequestSubscriber.class);
+
+    private final Executor executor;
+    private final Renderer renderer;
+    private final Object monitor = new Object();
+    private boolean renderPending;
+    private boolean fullRender;
+    private long messageCount;
+    private long renderCount;
+
+    @FunctionalInterface
+    interface Renderer {
+        /**
+         * @param fullRender {@code true} if other messages than strokes have been applied since the last
+         *      rendering, so that the drawing must be redrawn, otherwise it may be rendered incrementally.
+         */
+        void render(boolean fullRender);
+    }
+
+    /**
+     * @param executor executes the renderer, e.g. on the UI thread.
+     */
+    RenderRequestSubscriber(Executor executor, Renderer renderer) {
+        this.executor = Objects.requireNonNull(executor);
+        this.renderer = Objects.requireNonNull(renderer);
+    }
+
+    public long messageCount() {
+        synchronized (this.monitor) {
+            return this.messageCount;
+        }
+    }
+
+    public long renderCount() {
+        synchronized (this.monitor) {
+            return this.renderCount;
+        }
+    }
+
+    @Override
+    public void onSubscribe(Flow.Subscription subscription) {
+        // messages are never buffered, so there is no need to bound the demand
+        subscription.request(Long.MAX_VALUE);
+    }
+
+    @Override
+    public void onNext(Message message) {
+        final boolean stroke = message instanceof FigureBeginMessage
+                || message instanceof FigurePointMessage
+                || message instanceof FigureEndMessage;
+        synchronized (this.monitor) {
+            this.messageCount++;
+            this.fullRender |= stroke == false;
+            if (this.renderPending) {
+                return;
+            }
+            this.renderPending = true;
+        }
+        this.executor.execute(this::render);
+    }
+
+    private void render() {
+        final boolean fullRender;
+        synchronized (this.monitor) {
+            fullRender = this.fullRender;
+            this.fullRender = false;
+            this.renderPending = false;
+            this.renderCount++;
+        }
+        this.renderer.render(fullRender);
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+        log.error("applied message stream failed", throwable);
+    }
+
+    @Override
+    public void onComplete() {
+        log.info("applied message stream complete");
+    }
+}
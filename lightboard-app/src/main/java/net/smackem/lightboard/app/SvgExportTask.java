@@ -0,0 +1,51 @@
+package net.smackem.lightboard.app;
+
+import javafx.concurrent.Task;
+import net.smackem.lightboard.io.SvgWriter;
+import net.smackem.lightboard.model.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Exports a document to an SVG file in the background. Cancelling the task deletes the incomplete file.
+ */
+class SvgExportTask extends Task<Void> {
+    private static final Logger log = LoggerFactory.getLogger(SvgExportTask.class);
+    private final Document document;
+    private final Path path;
+
+    SvgExportTask(Document document, Path path) {
+        this.document = document;
+        this.path = path;
+    }
+
+    @Override
+    protected Void call() throws Exception {
+        final long start = System.nanoTime();
+        // leaves a processor to the user interface
+        final ForkJoinPool pool = new ForkJoinPool(Math.max(1, Runtime.getRuntime().availableProcessors() - 1));
+        final SvgWriter writer = new SvgWriter(pool);
+        try (final FileChannel channel = FileChannel.open(this.path,
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            writer.write(this.document, channel, this::updateProgress);
+        } catch (IOException e) {
+            Files.deleteIfExists(this.path);
+            if (isCancelled()) {
+                log.info("svg export to {} cancelled", this.path);
+                return null;
+            }
+            throw e;
+        } finally {
+            pool.shutdown();
+        }
+        log.info("exported svg to {} in {} ms", this.path, (System.nanoTime() - start) / 1_000_000);
+        return null;
+    }
+}
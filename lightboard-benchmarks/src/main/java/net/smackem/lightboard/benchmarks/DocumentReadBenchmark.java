@@ -0,0 +1,130 @@
+package net.smackem.lightboard.benchmarks;
+
+import net.smackem.lightboard.model.Document;
+import net.smackem.lightboard.model.Drawing;
+import net.smackem.lightboard.model.DrawingSnapshot;
+import net.smackem.lightboard.model.Figure;
+import net.smackem.lightboard.model.PointSequence;
+import net.smackem.lightboard.model.Rgba;
+import org.locationtech.jts.geom.Coordinate;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The throughput of the readers of a {@link Document} while a pen streams points into the selected drawing
+ * at full rate. Readers query the document and the drawing like the renderer and the HTTP handlers do.
+ * <p>
+ *     With {@code guard=monitor}, readers and the writer synchronize on a shared monitor, as all accessors of
+ *     the document and the drawing did before they published snapshots. This is the reference for contention.
+ *     Run with {@code -tg 1,N} to vary the number of readers in the {@code pen} group.
+ * </p>
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"--enable-preview", "-Dorg.slf4j.simpleLogger.defaultLogLevel=warn"})
+@State(Scope.Group)
+public class DocumentReadBenchmark {
+    private static final int POINT_COUNT = 4096;
+    private static final int STROKE_LENGTH = 1000;
+    private static final Rgba COLOR = new Rgba(0, 0, 0, 255);
+
+    @Param({"none", "monitor"})
+    private String guard;
+
+    private final Object monitor = new Object();
+    private boolean synchronize;
+    private Coordinate[] points;
+    private Document document;
+    private int pointIndex;
+    private int strokePointCount;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        final float[] coords = Strokes.coords(new Random(1), POINT_COUNT);
+        this.points = new Coordinate[POINT_COUNT];
+        for (int i = 0; i < POINT_COUNT; i++) {
+            this.points[i] = new Coordinate(coords[i * 2], coords[i * 2 + 1]);
+        }
+        this.synchronize = this.guard.equals("monitor");
+        this.document = Strokes.document(1, 4, 100, 200);
+        this.pointIndex = 0;
+        beginStroke();
+    }
+
+    @Benchmark
+    @Group("pen")
+    @GroupThreads(1)
+    public void write() {
+        if (this.synchronize) {
+            synchronized (this.monitor) {
+                writePoint();
+            }
+        } else {
+            writePoint();
+        }
+    }
+
+    @Benchmark
+    @Group("pen")
+    @GroupThreads(3)
+    public void read(Blackhole blackhole) {
+        if (this.synchronize) {
+            synchronized (this.monitor) {
+                readDocument(blackhole);
+            }
+        } else {
+            readDocument(blackhole);
+        }
+    }
+
+    /**
+     * Readers without a writer, the upper bound of {@link #read(Blackhole)}.
+     */
+    @Benchmark
+    @Group("idle")
+    @GroupThreads(3)
+    public void readIdle(Blackhole blackhole) {
+        readDocument(blackhole);
+    }
+
+    private void readDocument(Blackhole blackhole) {
+        blackhole.consume(this.document.width());
+        blackhole.consume(this.document.height());
+        final Drawing drawing = this.document.drawing();
+        final DrawingSnapshot snapshot = drawing.snapshot();
+        blackhole.consume(snapshot.version());
+        blackhole.consume(snapshot.isBlank());
+        final Figure figure = snapshot.currentFigure();
+        if (figure != null) {
+            final PointSequence points = figure.points();
+            final int last = points.size() - 1;
+            blackhole.consume(points.x(last) + points.y(last));
+        }
+    }
+
+    private void writePoint() {
+        final Drawing drawing = this.document.drawing();
+        if (this.strokePointCount == STROKE_LENGTH) {
+            drawing.removeFigure(drawing.figures().size() - 1);
+            beginStroke();
+        }
+        drawing.addPoint(nextPoint());
+        this.strokePointCount++;
+    }
+
+    private void beginStroke() {
+        this.document.drawing().beginFigure(nextPoint(), COLOR, 2);
+        this.strokePointCount = 1;
+    }
+
+    private Coordinate nextPoint() {
+        final Coordinate point = this.points[this.pointIndex];
+        this.pointIndex = (this.pointIndex + 1) % POINT_COUNT;
+        return point;
+    }
+}
@@ -0,0 +1,99 @@
+package net.smackem.lightboard.benchmarks;
+
+import net.smackem.lightboard.model.Drawing;
+import net.smackem.lightboard.model.DrawingSnapshot;
+import net.smackem.lightboard.model.Figure;
+import net.smackem.lightboard.model.Rgba;
+import net.smackem.lightboard.model.SimplificationMode;
+import org.locationtech.jts.geom.Coordinate;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link Drawing#addPoint(Coordinate)} on its own and while other threads read the drawing, like the renderer,
+ * the HTTP handlers and the event streams do. The drawing has a single writer, so readers contend for the
+ * published snapshots only.
+ * <p>
+ *     The stroke is restarted every {@code strokeLength} points, so that its size does not grow with the
+ *     number of invocations.
+ * </p>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"--enable-preview", "-Dorg.slf4j.simpleLogger.defaultLogLevel=warn"})
+@State(Scope.Group)
+public class DrawingAddPointBenchmark {
+    private static final int POINT_COUNT = 4096;
+    private static final Rgba COLOR = new Rgba(0, 0, 0, 255);
+
+    @Param({"END_OF_STROKE", "STREAMING"})
+    private SimplificationMode simplificationMode;
+
+    @Param({"1000"})
+    private int strokeLength;
+
+    private Coordinate[] points;
+    private Drawing drawing;
+    private int pointIndex;
+    private int strokePointCount;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        final float[] coords = Strokes.coords(new Random(1), POINT_COUNT);
+        this.points = new Coordinate[POINT_COUNT];
+        for (int i = 0; i < POINT_COUNT; i++) {
+            this.points[i] = new Coordinate(coords[i * 2], coords[i * 2 + 1]);
+        }
+        this.drawing = new Drawing();
+        this.pointIndex = 0;
+        beginStroke();
+    }
+
+    @Benchmark
+    @Group("uncontended")
+    public void addPoint() {
+        writePoint();
+    }
+
+    @Benchmark
+    @Group("contended")
+    @GroupThreads(1)
+    public void contendedAddPoint() {
+        writePoint();
+    }
+
+    @Benchmark
+    @Group("contended")
+    @GroupThreads(3)
+    public void contendedRead(Blackhole blackhole) {
+        final DrawingSnapshot snapshot = this.drawing.snapshot();
+        final Figure figure = snapshot.currentFigure();
+        blackhole.consume(snapshot.version());
+        blackhole.consume(figure != null ? figure.points().size() : 0);
+    }
+
+    private void writePoint() {
+        if (this.strokePointCount == this.strokeLength) {
+            this.drawing.removeFigure(0);
+            beginStroke();
+        }
+        this.drawing.addPoint(nextPoint());
+        this.strokePointCount++;
+    }
+
+    private void beginStroke() {
+        this.drawing.beginFigure(nextPoint(), COLOR, 2, this.simplificationMode, 0.5);
+        this.strokePointCount = 1;
+    }
+
+    private Coordinate nextPoint() {
+        final Coordinate point = this.points[this.pointIndex];
+        this.pointIndex = (this.pointIndex + 1) % POINT_COUNT;
+        return point;
+    }
+}
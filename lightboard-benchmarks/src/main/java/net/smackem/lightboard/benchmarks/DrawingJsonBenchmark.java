@@ -0,0 +1,50 @@
+package net.smackem.lightboard.benchmarks;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import net.smackem.lightboard.io.DrawingJson;
+import net.smackem.lightboard.model.DrawingSnapshot;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The JSON encoding of {@code GET /drawing}: {@link #serialize()} fills the per-version cache of small drawings,
+ * {@link #stream()} is how large drawings are written to the response.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"--enable-preview", "-Dorg.slf4j.simpleLogger.defaultLogLevel=warn"})
+@State(Scope.Benchmark)
+public class DrawingJsonBenchmark {
+    @Param({"10", "100", "1000"})
+    private int figureCount;
+
+    @Param({"100"})
+    private int pointCount;
+
+    private final ObjectMapper mapper = DrawingJson.createObjectMapper();
+    private DrawingSnapshot snapshot;
+
+    @Setup
+    public void setUp() {
+        this.snapshot = Strokes.drawing(new Random(1), this.figureCount, this.pointCount).snapshot();
+    }
+
+    @Benchmark
+    public byte[] serialize() throws IOException {
+        return this.mapper.writeValueAsBytes(this.snapshot);
+    }
+
+    @Benchmark
+    public void stream() throws IOException {
+        try (final JsonGenerator generator = this.mapper.getFactory().createGenerator(OutputStream.nullOutputStream())) {
+            this.mapper.writeValue(generator, this.snapshot);
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package net.smackem.lightboard.benchmarks;
+
+import net.smackem.lightboard.model.Figure;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link Figure#simplify(double)}, which runs when a stroke ends in
+ * {@link net.smackem.lightboard.model.SimplificationMode#END_OF_STROKE} mode.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"--enable-preview", "-Dorg.slf4j.simpleLogger.defaultLogLevel=warn"})
+@State(Scope.Benchmark)
+public class FigureSimplifyBenchmark {
+    @Param({"100", "1000", "10000"})
+    private int pointCount;
+
+    @Param({"0.5", "2.0"})
+    private double tolerance;
+
+    private Figure figure;
+
+    @Setup
+    public void setUp() {
+        this.figure = Strokes.figure(new Random(1), this.pointCount);
+    }
+
+    @Benchmark
+    public Figure simplify() {
+        return this.figure.simplify(this.tolerance);
+    }
+}
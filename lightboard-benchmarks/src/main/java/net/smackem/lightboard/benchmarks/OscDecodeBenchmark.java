@@ -0,0 +1,92 @@
+package net.smackem.lightboard.benchmarks;
+
+import com.illposed.osc.OSCMessage;
+import com.illposed.osc.OSCPacket;
+import com.illposed.osc.OSCParseException;
+import com.illposed.osc.OSCParser;
+import com.illposed.osc.OSCSerializerAndParserBuilder;
+import net.smackem.lightboard.io.OscMessageDecoder;
+import net.smackem.lightboard.messaging.Message;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The decoding of an inbound OSC packet: {@link #parse()} is the share of javaosc,
+ * {@link #parseAndDecode()} adds the translation into a {@link Message} by {@link OscMessageDecoder}.
+ * {@link #decode()} is the fast path, which decodes the message from the bytes of the packet.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"--enable-preview", "-Dorg.slf4j.simpleLogger.defaultLogLevel=warn"})
+@State(Scope.Thread)
+public class OscDecodeBenchmark {
+    @Param({"/figure/point", "/figure/begin"})
+    private String command;
+
+    private final OSCParser parser = new OSCSerializerAndParserBuilder().buildParser();
+    private final OscMessageDecoder decoder = new OscMessageDecoder();
+    private byte[] packet;
+    private ByteBuffer packetBuffer;
+
+    @Setup
+    public void setUp() {
+        this.packet = switch (this.command) {
+            case "/figure/point" -> encode(this.command, 512.25f, 384.5f);
+            case "/figure/begin" -> encode(this.command, 512.25f, 384.5f, 255, 128, 0, 255, 4.0f);
+            default -> throw new IllegalArgumentException(this.command);
+        };
+        this.packetBuffer = ByteBuffer.wrap(this.packet);
+    }
+
+    @Benchmark
+    public OSCPacket parse() throws OSCParseException {
+        return this.parser.convert(ByteBuffer.wrap(this.packet));
+    }
+
+    @Benchmark
+    public Message parseAndDecode() throws OSCParseException {
+        final OSCMessage message = (OSCMessage) this.parser.convert(ByteBuffer.wrap(this.packet));
+        return this.decoder.decode(message.getAddress(), message.getArguments());
+    }
+
+    @Benchmark
+    public Message decode() {
+        return this.decoder.decode(this.packetBuffer, 0);
+    }
+
+    /**
+     * Encodes a message with {@code int} and {@code float} arguments as specified by OSC 1.0.
+     */
+    private static byte[] encode(String address, Object... args) {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        writeString(bytes, address);
+        final StringBuilder typeTags = new StringBuilder(",");
+        for (final Object arg : args) {
+            typeTags.append(arg instanceof Float ? 'f' : 'i');
+        }
+        writeString(bytes, typeTags.toString());
+        final ByteBuffer buffer = ByteBuffer.allocate(args.length * 4);
+        for (final Object arg : args) {
+            if (arg instanceof Float f) {
+                buffer.putFloat(f);
+            } else {
+                buffer.putInt((Integer) arg);
+            }
+        }
+        bytes.writeBytes(buffer.array());
+        return bytes.toByteArray();
+    }
+
+    private static void writeString(ByteArrayOutputStream bytes, String s) {
+        final byte[] chars = s.getBytes(StandardCharsets.US_ASCII);
+        bytes.writeBytes(chars);
+        // terminated by at least one zero byte and padded to a multiple of four bytes
+        bytes.writeBytes(new byte[4 - chars.length % 4]);
+    }
+}
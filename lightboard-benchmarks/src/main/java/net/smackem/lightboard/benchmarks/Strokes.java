@@ -0,0 +1,59 @@
+package net.smackem.lightboard.benchmarks;
+
+import net.smackem.lightboard.model.Document;
+import net.smackem.lightboard.model.Drawing;
+import net.smackem.lightboard.model.Figure;
+import net.smackem.lightboard.model.PointSequence;
+import net.smackem.lightboard.model.Rgba;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Generates reproducible strokes that resemble hand-drawn ones: a slowly turning pen with some jitter.
+ */
+final class Strokes {
+    static final int WIDTH = 1920;
+    static final int HEIGHT = 1080;
+
+    private Strokes() {
+        throw new IllegalAccessError();
+    }
+
+    static float[] coords(Random random, int pointCount) {
+        final float[] coords = new float[pointCount * 2];
+        double x = random.nextDouble() * WIDTH, y = random.nextDouble() * HEIGHT;
+        double angle = random.nextDouble() * Math.PI * 2;
+        for (int i = 0; i < pointCount; i++) {
+            angle += random.nextGaussian() * 0.1;
+            x += Math.cos(angle) * 2 + random.nextGaussian() * 0.3;
+            y += Math.sin(angle) * 2 + random.nextGaussian() * 0.3;
+            coords[i * 2] = (float) x;
+            coords[i * 2 + 1] = (float) y;
+        }
+        return coords;
+    }
+
+    static Figure figure(Random random, int pointCount) {
+        final Rgba color = new Rgba(random.nextInt(256), random.nextInt(256), random.nextInt(256), 255);
+        return new Figure(color, 1 + random.nextInt(8), PointSequence.of(coords(random, pointCount), pointCount));
+    }
+
+    static Drawing drawing(Random random, int figureCount, int pointCount) {
+        final List<Figure> figures = new ArrayList<>(figureCount);
+        for (int i = 0; i < figureCount; i++) {
+            figures.add(figure(random, pointCount));
+        }
+        return new Drawing(figures);
+    }
+
+    static Document document(long seed, int drawingCount, int figureCount, int pointCount) {
+        final Random random = new Random(seed);
+        final List<Drawing> drawings = new ArrayList<>(drawingCount);
+        for (int i = 0; i < drawingCount; i++) {
+            drawings.add(drawing(random, figureCount, pointCount));
+        }
+        return new Document(WIDTH, HEIGHT, drawings, 0);
+    }
+}
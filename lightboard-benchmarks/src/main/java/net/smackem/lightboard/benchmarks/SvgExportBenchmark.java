@@ -0,0 +1,44 @@
+package net.smackem.lightboard.benchmarks;
+
+import net.smackem.lightboard.io.SvgWriter;
+import net.smackem.lightboard.model.Document;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link SvgWriter#write(Document, java.nio.channels.WritableByteChannel)} on generated documents,
+ * i.e. {@code GET /document/svg} and the export of the app without the cost of the destination.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"--enable-preview", "-Dorg.slf4j.simpleLogger.defaultLogLevel=warn"})
+@State(Scope.Benchmark)
+public class SvgExportBenchmark {
+    @Param({"1", "10"})
+    private int drawingCount;
+
+    @Param({"100", "1000"})
+    private int figureCount;
+
+    @Param({"100"})
+    private int pointCount;
+
+    private final SvgWriter writer = new SvgWriter();
+    private Document document;
+
+    @Setup
+    public void setUp() {
+        this.document = Strokes.document(1, this.drawingCount, this.figureCount, this.pointCount);
+    }
+
+    @Benchmark
+    public void write() throws IOException {
+        this.writer.write(this.document, Channels.newChannel(OutputStream.nullOutputStream()));
+    }
+}
@@ -0,0 +1,265 @@
+package net.smackem.lightboard.io;
+
+import net.smackem.lightboard.model.*;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Reads drawings and documents written by {@link BinaryDrawingWriter}.
+ */
+public class BinaryDrawingReader {
+    private static final int BUFFER_SIZE = 8192;
+    // the least number of bytes an encoded drawing, figure or point takes
+    private static final int MIN_DRAWING_SIZE = 1;
+    private static final int MIN_FIGURE_SIZE = 6;
+    private static final int MIN_POINT_SIZE = 2;
+    private static final int MIN_EXACT_FIGURE_SIZE = 13;
+    private static final int EXACT_POINT_SIZE = 8;
+    // the number of elements allocated up front if the size of the input is unknown
+    private static final int MAX_PREALLOCATED_COUNT = 4096;
+
+    public Drawing readDrawing(InputStream in) throws IOException {
+        final Input input = new Input(in);
+        readHeader(input, BinaryFormat.KIND_DRAWING);
+        return new Drawing(readFigures(input));
+    }
+
+    /**
+     * Reads a document written by {@link BinaryDrawingWriter#write(Document, OutputStream)} or
+     * {@link BinaryDrawingWriter#writeExact(DocumentSnapshot, List, OutputStream)}.
+     */
+    public Document readDocument(InputStream in) throws IOException {
+        final Input input = new Input(in);
+        final boolean exact = readHeader(input, BinaryFormat.KIND_DOCUMENT, BinaryFormat.KIND_EXACT_DOCUMENT)
+                == BinaryFormat.KIND_EXACT_DOCUMENT;
+        final int width = input.readVarInt();
+        final int height = input.readVarInt();
+        final int drawingIndex = input.readVarInt();
+        final int drawingCount = input.readCount(MIN_DRAWING_SIZE);
+        checkDrawingIndex(drawingIndex, drawingCount);
+        final List<Drawing> drawings = new ArrayList<>(input.preallocatableCount(drawingCount));
+        for (int i = 0; i < drawingCount; i++) {
+            drawings.add(new Drawing(exact ? readExactFigures(input) : readFigures(input)));
+        }
+        return new Document(width, height, drawings, drawingIndex);
+    }
+
+    /**
+     * Opens a document file written by {@link BinaryDrawingWriter#save(Document, Path)}. The file is
+     * memory-mapped and each drawing is decoded when it is accessed for the first time, so opening
+     * a document takes the same time regardless of the number of drawings.
+     */
+    public Document openDocument(Path path) throws IOException {
+        final MappedByteBuffer mapped;
+        try (final FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("document file too large: " + path);
+            }
+            mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        final Input input = new Input(mapped.duplicate());
+        readHeader(input, BinaryFormat.KIND_DOCUMENT_FILE);
+        final int width = input.readInt();
+        final int height = input.readInt();
+        final int drawingIndex = input.readInt();
+        final int drawingCount = input.readInt();
+        if (drawingCount < 1 || drawingCount > mapped.capacity() / Long.BYTES) {
+            throw new IOException("invalid drawing count " + drawingCount + " in " + path);
+        }
+        checkDrawingIndex(drawingIndex, drawingCount);
+        final long[] offsets = new long[drawingCount + 1];
+        for (int i = 0; i < offsets.length; i++) {
+            offsets[i] = input.readLong();
+            final long minOffset = i > 0 ? offsets[i - 1] : BinaryFormat.FILE_OFFSET_TABLE_POSITION;
+            if (offsets[i] < minOffset || offsets[i] > mapped.capacity()) {
+                throw new IOException("invalid offset table in " + path);
+            }
+        }
+        final List<Drawing> drawings = new ArrayList<>(drawingCount);
+        for (int i = 0; i < drawingCount; i++) {
+            final ByteBuffer body = mapped.slice((int) offsets[i], (int) (offsets[i + 1] - offsets[i]));
+            drawings.add(Drawing.lazy(() -> readFigures(body, path)));
+        }
+        return new Document(width, height, drawings, drawingIndex);
+    }
+
+    private static void checkDrawingIndex(int drawingIndex, int drawingCount) throws IOException {
+        if (drawingIndex < 0 || drawingIndex >= drawingCount) {
+            throw new IOException("invalid drawing index " + drawingIndex + " of " + drawingCount + " drawings");
+        }
+    }
+
+    private static void readHeader(Input input, byte kind) throws IOException {
+        readHeader(input, kind, kind);
+    }
+
+    /**
+     * @return the content kind, which is either {@code kind} or {@code alternativeKind}.
+     */
+    private static byte readHeader(Input input, byte kind, byte alternativeKind) throws IOException {
+        if (input.readByte() != BinaryFormat.MAGIC_0 || input.readByte() != BinaryFormat.MAGIC_1) {
+            throw new IOException("not a lightboard binary stream");
+        }
+        final byte actualKind = input.readByte();
+        if (actualKind != kind && actualKind != alternativeKind) {
+            throw new IOException("unexpected content kind " + actualKind + ", expected " + kind);
+        }
+        final byte version = input.readByte();
+        if (version != BinaryFormat.VERSION) {
+            throw new IOException("unsupported format version " + version);
+        }
+        return actualKind;
+    }
+
+    /**
+     * Decodes a drawing body encoded by {@link BinaryDrawingWriter#encodeExactDrawingBody(DrawingSnapshot)}.
+     */
+    static List<Figure> decodeExactDrawingBody(ByteBuffer body) throws IOException {
+        return readExactFigures(new Input(body));
+    }
+
+    private static List<Figure> readExactFigures(Input input) throws IOException {
+        final int figureCount = input.readCount(MIN_EXACT_FIGURE_SIZE);
+        final List<Figure> figures = new ArrayList<>(input.preallocatableCount(figureCount));
+        for (int i = 0; i < figureCount; i++) {
+            final Rgba color = unpackRgba(input.readInt());
+            final double strokeWidth = Double.longBitsToDouble(input.readLong());
+            final int pointCount = input.readCount(EXACT_POINT_SIZE);
+            float[] coords = new float[input.preallocatableCount(pointCount) * 2];
+            for (int j = 0; j < pointCount * 2; j++) {
+                if (j == coords.length) {
+                    coords = Arrays.copyOf(coords, (int) Math.min(pointCount * 2L, coords.length * 2L));
+                }
+                coords[j] = Float.intBitsToFloat(input.readInt());
+            }
+            figures.add(new Figure(color, strokeWidth, PointSequence.of(coords, pointCount)));
+        }
+        return figures;
+    }
+
+    private static List<Figure> readFigures(ByteBuffer body, Path path) {
+        try {
+            return readFigures(new Input(body.duplicate()));
+        } catch (IOException e) {
+            throw new UncheckedIOException("corrupt drawing in " + path, e);
+        }
+    }
+
+    private static List<Figure> readFigures(Input input) throws IOException {
+        final int figureCount = input.readCount(MIN_FIGURE_SIZE);
+        final List<Figure> figures = new ArrayList<>(input.preallocatableCount(figureCount));
+        for (int i = 0; i < figureCount; i++) {
+            final Rgba color = unpackRgba(input.readInt());
+            final double strokeWidth = BinaryFormat.dequantize(input.readVarInt());
+            final int pointCount = input.readCount(MIN_POINT_SIZE);
+            float[] coords = new float[input.preallocatableCount(pointCount) * 2];
+            int x = 0, y = 0;
+            for (int j = 0; j < pointCount * 2; j += 2) {
+                if (j == coords.length) {
+                    coords = Arrays.copyOf(coords, (int) Math.min(pointCount * 2L, coords.length * 2L));
+                }
+                x += BinaryFormat.unzigzag(input.readVarInt());
+                y += BinaryFormat.unzigzag(input.readVarInt());
+                coords[j] = BinaryFormat.dequantize(x);
+                coords[j + 1] = BinaryFormat.dequantize(y);
+            }
+            figures.add(new Figure(color, strokeWidth, PointSequence.of(coords, pointCount)));
+        }
+        return figures;
+    }
+
+    private static Rgba unpackRgba(int rgba) {
+        return new Rgba(rgba >>> 24, rgba >>> 16 & 0xff, rgba >>> 8 & 0xff, rgba & 0xff);
+    }
+
+    private static class Input {
+        private final InputStream in;
+        private final ByteBuffer buffer;
+
+        Input(InputStream in) {
+            this.in = in;
+            this.buffer = ByteBuffer.allocate(BUFFER_SIZE).limit(0);
+        }
+
+        /**
+         * Creates an input that reads the remaining bytes of {@code buffer}.
+         */
+        Input(ByteBuffer buffer) {
+            this.in = null;
+            this.buffer = buffer;
+        }
+
+        byte readByte() throws IOException {
+            if (this.buffer.hasRemaining() == false) {
+                fill();
+            }
+            return this.buffer.get();
+        }
+
+        int readInt() throws IOException {
+            return (readByte() & 0xff) << 24
+                   | (readByte() & 0xff) << 16
+                   | (readByte() & 0xff) << 8
+                   | (readByte() & 0xff);
+        }
+
+        /**
+         * Reads the number of elements that follow, each of which takes at least {@code minElementSize} bytes.
+         *
+         * @throws IOException if the count is negative or the remaining input cannot hold that many elements.
+         */
+        int readCount(int minElementSize) throws IOException {
+            final int count = readVarInt();
+            // the size of a stream is unknown, but its elements are still limited to the size of an array
+            final int remaining = this.in != null ? Integer.MAX_VALUE : this.buffer.remaining();
+            if (count < 0 || count > remaining / minElementSize) {
+                throw new IOException("invalid element count " + count);
+            }
+            return count;
+        }
+
+        /**
+         * @return the number of elements to allocate for a count read by {@link #readCount(int)}, which is
+         *      bounded if the count has not been checked against the size of the input.
+         */
+        int preallocatableCount(int count) {
+            return this.in != null ? Math.min(count, MAX_PREALLOCATED_COUNT) : count;
+        }
+
+        long readLong() throws IOException {
+            return (long) readInt() << 32 | (readInt() & 0xffffffffL);
+        }
+
+        int readVarInt() throws IOException {
+            int value = 0;
+            for (int shift = 0; shift < 32; shift += 7) {
+                final byte b = readByte();
+                value |= (b & 0x7f) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+            throw new IOException("malformed varint");
+        }
+
+        private void fill() throws IOException {
+            final int count = this.in != null ? this.in.read(this.buffer.array(), 0, this.buffer.capacity()) : -1;
+            if (count <= 0) {
+                throw new EOFException();
+            }
+            this.buffer.position(0).limit(count);
+        }
+    }
+}
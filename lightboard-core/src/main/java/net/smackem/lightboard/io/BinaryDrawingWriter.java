@@ -0,0 +1,260 @@
+package net.smackem.lightboard.io;
+
+import net.smackem.lightboard.model.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * Writes drawings and documents in the compact binary format described in {@link BinaryFormat}.
+ */
+public class BinaryDrawingWriter {
+    public static final String MEDIA_TYPE = "application/vnd.lightboard";
+    private static final int BUFFER_SIZE = 8192;
+
+    public void write(DrawingSnapshot drawing, OutputStream out) throws IOException {
+        final Output output = new Output(out);
+        writeHeader(output, BinaryFormat.KIND_DRAWING);
+        writeDrawing(output, drawing.figures());
+        output.flush();
+    }
+
+    public void write(Document document, OutputStream out) throws IOException {
+        final DocumentSnapshot snapshot = document.snapshot();
+        final List<Drawing> drawings = snapshot.drawings();
+        final Output output = new Output(out);
+        writeHeader(output, BinaryFormat.KIND_DOCUMENT);
+        output.writeVarInt(snapshot.width());
+        output.writeVarInt(snapshot.height());
+        output.writeVarInt(snapshot.drawingIndex());
+        output.writeVarInt(drawings.size());
+        for (final Drawing drawing : drawings) {
+            writeDrawing(output, drawing.figures());
+        }
+        output.flush();
+    }
+
+    /**
+     * Writes a document like {@link #write(Document, OutputStream)}, whose drawings are obtained from
+     * {@code drawings} only while they are written, e.g. from {@link Drawing#figuresOfCurrentVersion()}.
+     */
+    public void write(DocumentSnapshot document,
+                      List<? extends Supplier<? extends List<Figure>>> drawings,
+                      OutputStream out) throws IOException {
+        write(document, drawings, out, false);
+    }
+
+    /**
+     * Writes a document like {@link #write(DocumentSnapshot, List, OutputStream)}, but with exact drawing bodies,
+     * so that reading it yields the very same figures, e.g. for journal snapshots.
+     */
+    void writeExact(DocumentSnapshot document,
+                    List<? extends Supplier<? extends List<Figure>>> drawings,
+                    OutputStream out) throws IOException {
+        write(document, drawings, out, true);
+    }
+
+    private void write(DocumentSnapshot document,
+                       List<? extends Supplier<? extends List<Figure>>> drawings,
+                       OutputStream out,
+                       boolean exact) throws IOException {
+        final Output output = new Output(out);
+        writeHeader(output, exact ? BinaryFormat.KIND_EXACT_DOCUMENT : BinaryFormat.KIND_DOCUMENT);
+        output.writeVarInt(document.width());
+        output.writeVarInt(document.height());
+        output.writeVarInt(document.drawingIndex());
+        output.writeVarInt(drawings.size());
+        for (final Supplier<? extends List<Figure>> drawing : drawings) {
+            if (exact) {
+                writeExactDrawing(output, drawing.get());
+            } else {
+                writeDrawing(output, drawing.get());
+            }
+        }
+        output.flush();
+    }
+
+    /**
+     * Writes the specified document to a file, which can be opened lazily by
+     * {@link BinaryDrawingReader#openDocument(Path)}. The drawings are written in a single pass,
+     * the offset table is filled in afterwards.
+     * <p>
+     *     The document is written to a temporary file in the same directory, which then atomically replaces
+     *     the file at {@code path}. So a crash never leaves a partially written file behind, and the document
+     *     may have been opened lazily from {@code path}: its drawings that have not been loaded yet remain
+     *     mapped to the replaced file.
+     * </p>
+     */
+    public void save(Document document, Path path) throws IOException {
+        final DocumentSnapshot snapshot = document.snapshot();
+        final List<Drawing> drawings = snapshot.drawings();
+        final long[] offsets = new long[drawings.size() + 1];
+        final Path tempPath = Files.createTempFile(
+                path.toAbsolutePath().getParent(), path.getFileName().toString(), ".tmp");
+        try {
+            try (final FileChannel channel = FileChannel.open(tempPath, StandardOpenOption.WRITE)) {
+                final Output output = new Output(Channels.newOutputStream(channel));
+                writeHeader(output, BinaryFormat.KIND_DOCUMENT_FILE);
+                output.writeInt(snapshot.width());
+                output.writeInt(snapshot.height());
+                output.writeInt(snapshot.drawingIndex());
+                output.writeInt(drawings.size());
+                for (int i = 0; i < offsets.length; i++) {
+                    output.writeLong(0);
+                }
+                for (int i = 0; i < drawings.size(); i++) {
+                    offsets[i] = output.offset();
+                    writeDrawing(output, drawings.get(i).figures());
+                }
+                offsets[drawings.size()] = output.offset();
+                output.flush();
+                final ByteBuffer table = ByteBuffer.allocate(offsets.length * Long.BYTES);
+                for (final long offset : offsets) {
+                    table.putLong(offset);
+                }
+                table.flip();
+                long position = BinaryFormat.FILE_OFFSET_TABLE_POSITION;
+                while (table.hasRemaining()) {
+                    position += channel.write(table, position);
+                }
+                channel.force(true);
+            }
+            Files.move(tempPath, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(tempPath);
+            throw e;
+        }
+    }
+
+    /**
+     * @return the figures of the specified drawing encoded as an exact drawing body without header,
+     *      i.e. without quantization, see {@link BinaryFormat}.
+     */
+    static byte[] encodeExactDrawingBody(DrawingSnapshot drawing) {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final Output output = new Output(bytes);
+        try {
+            writeExactDrawing(output, drawing.figures());
+            output.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static void writeHeader(Output output, byte kind) throws IOException {
+        output.writeByte(BinaryFormat.MAGIC_0);
+        output.writeByte(BinaryFormat.MAGIC_1);
+        output.writeByte(kind);
+        output.writeByte(BinaryFormat.VERSION);
+    }
+
+    private static void writeDrawing(Output output, List<Figure> figures) throws IOException {
+        output.writeVarInt(figures.size());
+        for (final Figure figure : figures) {
+            final Rgba color = figure.color();
+            final PointSequence points = figure.points();
+            output.writeInt(BinaryFormat.packRgba(color.r(), color.g(), color.b(), color.a()));
+            output.writeVarInt(BinaryFormat.quantize(figure.strokeWidth()));
+            output.writeVarInt(points.size());
+            int prevX = 0, prevY = 0;
+            for (int i = 0; i < points.size(); i++) {
+                final int x = BinaryFormat.quantize(points.x(i));
+                final int y = BinaryFormat.quantize(points.y(i));
+                output.writeVarInt(BinaryFormat.zigzag(x - prevX));
+                output.writeVarInt(BinaryFormat.zigzag(y - prevY));
+                prevX = x;
+                prevY = y;
+            }
+        }
+    }
+
+    private static void writeExactDrawing(Output output, List<Figure> figures) throws IOException {
+        output.writeVarInt(figures.size());
+        for (final Figure figure : figures) {
+            final Rgba color = figure.color();
+            final PointSequence points = figure.points();
+            output.writeInt(BinaryFormat.packRgba(color.r(), color.g(), color.b(), color.a()));
+            output.writeLong(Double.doubleToLongBits(figure.strokeWidth()));
+            output.writeVarInt(points.size());
+            // points are held as floats, so their float bits are exact
+            for (int i = 0; i < points.size(); i++) {
+                output.writeInt(Float.floatToRawIntBits((float) points.x(i)));
+                output.writeInt(Float.floatToRawIntBits((float) points.y(i)));
+            }
+        }
+    }
+
+    private static class Output {
+        private final OutputStream out;
+        private final byte[] buffer = new byte[BUFFER_SIZE];
+        private int position;
+        private long flushedCount;
+
+        Output(OutputStream out) {
+            this.out = out;
+        }
+
+        void writeByte(int value) throws IOException {
+            ensureCapacity(1);
+            this.buffer[this.position++] = (byte) value;
+        }
+
+        void writeInt(int value) throws IOException {
+            ensureCapacity(4);
+            this.buffer[this.position++] = (byte) (value >>> 24);
+            this.buffer[this.position++] = (byte) (value >>> 16);
+            this.buffer[this.position++] = (byte) (value >>> 8);
+            this.buffer[this.position++] = (byte) value;
+        }
+
+        void writeLong(long value) throws IOException {
+            writeInt((int) (value >>> 32));
+            writeInt((int) value);
+        }
+
+        void writeVarInt(int value) throws IOException {
+            ensureCapacity(5);
+            while ((value & ~0x7f) != 0) {
+                this.buffer[this.position++] = (byte) ((value & 0x7f) | 0x80);
+                value >>>= 7;
+            }
+            this.buffer[this.position++] = (byte) value;
+        }
+
+        /**
+         * @return the number of bytes written so far.
+         */
+        long offset() {
+            return this.flushedCount + this.position;
+        }
+
+        void flush() throws IOException {
+            writeBuffer();
+            this.out.flush();
+        }
+
+        private void ensureCapacity(int count) throws IOException {
+            if (this.position + count > this.buffer.length) {
+                writeBuffer();
+            }
+        }
+
+        private void writeBuffer() throws IOException {
+            this.out.write(this.buffer, 0, this.position);
+            this.flushedCount += this.position;
+            this.position = 0;
+        }
+    }
+}
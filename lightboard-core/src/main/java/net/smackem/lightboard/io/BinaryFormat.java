@@ -0,0 +1,63 @@
+package net.smackem.lightboard.io;
+
+/**
+ * Constants of the compact binary lightboard format, shared by {@link BinaryDrawingWriter}
+ * and {@link BinaryDrawingReader}.
+ * <pre>
+ * header   := 'L' 'B' kind:u8 version:u8
+ * document := header(KIND_DOCUMENT) width:varint height:varint drawingIndex:varint
+ *             drawingCount:varint drawingBody*
+ * drawing  := header(KIND_DRAWING) drawingBody
+ * file     := header(KIND_DOCUMENT_FILE) width:u32 height:u32 drawingIndex:u32 drawingCount:u32
+ *             (offset:u64){drawingCount + 1} drawingBody*
+ * drawingBody := figureCount:varint figure*
+ * figure   := rgba:u32 strokeWidth:varint pointCount:varint x0:zigzag y0:zigzag (dx:zigzag dy:zigzag)*
+ * exactDocument := header(KIND_EXACT_DOCUMENT) width:varint height:varint drawingIndex:varint
+ *             drawingCount:varint exactDrawingBody*
+ * exactDrawingBody := figureCount:varint exactFigure*
+ * exactFigure := rgba:u32 strokeWidth:f64 pointCount:varint (x:f32 y:f32)*
+ * </pre>
+ * Coordinates and stroke widths are quantized to {@code 1 / QUANTIZATION} pixels. Points after the first one
+ * of each figure are stored as deltas to their predecessor, so that pen strokes mostly need one byte per ordinate.
+ * Exact drawing bodies hold the IEEE 754 bits instead, for copies of a drawing that must not change its content,
+ * e.g. in the {@link DrawingSpill} and in the snapshots of a {@link Journal}.
+ * <p>
+ *     Document files have an offset table, which holds the file offset of each drawing body followed by the
+ *     file size, so that a drawing can be decoded without decoding the drawings that precede it.
+ * </p>
+ */
+final class BinaryFormat {
+    private BinaryFormat() {
+        throw new IllegalAccessError();
+    }
+
+    static final byte MAGIC_0 = 'L';
+    static final byte MAGIC_1 = 'B';
+    static final byte KIND_DRAWING = 1;
+    static final byte KIND_DOCUMENT = 2;
+    static final byte KIND_DOCUMENT_FILE = 3;
+    static final byte KIND_EXACT_DOCUMENT = 4;
+    static final byte VERSION = 1;
+    static final int QUANTIZATION = 16;
+    static final int FILE_OFFSET_TABLE_POSITION = 20;
+
+    static int quantize(double value) {
+        return (int) Math.round(value * QUANTIZATION);
+    }
+
+    static float dequantize(int value) {
+        return (float) value / QUANTIZATION;
+    }
+
+    static int zigzag(int value) {
+        return (value << 1) ^ (value >> 31);
+    }
+
+    static int unzigzag(int value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    static int packRgba(int r, int g, int b, int a) {
+        return (r & 0xff) << 24 | (g & 0xff) << 16 | (b & 0xff) << 8 | (a & 0xff);
+    }
+}
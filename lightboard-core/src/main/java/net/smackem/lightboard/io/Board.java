@@ -0,0 +1,238 @@
+package net.smackem.lightboard.io;
+
+import net.smackem.lightboard.messaging.BatchingMessageSubscriber;
+import net.smackem.lightboard.messaging.IngestionQueue;
+import net.smackem.lightboard.messaging.Message;
+import net.smackem.lightboard.messaging.MessageApplier;
+import net.smackem.lightboard.metrics.Histogram;
+import net.smackem.lightboard.metrics.MetricsRegistry;
+import net.smackem.lightboard.model.Document;
+import net.smackem.lightboard.model.Drawing;
+import net.smackem.lightboard.model.DrawingSnapshot;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.SubmissionPublisher;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.ToLongFunction;
+
+/**
+ * A document served by a {@link MessageExchangeHost} together with its own message pipeline.
+ * Boards share nothing but the network endpoints, so traffic on one board never waits for another.
+ * <p>
+ *     The document is owned by the model executor of the board, which applies the inbound messages in order
+ *     and is the only writer of the document. Each applied message is then published by
+ *     {@link #appliedMessagePublisher()}, so that views can render the document without ever modifying it.
+ * </p>
+ */
+public final class Board implements AutoCloseable {
+    private static final Logger log = LoggerFactory.getLogger(Board.class);
+    private static final int INGESTION_QUEUE_CAPACITY = 4096;
+    private static final int APPLIER_DEMAND = 1024;
+    private static final int APPLIER_BATCH_SIZE = 512;
+    private static final long CLOSE_TIMEOUT_MILLIS = 10_000;
+
+    private final String id;
+    private final Document document;
+    private final SubmissionPublisher<Message> messagePublisher = new SubmissionPublisher<>();
+    private final SubmissionPublisher<Message> appliedMessagePublisher = new SubmissionPublisher<>();
+    private final IngestionQueue ingestionQueue;
+    private final MessageApplier applier;
+    private final BatchingMessageSubscriber applierSubscriber;
+    private final Executor modelExecutor;
+    private final Journal journal;
+    private final Histogram applyLatency;
+    private final DrawingSpill spill;
+
+    /**
+     * @param modelExecutor executes the tasks that modify the document, one at a time and in order of submission.
+     * @param journal the journal to restore the document from and to record the applied messages in,
+     *      or {@code null} to start with a new document that is kept in memory only.
+     * @param spillPath the file to evict drawings to when their size exceeds {@code heapBudget},
+     *      see {@link DrawingSpill}, or {@code null} to keep all drawings in memory.
+     */
+    Board(String id,
+          IngestionQueue.OverflowPolicy overflowPolicy,
+          Executor modelExecutor,
+          Journal journal,
+          Path spillPath,
+          long heapBudget) {
+        this.id = Objects.requireNonNull(id);
+        this.document = journal != null ? journal.document() : new Document();
+        this.modelExecutor = Objects.requireNonNull(modelExecutor);
+        this.journal = journal;
+        this.ingestionQueue = new IngestionQueue(INGESTION_QUEUE_CAPACITY, overflowPolicy, this.messagePublisher,
+                "ingestion-drain-" + id);
+        this.applier = new MessageApplier(this.document);
+        this.applyLatency = MetricsRegistry.defaultRegistry().histogram("lightboard_apply_latency_seconds",
+                "Time from the receipt of an OSC packet to the application of its message", Map.of("board", id));
+        this.applier.setListener((message, simplificationMode, simplificationTolerance) -> {
+            if (message.receivedNanos() != 0) {
+                this.applyLatency.recordSince(message.receivedNanos());
+            }
+            if (journal != null) {
+                journal.messageApplied(message, simplificationMode, simplificationTolerance);
+            }
+            this.appliedMessagePublisher.submit(message);
+        });
+        this.applierSubscriber = new BatchingMessageSubscriber(
+                modelExecutor, this.applier::applyAll, APPLIER_DEMAND, APPLIER_BATCH_SIZE);
+        this.messagePublisher.subscribe(this.applierSubscriber);
+        registerMetrics(MetricsRegistry.defaultRegistry(), Map.of("board", id));
+        this.spill = spillPath != null ? openSpill(spillPath, heapBudget) : null;
+    }
+
+    private DrawingSpill openSpill(Path path, long heapBudget) {
+        try {
+            return new DrawingSpill(this, path, heapBudget);
+        } catch (IOException e) {
+            log.error("could not create spill file of board " + this.id + ", keeping all drawings in memory", e);
+            return null;
+        }
+    }
+
+    public String id() {
+        return this.id;
+    }
+
+    public Document document() {
+        return this.document;
+    }
+
+    /**
+     * @return the publisher of the messages addressed to this board, in order of arrival.
+     */
+    public Flow.Publisher<Message> messagePublisher() {
+        return this.messagePublisher;
+    }
+
+    /**
+     * @return the publisher of the messages that have been applied to the document, in order of application.
+     *      Messages are published as their outcome, see {@link MessageApplier.Listener}.
+     */
+    public Flow.Publisher<Message> appliedMessagePublisher() {
+        return this.appliedMessagePublisher;
+    }
+
+    public IngestionQueue ingestionQueue() {
+        return this.ingestionQueue;
+    }
+
+    /**
+     * @return the applier that maintains the document. Its settings may be changed from any thread.
+     */
+    public MessageApplier applier() {
+        return this.applier;
+    }
+
+    /**
+     * @return the statistics of the batches in which messages are applied.
+     */
+    public BatchingMessageSubscriber applierSubscriber() {
+        return this.applierSubscriber;
+    }
+
+    /**
+     * @return the spill that keeps the loaded drawings within the heap budget of the board or {@code null}
+     *      if all drawings are kept in memory.
+     */
+    public DrawingSpill spill() {
+        return this.spill;
+    }
+
+    /**
+     * @return the executor that owns the document. Tasks executed by it may modify the document.
+     */
+    Executor modelExecutor() {
+        return this.modelExecutor;
+    }
+
+    private void registerMetrics(MetricsRegistry metrics, Map<String, String> labels) {
+        metrics.gauge("lightboard_ingestion_queue_depth", "Messages waiting in the ingestion queue",
+                labels, this.ingestionQueue::depth);
+        metrics.counter("lightboard_ingestion_dropped_points_total", "Point messages dropped by the ingestion queue",
+                labels, this.ingestionQueue::dropCount);
+        metrics.counter("lightboard_ingestion_coalesced_points_total", "Point messages merged by the ingestion queue",
+                labels, this.ingestionQueue::coalesceCount);
+        metrics.counter("lightboard_ingestion_blocks_total", "Times a producer waited for the ingestion queue",
+                labels, this.ingestionQueue::blockCount);
+        metrics.counter("lightboard_applied_messages_total", "Messages applied to the document",
+                labels, this.applierSubscriber::messageCount);
+        metrics.counter("lightboard_apply_batches_total", "Batches in which messages have been applied",
+                labels, this.applierSubscriber::batchCount);
+        if (this.journal != null) {
+            metrics.counter("lightboard_journal_records_total", "Records appended to the journal",
+                    labels, this.journal::recordCount);
+            metrics.counter("lightboard_journal_syncs_total", "Times the journal has been synced to disk",
+                    labels, this.journal::groupCommitCount);
+            metrics.gauge("lightboard_journal_pending_bytes", "Size of the records waiting to be written to the journal",
+                    labels, this.journal::pendingBytes);
+            metrics.gauge("lightboard_journal_failed",
+                    "1 if the journal has stopped recording after a write error or because it fell too far behind",
+                    labels, () -> this.journal.isFailed() ? 1 : 0);
+        }
+        metrics.gauge("lightboard_document_drawings", "Drawings of the document",
+                labels, () -> this.document.snapshot().drawings().size());
+        metrics.gauge("lightboard_document_loaded_drawings", "Drawings of the document that are held in memory",
+                labels, () -> sumOfLoadedDrawings(drawing -> 1));
+        metrics.gauge("lightboard_document_figures", "Figures of the drawings held in memory",
+                labels, () -> sumOfLoadedDrawings(drawing -> drawing.figures().size()));
+        metrics.gauge("lightboard_document_points", "Points of the drawings held in memory",
+                labels, () -> sumOfLoadedDrawings(DrawingSnapshot::pointCount));
+        metrics.gauge("lightboard_document_estimated_bytes", "Estimated heap size of the drawings held in memory",
+                labels, () -> sumOfLoadedDrawings(DrawingSpill::estimateHeapSize));
+    }
+
+    /**
+     * Sums up the specified function of the drawings that are loaded, so that sampling metrics never loads a drawing.
+     */
+    private long sumOfLoadedDrawings(ToLongFunction<DrawingSnapshot> function) {
+        long sum = 0;
+        for (final Drawing drawing : this.document.snapshot().drawings()) {
+            final DrawingSnapshot snapshot = drawing.loadedSnapshot();
+            if (snapshot != null) {
+                sum += function.applyAsLong(snapshot);
+            }
+        }
+        return sum;
+    }
+
+    void submit(Message message) {
+        try {
+            this.ingestionQueue.offer(message);
+        } catch (InterruptedException e) {
+            log.warn("interrupted while enqueueing {} for board {}", message, this.id);
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Applies all messages received so far, then stops the message pipeline, closes the journal and deletes
+     * the spill file. The spill is closed last, because closing the journal may load evicted drawings.
+     */
+    @Override
+    public void close() throws InterruptedException, IOException {
+        this.ingestionQueue.close();
+        this.messagePublisher.close();
+        try {
+            this.applierSubscriber.completion().get(CLOSE_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+        } catch (ExecutionException | TimeoutException e) {
+            log.warn("board {} closed before all messages have been applied", this.id);
+        }
+        this.appliedMessagePublisher.close();
+        if (this.journal != null) {
+            this.journal.close();
+        }
+        if (this.spill != null) {
+            this.spill.close();
+        }
+    }
+}
@@ -0,0 +1,273 @@
+package net.smackem.lightboard.io;
+
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import net.smackem.lightboard.messaging.IngestionQueue;
+import net.smackem.lightboard.messaging.Message;
+import net.smackem.lightboard.metrics.Counter;
+import net.smackem.lightboard.metrics.MetricsRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * The boards served by a {@link MessageExchangeHost}. The default board is displayed by the application that
+ * created the host and has a dedicated model thread, all other boards are headless and created by the first valid
+ * message or modifying request addressed to them. Headless boards share a small pool of model threads, each applying
+ * its messages in order. The pool is owned by the registry rather than being the common pool, because applying
+ * messages may block on I/O, e.g. when an evicted drawing is reloaded.
+ * <p>
+ *     The journal of a new board is opened and replayed by a separate thread, which may take seconds for a long
+ *     journal. The board is registered once its document has been restored. Until then, the messages addressed
+ *     to it are held back, up to a limit, and submitted in order of arrival when the board has been registered.
+ * </p>
+ * <p>
+ *     Each board, including the default board, may have its own spill file, which keeps the drawings it holds
+ *     in memory within the heap budget, see {@link DrawingSpill}.
+ * </p>
+ */
+public final class BoardRegistry implements AutoCloseable {
+    private static final Logger log = LoggerFactory.getLogger(BoardRegistry.class);
+    public static final String DEFAULT_BOARD_ID = "default";
+    private static final Pattern BOARD_ID_PATTERN = Pattern.compile("[A-Za-z0-9_-]{1,64}");
+    private static final int MAX_HELD_MESSAGE_COUNT = 1024;
+    private static final long CLOSE_TIMEOUT_SECONDS = 10;
+    private static final int HEADLESS_MODEL_THREADS =
+            Math.max(2, Math.min(4, Runtime.getRuntime().availableProcessors() / 2));
+
+    private final ConcurrentMap<String, Board> boards = new ConcurrentHashMap<>();
+    private final Board defaultBoard;
+    private final IngestionQueue.OverflowPolicy overflowPolicy;
+    private final int maxBoardCount;
+    private final ExecutorService defaultModelExecutor = Executors.newSingleThreadExecutor(
+            new ThreadFactoryBuilder().setNameFormat("model-" + DEFAULT_BOARD_ID).setDaemon(true).build());
+    private final ExecutorService headlessModelExecutor = Executors.newFixedThreadPool(HEADLESS_MODEL_THREADS,
+            new ThreadFactoryBuilder().setNameFormat("model-headless-%d").setDaemon(true).build());
+    private final Path journalDirectory;
+    private final Path spillDirectory;
+    private final long heapBudget;
+    private final ConcurrentMap<String, OpeningBoard> openingBoards = new ConcurrentHashMap<>();
+    private final ExecutorService journalOpenExecutor = Executors.newSingleThreadExecutor(
+            new ThreadFactoryBuilder().setNameFormat("journal-open").setDaemon(true).build());
+    private final Counter heldMessageDropCount;
+    private volatile boolean closed;
+
+    /**
+     * @param journalDirectory the directory that contains a journal directory for each board,
+     *      or {@code null} to keep all boards in memory only.
+     * @param spillDirectory the directory that contains the spill file of each board,
+     *      or {@code null} to keep all drawings in memory.
+     * @param heapBudget the heap budget of each board that has a spill file.
+     */
+    BoardRegistry(IngestionQueue.OverflowPolicy overflowPolicy,
+                  int maxBoardCount,
+                  Path journalDirectory,
+                  Path spillDirectory,
+                  long heapBudget) throws IOException {
+        this.overflowPolicy = Objects.requireNonNull(overflowPolicy);
+        this.journalDirectory = journalDirectory;
+        this.spillDirectory = spillDirectory;
+        this.heapBudget = heapBudget;
+        this.maxBoardCount = maxBoardCount;
+        if (spillDirectory != null) {
+            Files.createDirectories(spillDirectory);
+        }
+        final Journal journal = journalDirectory != null
+                ? Journal.open(journalDirectory.resolve(DEFAULT_BOARD_ID))
+                : null;
+        this.defaultBoard = new Board(DEFAULT_BOARD_ID, overflowPolicy, this.defaultModelExecutor, journal,
+                spillPath(DEFAULT_BOARD_ID), heapBudget);
+        this.boards.put(DEFAULT_BOARD_ID, this.defaultBoard);
+        final MetricsRegistry metrics = MetricsRegistry.defaultRegistry();
+        metrics.gauge("lightboard_boards_opening", "Boards whose journal is being opened",
+                Map.of(), this.openingBoards::size);
+        this.heldMessageDropCount = metrics.counter("lightboard_held_messages_dropped_total",
+                "Messages dropped because too many arrived while the journal of their board was being opened");
+    }
+
+    public Board defaultBoard() {
+        return this.defaultBoard;
+    }
+
+    /**
+     * @return the board with the specified id or {@code null} if there is no such board.
+     */
+    public Board get(String id) {
+        return this.boards.get(id);
+    }
+
+    public Collection<Board> boards() {
+        return Collections.unmodifiableCollection(this.boards.values());
+    }
+
+    /**
+     * @return {@code true} if the board with the specified id is being created and its journal is being opened.
+     */
+    boolean isOpening(String id) {
+        return this.openingBoards.containsKey(id);
+    }
+
+    /**
+     * @return the board with the specified id, which is created if necessary, or {@code null}
+     *      if the id is malformed, the maximum number of boards has been reached, the journal
+     *      of the board is still being opened or the registry has been closed.
+     */
+    Board getOrCreate(String id) {
+        final Board board = this.boards.get(id);
+        if (board != null) {
+            return board;
+        }
+        if (this.closed) {
+            return null;
+        }
+        if (BOARD_ID_PATTERN.matcher(id).matches() == false) {
+            log.warn("invalid board id: {}", id);
+            return null;
+        }
+        if (this.boards.size() + this.openingBoards.size() >= this.maxBoardCount) {
+            log.warn("board limit of {} reached, ignoring board {}", this.maxBoardCount, id);
+            return null;
+        }
+        if (this.journalDirectory != null) {
+            // there is nothing to replay for a board kept in memory, so only boards with a journal are opened
+            // asynchronously. the open task registers the board before it removes the opening board.
+            this.openingBoards.computeIfAbsent(id, key -> {
+                if (this.boards.containsKey(key)) {
+                    return null;
+                }
+                final OpeningBoard openingBoard = new OpeningBoard();
+                try {
+                    this.journalOpenExecutor.execute(() -> open(key, openingBoard));
+                } catch (RejectedExecutionException e) {
+                    // the registry is being closed
+                    return null;
+                }
+                return openingBoard;
+            });
+            return this.boards.get(id);
+        }
+        return this.boards.computeIfAbsent(id, key -> {
+            log.info("creating board {}", key);
+            return newHeadlessBoard(key, null);
+        });
+    }
+
+    /**
+     * Submits the specified message to the board with the specified id, which is created if necessary.
+     * If the journal of the board is being opened, the message is held back until the board has been registered.
+     */
+    void submit(String id, Message message) {
+        Board board = getOrCreate(id);
+        if (board == null) {
+            final OpeningBoard openingBoard = this.openingBoards.get(id);
+            // the board is registered before its opening board is removed
+            board = openingBoard != null ? openingBoard.hold(message) : this.boards.get(id);
+        }
+        if (board != null) {
+            board.submit(message);
+        }
+    }
+
+    private void open(String id, OpeningBoard openingBoard) {
+        log.info("creating board {}", id);
+        try {
+            Journal journal = null;
+            try {
+                journal = Journal.open(this.journalDirectory.resolve(id));
+            } catch (IOException e) {
+                log.error("could not open journal of board " + id + ", keeping it in memory", e);
+            }
+            final Board board = newHeadlessBoard(id, journal);
+            openingBoard.opened(board);
+            this.boards.put(id, board);
+        } catch (RuntimeException e) {
+            log.error("could not create board " + id, e);
+        } finally {
+            this.openingBoards.remove(id);
+        }
+    }
+
+    private Board newHeadlessBoard(String id, Journal journal) {
+        return new Board(id, this.overflowPolicy,
+                MoreExecutors.newSequentialExecutor(this.headlessModelExecutor), journal,
+                spillPath(id), this.heapBudget);
+    }
+
+    private Path spillPath(String id) {
+        return this.spillDirectory != null ? this.spillDirectory.resolve(id + ".lbs") : null;
+    }
+
+    /**
+     * Waits for the journals being opened, so that their boards are closed as well.
+     */
+    @Override
+    public void close() throws InterruptedException, IOException {
+        this.closed = true;
+        this.journalOpenExecutor.shutdown();
+        //noinspection ResultOfMethodCallIgnored
+        this.journalOpenExecutor.awaitTermination(CLOSE_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        for (final Board board : this.boards.values()) {
+            board.close();
+        }
+        this.defaultModelExecutor.shutdown();
+        this.headlessModelExecutor.shutdown();
+        //noinspection ResultOfMethodCallIgnored
+        this.defaultModelExecutor.awaitTermination(CLOSE_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        //noinspection ResultOfMethodCallIgnored
+        this.headlessModelExecutor.awaitTermination(CLOSE_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+    }
+
+    /**
+     * A board whose journal is being opened, which holds back the messages addressed to it.
+     */
+    private class OpeningBoard {
+        private final Object monitor = new Object();
+        private final List<Message> heldMessages = new ArrayList<>();
+        private Board board;
+
+        /**
+         * @return the board if it has been opened in the meantime, so that the caller submits the message,
+         *      otherwise {@code null} after holding back or dropping the message.
+         */
+        Board hold(Message message) {
+            synchronized (this.monitor) {
+                if (this.board != null) {
+                    return this.board;
+                }
+                if (this.heldMessages.size() < MAX_HELD_MESSAGE_COUNT) {
+                    this.heldMessages.add(message);
+                } else {
+                    heldMessageDropCount.increment();
+                }
+                return null;
+            }
+        }
+
+        void opened(Board board) {
+            synchronized (this.monitor) {
+                // the held messages fit into the ingestion queue of the new board, so submitting never blocks
+                for (final Message message : this.heldMessages) {
+                    board.submit(message);
+                }
+                this.heldMessages.clear();
+                this.board = board;
+            }
+        }
+    }
+}
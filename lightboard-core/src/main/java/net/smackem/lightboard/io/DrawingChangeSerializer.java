@@ -0,0 +1,37 @@
+package net.smackem.lightboard.io;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+import net.smackem.lightboard.model.DrawingChange;
+
+import java.io.IOException;
+
+class DrawingChangeSerializer extends StdSerializer<DrawingChange> {
+
+    DrawingChangeSerializer() {
+        super(DrawingChange.class);
+    }
+
+    @Override
+    public void serialize(DrawingChange change, JsonGenerator json, SerializerProvider serializerProvider) throws IOException {
+        json.writeStartObject();
+        json.writeStringField("kind", change.kind().name());
+        json.writeNumberField("sequence", change.sequence());
+        switch (change.kind()) {
+            case FIGURE_ADDED, FIGURE_REPLACED -> {
+                json.writeNumberField("index", change.figureIndex());
+                serializerProvider.defaultSerializeField("figure", change.figure(), json);
+            }
+            case FIGURE_REMOVED -> json.writeNumberField("index", change.figureIndex());
+            case POINT_APPENDED -> {
+                json.writeNumberField("index", change.figureIndex());
+                json.writeNumberField("x", change.x());
+                json.writeNumberField("y", change.y());
+            }
+            case CLEARED -> {
+            }
+        }
+        json.writeEndObject();
+    }
+}
@@ -0,0 +1,24 @@
+package net.smackem.lightboard.io;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+
+/**
+ * The JSON representation of drawings and drawing changes served by {@link MessageExchangeHost}.
+ */
+public final class DrawingJson {
+    private DrawingJson() {
+        throw new IllegalAccessError();
+    }
+
+    /**
+     * @return a new mapper that serializes {@link net.smackem.lightboard.model.DrawingSnapshot}s and
+     *      {@link net.smackem.lightboard.model.DrawingChange}s, writing points as {@code {"x": .., "y": ..}} objects.
+     */
+    public static ObjectMapper createObjectMapper() {
+        return new ObjectMapper()
+                .registerModule(new SimpleModule()
+                        .addSerializer(new PointSequenceSerializer())
+                        .addSerializer(new DrawingChangeSerializer()));
+    }
+}
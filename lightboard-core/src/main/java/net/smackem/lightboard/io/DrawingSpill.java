@@ -0,0 +1,355 @@
+package net.smackem.lightboard.io;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import net.smackem.lightboard.metrics.MetricsRegistry;
+import net.smackem.lightboard.model.DocumentSnapshot;
+import net.smackem.lightboard.model.Drawing;
+import net.smackem.lightboard.model.DrawingSnapshot;
+import net.smackem.lightboard.model.Figure;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps the drawings of the document of a {@link Board} within a heap budget. When the estimated heap size of the loaded
+ * drawings exceeds the budget, the least recently used drawings are encoded as exact drawing bodies, see
+ * {@link BinaryFormat}, and written to a spill file, and are loaded from there when they are accessed again.
+ * The encoding is exact, so that a reloaded drawing has the content of the version it has been evicted at.
+ * <p>
+ *     The selected drawing and its neighbours are never evicted. Drawings are used when they are selected or
+ *     loaded; usage is sampled each time the heap size is checked, i.e. periodically and after each reload.
+ *     A drawing that is evicted again without having been modified reuses its encoding in the spill file.
+ * </p>
+ * <p>
+ *     The loader of an evicted drawing, which may also be held by a journal snapshot, refers to an {@link Entry}.
+ *     Once an entry is no longer reachable, its region of the spill file is freed and reused by later evictions,
+ *     and the file is truncated if the region is at its end.
+ * </p>
+ */
+public final class DrawingSpill implements AutoCloseable {
+    private static final Logger log = LoggerFactory.getLogger(DrawingSpill.class);
+    private static final long TRIM_INTERVAL_MILLIS = 1000;
+    private static final int POINT_HEAP_SIZE = 8;
+    private static final int FIGURE_HEAP_SIZE = 96;
+
+    private final Board board;
+    private final Path path;
+    private final FileChannel channel;
+    private final long heapBudget;
+    private final ScheduledExecutorService executor;
+    private final ConcurrentMap<Drawing, Long> lastUse = new ConcurrentHashMap<>();
+    private final AtomicLong clock = new AtomicLong();
+    private final AtomicLong reloadCount = new AtomicLong();
+    // accessed by the spill thread only
+    private final Map<Drawing, Entry> entries = new HashMap<>();
+    private final ReferenceQueue<Entry> unreachableEntries = new ReferenceQueue<>();
+    private final Set<Region> regions = new HashSet<>();
+    private final NavigableMap<Long, Long> freeRegions = new TreeMap<>();
+    private volatile long fileSize;
+    private volatile long freeSize;
+    private volatile long evictionCount;
+    private volatile long heapSize;
+
+    /**
+     * @param path the spill file, which is created or truncated and deleted when the spill is closed.
+     * @param heapBudget the estimated number of bytes the figures of the loaded drawings may occupy.
+     */
+    DrawingSpill(Board board, Path path, long heapBudget) throws IOException {
+        this.board = Objects.requireNonNull(board);
+        this.path = path;
+        this.heapBudget = heapBudget;
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        this.executor = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder()
+                .setNameFormat("drawing-spill-" + board.id()).setDaemon(true).build());
+        this.executor.scheduleWithFixedDelay(this::trim, TRIM_INTERVAL_MILLIS, TRIM_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+        final MetricsRegistry metrics = MetricsRegistry.defaultRegistry();
+        final Map<String, String> labels = Map.of("board", board.id());
+        metrics.gauge("lightboard_spill_heap_bytes", "Estimated heap size of the loaded drawings at the last check",
+                labels, this::heapSize);
+        metrics.counter("lightboard_spill_evictions_total", "Drawings evicted to the spill file",
+                labels, this::evictionCount);
+        metrics.counter("lightboard_spill_reloads_total", "Drawings reloaded from the spill file",
+                labels, this::reloadCount);
+        metrics.gauge("lightboard_spill_file_bytes", "Size of the spill file",
+                labels, this::fileSize);
+        metrics.gauge("lightboard_spill_free_bytes", "Bytes of the spill file that are free for reuse",
+                labels, this::freeSize);
+    }
+
+    public long heapBudget() {
+        return this.heapBudget;
+    }
+
+    /**
+     * @return the estimated heap size of the loaded drawings at the last check.
+     */
+    public long heapSize() {
+        return this.heapSize;
+    }
+
+    public long evictionCount() {
+        return this.evictionCount;
+    }
+
+    public long reloadCount() {
+        return this.reloadCount.get();
+    }
+
+    /**
+     * @return the size of the spill file, including its free regions.
+     */
+    public long fileSize() {
+        return this.fileSize;
+    }
+
+    /**
+     * @return the number of bytes of the spill file that are free for reuse.
+     */
+    public long freeSize() {
+        return this.freeSize;
+    }
+
+    /**
+     * Checks the heap size now rather than on the next periodic check.
+     */
+    public void requestTrim() {
+        try {
+            this.executor.execute(this::trim);
+        } catch (RejectedExecutionException ignored) {
+            // closed
+        }
+    }
+
+    /**
+     * Checks the heap size now and waits for the check to complete.
+     */
+    void trimNow() throws InterruptedException, ExecutionException {
+        this.executor.submit(this::trim).get();
+    }
+
+    static long estimateHeapSize(DrawingSnapshot drawing) {
+        final List<Figure> figures = drawing.figures();
+        return (long) drawing.pointCount() * POINT_HEAP_SIZE + (long) figures.size() * FIGURE_HEAP_SIZE;
+    }
+
+    private void trim() {
+        try {
+            releaseUnreachableRegions();
+            // an entry of a drawing modified since its eviction is never reused, but may still be loaded
+            this.entries.entrySet().removeIf(entry -> {
+                final DrawingSnapshot snapshot = entry.getKey().loadedSnapshot();
+                return snapshot != null && snapshot.version() != entry.getValue().version;
+            });
+            final DocumentSnapshot snapshot = this.board.document().snapshot();
+            final List<Drawing> drawings = snapshot.drawings();
+            final int drawingIndex = snapshot.drawingIndex();
+            final long now = this.clock.incrementAndGet();
+            final List<Drawing> candidates = new ArrayList<>();
+            long heapSize = 0;
+            for (int i = 0; i < drawings.size(); i++) {
+                final Drawing drawing = drawings.get(i);
+                if (Math.abs(i - drawingIndex) <= 1) {
+                    this.lastUse.put(drawing, now);
+                }
+                if (drawing.isLoaded() == false) {
+                    continue;
+                }
+                heapSize += estimateHeapSize(drawing.snapshot());
+                if (Math.abs(i - drawingIndex) > 1) {
+                    candidates.add(drawing);
+                }
+            }
+            if (heapSize > this.heapBudget) {
+                candidates.sort(Comparator.comparingLong(drawing -> this.lastUse.getOrDefault(drawing, 0L)));
+                for (final Drawing drawing : candidates) {
+                    if (heapSize <= this.heapBudget) {
+                        break;
+                    }
+                    final DrawingSnapshot drawingSnapshot = drawing.snapshot();
+                    if (evict(drawing, drawingSnapshot)) {
+                        heapSize -= estimateHeapSize(drawingSnapshot);
+                    }
+                }
+            }
+            this.heapSize = heapSize;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            log.error("could not trim document", e);
+        }
+    }
+
+    private boolean evict(Drawing drawing, DrawingSnapshot snapshot) throws IOException, InterruptedException {
+        Entry entry = this.entries.get(drawing);
+        if (entry == null || entry.version != snapshot.version()) {
+            final byte[] bytes = BinaryDrawingWriter.encodeExactDrawingBody(snapshot);
+            final ByteBuffer buffer = ByteBuffer.wrap(bytes);
+            final long offset = allocate(bytes.length);
+            while (buffer.hasRemaining()) {
+                this.channel.write(buffer, offset + buffer.position());
+            }
+            entry = new Entry(snapshot.version(), offset, bytes.length);
+            this.regions.add(new Region(entry, this.unreachableEntries));
+            this.entries.put(drawing, entry);
+        }
+        final Entry evictedEntry = entry;
+        final boolean evicted;
+        try {
+            evicted = CompletableFuture.supplyAsync(
+                    () -> drawing.evict(snapshot.version(), () -> reload(drawing, evictedEntry)),
+                    this.board.modelExecutor()).get();
+        } catch (ExecutionException e) {
+            throw new IOException("could not evict drawing", e.getCause());
+        }
+        if (evicted == false) {
+            return false;
+        }
+        this.evictionCount++;
+        return true;
+    }
+
+    private List<Figure> reload(Drawing drawing, Entry entry) {
+        final ByteBuffer buffer = ByteBuffer.allocate(entry.length);
+        try {
+            while (buffer.hasRemaining()) {
+                if (this.channel.read(buffer, entry.offset + buffer.position()) < 0) {
+                    throw new IOException("unexpected end of spill file " + this.path);
+                }
+            }
+            buffer.flip();
+            final List<Figure> figures = BinaryDrawingReader.decodeExactDrawingBody(buffer);
+            this.reloadCount.incrementAndGet();
+            this.lastUse.put(drawing, this.clock.incrementAndGet());
+            requestTrim();
+            return figures;
+        } catch (IOException e) {
+            throw new UncheckedIOException("could not reload drawing from " + this.path, e);
+        }
+    }
+
+    /**
+     * @return the offset of a region of the specified length, the first free region that is large enough
+     *      or else the end of the file.
+     */
+    private long allocate(int length) throws IOException {
+        releaseUnreachableRegions();
+        for (final Map.Entry<Long, Long> free : this.freeRegions.entrySet()) {
+            if (free.getValue() >= length) {
+                final long offset = free.getKey();
+                this.freeRegions.remove(offset);
+                if (free.getValue() > length) {
+                    this.freeRegions.put(offset + length, free.getValue() - length);
+                }
+                this.freeSize -= length;
+                return offset;
+            }
+        }
+        final long offset = this.fileSize;
+        this.fileSize += length;
+        return offset;
+    }
+
+    private void releaseUnreachableRegions() throws IOException {
+        Reference<? extends Entry> reference;
+        while ((reference = this.unreachableEntries.poll()) != null) {
+            final Region region = (Region) reference;
+            this.regions.remove(region);
+            free(region.offset, region.length);
+        }
+    }
+
+    /**
+     * Adds the specified region to the free regions, merging it with adjacent free regions.
+     */
+    private void free(long offset, long length) throws IOException {
+        long start = offset;
+        long end = offset + length;
+        final Map.Entry<Long, Long> preceding = this.freeRegions.floorEntry(start);
+        if (preceding != null && preceding.getKey() + preceding.getValue() == start) {
+            start = preceding.getKey();
+            this.freeRegions.remove(start);
+        }
+        final Long followingLength = this.freeRegions.remove(end);
+        if (followingLength != null) {
+            end += followingLength;
+        }
+        this.freeSize += length;
+        if (end == this.fileSize) {
+            this.freeSize -= end - start;
+            this.fileSize = start;
+            this.channel.truncate(start);
+        } else {
+            this.freeRegions.put(start, end - start);
+        }
+    }
+
+    /**
+     * Deletes the spill file. Evicted drawings can no longer be loaded afterwards.
+     */
+    @Override
+    public void close() throws IOException, InterruptedException {
+        this.executor.shutdown();
+        this.executor.awaitTermination(10, TimeUnit.SECONDS);
+        this.channel.close();
+        Files.deleteIfExists(this.path);
+        log.info("drawing spill closed: {} evictions, {} reloads, {} bytes spilled, {} bytes free",
+                this.evictionCount, this.reloadCount.get(), this.fileSize, this.freeSize);
+    }
+
+    /**
+     * The region of the spill file that holds the encoding of an {@link Entry}, which is enqueued
+     * when the entry is no longer reachable.
+     */
+    private static class Region extends WeakReference<Entry> {
+        final long offset;
+        final int length;
+
+        Region(Entry entry, ReferenceQueue<Entry> queue) {
+            super(entry, queue);
+            this.offset = entry.offset;
+            this.length = entry.length;
+        }
+    }
+
+    private static class Entry {
+        final long version;
+        final long offset;
+        final int length;
+
+        Entry(long version, long offset, int length) {
+            this.version = version;
+            this.offset = offset;
+            this.length = length;
+        }
+    }
+}
@@ -0,0 +1,289 @@
+package net.smackem.lightboard.io;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.sun.net.httpserver.HttpExchange;
+import net.smackem.lightboard.messaging.*;
+import net.smackem.lightboard.model.Rgba;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * Streams the messages applied to a board to a single HTTP client as server-sent events.
+ * <p>
+ *     Messages are buffered per client, so that a slow client never blocks the publisher or other clients.
+ *     Consecutive figure points are coalesced into a single {@code points} event while the client lags behind.
+ *     If the buffer still overflows, it is discarded and replaced by a {@code resync} event that tells the client
+ *     to download the drawing again.
+ * </p>
+ * <p>
+ *     Each event but {@code resync} has the id {@code <drawing>:<version>} and carries the {@code drawing}
+ *     and {@code version} in its data, i.e. the id of the drawing it has been applied to and the version
+ *     of that drawing after it has been applied. A coalesced {@code points} event has the version of its last point.
+ *     A client can thus request the changes it has missed after a {@code resync} from
+ *     {@code /drawing?drawing=<drawing>&since=<version>}.
+ * </p>
+ * <p>
+ *     Events carry the outcome of the messages, see {@link MessageApplier.Listener}, so that clients never repeat
+ *     a computation of the server: a {@code figureEnd} event carries the figure as simplified, which replaces the
+ *     current figure, and an erasure is streamed as a {@code figureRemove} event for each removed figure.
+ * </p>
+ * <p>
+ *     The stream is guarded by a lock rather than a monitor, so that waiting for events does not pin
+ *     the carrier of a virtual thread.
+ * </p>
+ */
+class EventStream implements Flow.Subscriber<Message>, Runnable {
+    private static final Logger log = LoggerFactory.getLogger(EventStream.class);
+    private static final int MAX_PENDING_EVENTS = 256;
+    private static final int MAX_COALESCED_POINTS = 1024;
+    private static final long KEEP_ALIVE_MILLIS = 15_000;
+    private static final Object RESYNC = new Object();
+
+    private final HttpExchange exchange;
+    private final JsonFactory jsonFactory;
+    private final Consumer<EventStream> onClose;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition eventsPending = this.lock.newCondition();
+    private final ArrayDeque<Object> pendingEvents = new ArrayDeque<>();
+    private final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+    private Flow.Subscription subscription;
+    private boolean completed;
+    private long coalescedPointCount;
+    private long droppedEventCount;
+
+    /**
+     * @param onClose called by {@link #run()} when the stream has ended.
+     */
+    EventStream(HttpExchange exchange, JsonFactory jsonFactory, Consumer<EventStream> onClose) {
+        this.exchange = exchange;
+        this.jsonFactory = jsonFactory;
+        this.onClose = onClose;
+    }
+
+    @Override
+    public void onSubscribe(Flow.Subscription subscription) {
+        this.lock.lock();
+        try {
+            this.subscription = subscription;
+        } finally {
+            this.lock.unlock();
+        }
+        subscription.request(Long.MAX_VALUE);
+    }
+
+    @Override
+    public void onNext(Message item) {
+        this.lock.lock();
+        try {
+            if (item instanceof FigurePointMessage figurePoint) {
+                final Object last = this.pendingEvents.peekLast();
+                if (last instanceof PointBatch batch && batch.size < MAX_COALESCED_POINTS) {
+                    batch.add(figurePoint);
+                    this.coalescedPointCount++;
+                    return;
+                }
+                final PointBatch batch = new PointBatch();
+                batch.add(figurePoint);
+                this.pendingEvents.addLast(batch);
+            } else {
+                this.pendingEvents.addLast(item);
+            }
+            if (this.pendingEvents.size() > MAX_PENDING_EVENTS) {
+                this.droppedEventCount += this.pendingEvents.size();
+                this.pendingEvents.clear();
+                this.pendingEvents.addLast(RESYNC);
+            }
+            this.eventsPending.signal();
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+        log.error("event stream aborted", throwable);
+        close();
+    }
+
+    @Override
+    public void onComplete() {
+        close();
+    }
+
+    @Override
+    public void run() {
+        try (final OutputStream os = this.exchange.getResponseBody()) {
+            while (true) {
+                final Object event;
+                this.lock.lock();
+                try {
+                    if (this.pendingEvents.isEmpty() && this.completed == false) {
+                        //noinspection ResultOfMethodCallIgnored
+                        this.eventsPending.await(KEEP_ALIVE_MILLIS, TimeUnit.MILLISECONDS);
+                    }
+                    if (this.pendingEvents.isEmpty() && this.completed) {
+                        break;
+                    }
+                    event = this.pendingEvents.pollFirst();
+                } finally {
+                    this.lock.unlock();
+                }
+                if (event != null) {
+                    writeEvent(event, os);
+                } else {
+                    os.write(": keep-alive\n\n".getBytes(StandardCharsets.UTF_8));
+                }
+                os.flush();
+            }
+        } catch (IOException e) {
+            log.info("event stream closed by client: {}", e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            final Flow.Subscription subscription;
+            this.lock.lock();
+            try {
+                subscription = this.subscription;
+                log.info("event stream ended, {} points coalesced, {} events dropped",
+                        this.coalescedPointCount, this.droppedEventCount);
+            } finally {
+                this.lock.unlock();
+            }
+            if (subscription != null) {
+                subscription.cancel();
+            }
+            this.exchange.close();
+            this.onClose.accept(this);
+        }
+    }
+
+    /**
+     * Ends the stream after the pending events have been written.
+     */
+    void close() {
+        this.lock.lock();
+        try {
+            this.completed = true;
+            this.eventsPending.signal();
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    private void writeEvent(Object event, OutputStream os) throws IOException {
+        final long drawingId, drawingVersion;
+        if (event instanceof PointBatch batch) {
+            drawingId = batch.drawingId;
+            drawingVersion = batch.drawingVersion;
+        } else if (event instanceof Message message) {
+            drawingId = message.drawingId();
+            drawingVersion = message.drawingVersion();
+        } else {
+            drawingId = 0;
+            drawingVersion = 0;
+        }
+        this.buffer.reset();
+        final String name;
+        try (final JsonGenerator json = this.jsonFactory.createGenerator(this.buffer)) {
+            json.writeStartObject();
+            if (drawingId != 0) {
+                json.writeNumberField("drawing", drawingId);
+                json.writeNumberField("version", drawingVersion);
+            }
+            name = writeEventData(event, json);
+            json.writeEndObject();
+        }
+        final String header = drawingId != 0
+                ? "id: " + drawingId + ":" + drawingVersion + "\nevent: " + name + "\ndata: "
+                : "event: " + name + "\ndata: ";
+        os.write(header.getBytes(StandardCharsets.UTF_8));
+        this.buffer.writeTo(os);
+        os.write('\n');
+        os.write('\n');
+    }
+
+    private static String writeEventData(Object event, JsonGenerator json) throws IOException {
+        if (event instanceof PointBatch batch) {
+            json.writeArrayFieldStart("points");
+            for (int i = 0; i < batch.size; i++) {
+                json.writeStartObject();
+                json.writeNumberField("x", batch.coords[i * 2]);
+                json.writeNumberField("y", batch.coords[i * 2 + 1]);
+                json.writeEndObject();
+            }
+            json.writeEndArray();
+            return "points";
+        }
+        if (event instanceof FigureBeginMessage figureBegin) {
+            final Rgba color = figureBegin.color();
+            json.writeNumberField("x", figureBegin.point().x);
+            json.writeNumberField("y", figureBegin.point().y);
+            json.writeObjectFieldStart("color");
+            json.writeNumberField("r", color.r());
+            json.writeNumberField("g", color.g());
+            json.writeNumberField("b", color.b());
+            json.writeNumberField("a", color.a());
+            json.writeEndObject();
+            json.writeNumberField("strokeWidth", figureBegin.strokeWidth());
+            return "figureBegin";
+        }
+        if (event instanceof FigureEndMessage figureEnd) {
+            json.writeNumberField("x", figureEnd.point().x);
+            json.writeNumberField("y", figureEnd.point().y);
+            json.writeObjectField("figure", figureEnd.figure());
+            return "figureEnd";
+        }
+        if (event instanceof FigureRemoveMessage figureRemove) {
+            json.writeNumberField("index", figureRemove.figureIndex());
+            return "figureRemove";
+        }
+        if (event instanceof DrawingSwitchMessage drawingSwitch) {
+            json.writeNumberField("index", drawingSwitch.drawingIndex());
+            json.writeBooleanField("inserted", drawingSwitch.inserted());
+            return "drawingSwitch";
+        }
+        if (event instanceof InitSizeMessage initSize) {
+            json.writeNumberField("width", initSize.width());
+            json.writeNumberField("height", initSize.height());
+            return "size";
+        }
+        if (event instanceof RedrawMessage) {
+            return "redraw";
+        }
+        if (event == RESYNC) {
+            return "resync";
+        }
+        throw new IllegalArgumentException("unsupported event type " + event.getClass());
+    }
+
+    private static class PointBatch {
+        float[] coords = new float[32];
+        int size;
+        long drawingId;
+        long drawingVersion;
+
+        void add(FigurePointMessage message) {
+            this.drawingId = message.drawingId();
+            this.drawingVersion = message.drawingVersion();
+            if (this.size * 2 == this.coords.length) {
+                this.coords = Arrays.copyOf(this.coords, this.coords.length * 2);
+            }
+            this.coords[this.size * 2] = (float) message.point().x;
+            this.coords[this.size * 2 + 1] = (float) message.point().y;
+            this.size++;
+        }
+    }
+}
@@ -0,0 +1,282 @@
+package net.smackem.lightboard.io;
+
+import net.smackem.lightboard.messaging.IngestionQueue;
+
+import java.net.InetAddress;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Objects;
+import java.util.concurrent.Executor;
+
+/**
+ * The settings of a {@link MessageExchangeHost}. Instances are immutable, each {@code with...} method
+ * returns a modified copy of the settings.
+ */
+public final class HostConfig {
+    public static final int DEFAULT_OSC_PORT = 7771;
+    public static final int DEFAULT_HTTP_PORT = 7772;
+    private static final HostConfig DEFAULTS = new HostConfig();
+
+    private InetAddress bindAddress;
+    private int oscPort = DEFAULT_OSC_PORT;
+    private int httpPort = DEFAULT_HTTP_PORT;
+    private int oscReceiveThreads = Math.min(Runtime.getRuntime().availableProcessors(), 4);
+    private int oscReceiveBufferSize = 4 << 20;
+    private int httpBacklog = 128;
+    private int maxConcurrentRequests = 256;
+    private int maxEventStreams = 256;
+    private Executor httpExecutor;
+    private Duration shutdownTimeout = Duration.ofSeconds(10);
+    private IngestionQueue.OverflowPolicy overflowPolicy = IngestionQueue.OverflowPolicy.COALESCE_POINTS;
+    private Path journalDirectory;
+    private Path spillDirectory;
+    private long heapBudget = 256L << 20;
+
+    private HostConfig() {
+    }
+
+    /**
+     * @return the settings that serve OSC and HTTP on the default ports of all local addresses
+     *      and keep the boards and all of their drawings in memory only.
+     */
+    public static HostConfig defaults() {
+        return DEFAULTS;
+    }
+
+    /**
+     * @return the address the OSC and HTTP sockets are bound to or {@code null} for the wildcard address.
+     */
+    public InetAddress bindAddress() {
+        return this.bindAddress;
+    }
+
+    public HostConfig withBindAddress(InetAddress bindAddress) {
+        final HostConfig copy = copy();
+        copy.bindAddress = bindAddress;
+        return copy;
+    }
+
+    public int oscPort() {
+        return this.oscPort;
+    }
+
+    public HostConfig withOscPort(int oscPort) {
+        final HostConfig copy = copy();
+        copy.oscPort = checkPort(oscPort);
+        return copy;
+    }
+
+    public int httpPort() {
+        return this.httpPort;
+    }
+
+    public HostConfig withHttpPort(int httpPort) {
+        final HostConfig copy = copy();
+        copy.httpPort = checkPort(httpPort);
+        return copy;
+    }
+
+    /**
+     * @return the number of threads that receive and decode OSC datagrams, each on its own socket.
+     *      The datagrams of a sender are always handled by the same thread. More than one thread requires
+     *      {@code SO_REUSEPORT}, which lets Linux distribute the senders among the sockets.
+     */
+    public int oscReceiveThreads() {
+        return this.oscReceiveThreads;
+    }
+
+    public HostConfig withOscReceiveThreads(int oscReceiveThreads) {
+        final HostConfig copy = copy();
+        copy.oscReceiveThreads = checkPositive(oscReceiveThreads, "oscReceiveThreads");
+        return copy;
+    }
+
+    /**
+     * @return the size of the receive buffer of each OSC socket, which absorbs bursts of datagrams
+     *      while the receiving thread is busy. The operating system may cap it, e.g. at {@code net.core.rmem_max}.
+     */
+    public int oscReceiveBufferSize() {
+        return this.oscReceiveBufferSize;
+    }
+
+    public HostConfig withOscReceiveBufferSize(int oscReceiveBufferSize) {
+        final HostConfig copy = copy();
+        copy.oscReceiveBufferSize = checkPositive(oscReceiveBufferSize, "oscReceiveBufferSize");
+        return copy;
+    }
+
+    /**
+     * @return the number of incoming HTTP connections the operating system queues until they are accepted.
+     */
+    public int httpBacklog() {
+        return this.httpBacklog;
+    }
+
+    public HostConfig withHttpBacklog(int httpBacklog) {
+        final HostConfig copy = copy();
+        copy.httpBacklog = checkPositive(httpBacklog, "httpBacklog");
+        return copy;
+    }
+
+    /**
+     * @return the number of HTTP requests that are handled at the same time. Further requests wait for a
+     *      request to complete. Event streams count only while they are opened.
+     */
+    public int maxConcurrentRequests() {
+        return this.maxConcurrentRequests;
+    }
+
+    public HostConfig withMaxConcurrentRequests(int maxConcurrentRequests) {
+        final HostConfig copy = copy();
+        copy.maxConcurrentRequests = checkPositive(maxConcurrentRequests, "maxConcurrentRequests");
+        return copy;
+    }
+
+    /**
+     * @return the number of server-sent event streams that may be open at the same time.
+     */
+    public int maxEventStreams() {
+        return this.maxEventStreams;
+    }
+
+    public HostConfig withMaxEventStreams(int maxEventStreams) {
+        final HostConfig copy = copy();
+        copy.maxEventStreams = checkPositive(maxEventStreams, "maxEventStreams");
+        return copy;
+    }
+
+    /**
+     * @return the executor that handles the HTTP requests or {@code null} to let the host create one,
+     *      which starts a virtual thread per request if the runtime supports virtual threads.
+     *      An executor passed in is not shut down by the host.
+     */
+    public Executor httpExecutor() {
+        return this.httpExecutor;
+    }
+
+    public HostConfig withHttpExecutor(Executor httpExecutor) {
+        final HostConfig copy = copy();
+        copy.httpExecutor = httpExecutor;
+        return copy;
+    }
+
+    /**
+     * @return the time the host waits for pending requests and exports when it is closed.
+     */
+    public Duration shutdownTimeout() {
+        return this.shutdownTimeout;
+    }
+
+    public HostConfig withShutdownTimeout(Duration shutdownTimeout) {
+        final HostConfig copy = copy();
+        copy.shutdownTimeout = Objects.requireNonNull(shutdownTimeout);
+        return copy;
+    }
+
+    public IngestionQueue.OverflowPolicy overflowPolicy() {
+        return this.overflowPolicy;
+    }
+
+    public HostConfig withOverflowPolicy(IngestionQueue.OverflowPolicy overflowPolicy) {
+        final HostConfig copy = copy();
+        copy.overflowPolicy = Objects.requireNonNull(overflowPolicy);
+        return copy;
+    }
+
+    /**
+     * @return the directory in which the boards are journaled, the default board in its subdirectory
+     *      {@code default}, or {@code null} to keep them in memory only.
+     */
+    public Path journalDirectory() {
+        return this.journalDirectory;
+    }
+
+    public HostConfig withJournalDirectory(Path journalDirectory) {
+        final HostConfig copy = copy();
+        copy.journalDirectory = journalDirectory;
+        return copy;
+    }
+
+    /**
+     * @return the directory in which each board has a spill file, see {@link DrawingSpill}, or {@code null}
+     *      to keep all drawings in memory.
+     */
+    public Path spillDirectory() {
+        return this.spillDirectory;
+    }
+
+    public HostConfig withSpillDirectory(Path spillDirectory) {
+        final HostConfig copy = copy();
+        copy.spillDirectory = spillDirectory;
+        return copy;
+    }
+
+    /**
+     * @return the estimated number of bytes the loaded drawings of each board may occupy if the boards
+     *      have a spill file.
+     */
+    public long heapBudget() {
+        return this.heapBudget;
+    }
+
+    public HostConfig withHeapBudget(long heapBudget) {
+        if (heapBudget <= 0) {
+            throw new IllegalArgumentException("heapBudget must be positive: " + heapBudget);
+        }
+        final HostConfig copy = copy();
+        copy.heapBudget = heapBudget;
+        return copy;
+    }
+
+    private HostConfig copy() {
+        final HostConfig copy = new HostConfig();
+        copy.bindAddress = this.bindAddress;
+        copy.oscPort = this.oscPort;
+        copy.httpPort = this.httpPort;
+        copy.oscReceiveThreads = this.oscReceiveThreads;
+        copy.oscReceiveBufferSize = this.oscReceiveBufferSize;
+        copy.httpBacklog = this.httpBacklog;
+        copy.maxConcurrentRequests = this.maxConcurrentRequests;
+        copy.maxEventStreams = this.maxEventStreams;
+        copy.httpExecutor = this.httpExecutor;
+        copy.shutdownTimeout = this.shutdownTimeout;
+        copy.overflowPolicy = this.overflowPolicy;
+        copy.journalDirectory = this.journalDirectory;
+        copy.spillDirectory = this.spillDirectory;
+        copy.heapBudget = this.heapBudget;
+        return copy;
+    }
+
+    private static int checkPort(int port) {
+        if (port < 0 || port > 0xffff) {
+            throw new IllegalArgumentException("port out of range: " + port);
+        }
+        return port;
+    }
+
+    private static int checkPositive(int value, String name) {
+        if (value <= 0) {
+            throw new IllegalArgumentException(name + " must be positive: " + value);
+        }
+        return value;
+    }
+
+    @Override
+    public String toString() {
+        return "HostConfig{" +
+               "bindAddress=" + this.bindAddress +
+               ", oscPort=" + this.oscPort +
+               ", httpPort=" + this.httpPort +
+               ", oscReceiveThreads=" + this.oscReceiveThreads +
+               ", oscReceiveBufferSize=" + this.oscReceiveBufferSize +
+               ", httpBacklog=" + this.httpBacklog +
+               ", maxConcurrentRequests=" + this.maxConcurrentRequests +
+               ", maxEventStreams=" + this.maxEventStreams +
+               ", shutdownTimeout=" + this.shutdownTimeout +
+               ", overflowPolicy=" + this.overflowPolicy +
+               ", journalDirectory=" + this.journalDirectory +
+               ", spillDirectory=" + this.spillDirectory +
+               ", heapBudget=" + this.heapBudget +
+               '}';
+    }
+}
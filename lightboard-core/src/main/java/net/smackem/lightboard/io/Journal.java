@@ -0,0 +1,654 @@
+package net.smackem.lightboard.io;
+
+import net.smackem.lightboard.messaging.*;
+import net.smackem.lightboard.model.Document;
+import net.smackem.lightboard.model.DocumentSnapshot;
+import net.smackem.lightboard.model.Drawing;
+import net.smackem.lightboard.model.Figure;
+import net.smackem.lightboard.model.PointSequence;
+import net.smackem.lightboard.model.Rgba;
+import net.smackem.lightboard.model.SimplificationMode;
+import org.locationtech.jts.geom.Coordinate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Supplier;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * A write-ahead journal of the messages applied to a {@link Document}.
+ * <p>
+ *     {@link #open(Path)} restores the document from the most recent snapshot and the journal written since.
+ *     Afterwards, the journal is registered as {@link MessageApplier.Listener} and appends every applied message.
+ *     Records are encoded on the applying thread and written by a background thread, which syncs the file
+ *     once for all records that have accumulated in the meantime (group commit). If writing fails, the journal
+ *     stops recording, so that it ends with the last record written before the failure, see {@link #isFailed()}.
+ *     The same applies if the records waiting for the writer thread exceed a limit, e.g. because the disk stalls:
+ *     the journal then discards them and stops recording rather than exhausting the heap or blocking the
+ *     applying thread.
+ * </p>
+ * <p>
+ *     When the journal has grown beyond a threshold, the document is snapshotted in the binary format of
+ *     {@link BinaryDrawingWriter} and a new journal is started, so that the journal never grows without bounds.
+ *     Snapshots hold exact drawing bodies, so that restoring a snapshot yields the same figures as replaying
+ *     the journal it replaces.
+ *     Snapshot and journal files carry a generation number; older generations are deleted once the new snapshot
+ *     has been written completely.
+ * </p>
+ */
+public class Journal implements MessageApplier.Listener, AutoCloseable {
+    private static final Logger log = LoggerFactory.getLogger(Journal.class);
+    public static final long DEFAULT_SNAPSHOT_THRESHOLD = 32L << 20;
+    public static final long DEFAULT_MAX_PENDING_BYTES = 64L << 20;
+    private static final Pattern GENERATION_PATTERN = Pattern.compile("(?:journal|snapshot)-(\\d+)\\.lbj?");
+    private static final int READ_BUFFER_SIZE = 64 * 1024;
+
+    private final Path directory;
+    private final Document document;
+    private final long snapshotThreshold;
+    private final long maxPendingBytes;
+    private final Object monitor = new Object();
+    private final Thread writerThread;
+    private List<Object> pendingItems = new ArrayList<>();
+    private FileChannel channel;
+    private long generation;
+    private long bytesSinceSnapshot;
+    private long pendingBytes;
+    private int lastX;
+    private int lastY;
+    private boolean closed;
+    private boolean failed;
+    private long recordCount;
+    private long groupCommitCount;
+
+    private Journal(Path directory, Document document, long generation, FileChannel channel,
+                    long journalSize, long snapshotThreshold, long maxPendingBytes) {
+        this.directory = directory;
+        this.document = document;
+        this.generation = generation;
+        this.channel = channel;
+        this.bytesSinceSnapshot = journalSize;
+        this.snapshotThreshold = snapshotThreshold;
+        this.maxPendingBytes = maxPendingBytes;
+        this.writerThread = new Thread(this::writeLoop, "journal-writer-" + directory.getFileName());
+        this.writerThread.setDaemon(true);
+        this.writerThread.start();
+    }
+
+    public static Journal open(Path directory) throws IOException {
+        return open(directory, DEFAULT_SNAPSHOT_THRESHOLD);
+    }
+
+    /**
+     * Restores the document stored in the specified directory, or creates an empty one if there is none,
+     * and opens the journal for appending.
+     *
+     * @param snapshotThreshold the journal size in bytes that triggers a snapshot.
+     */
+    public static Journal open(Path directory, long snapshotThreshold) throws IOException {
+        return open(directory, snapshotThreshold, DEFAULT_MAX_PENDING_BYTES);
+    }
+
+    /**
+     * @param maxPendingBytes the size in bytes of the records waiting for the writer thread beyond which
+     *      the journal stops recording, see {@link #isFailed()}.
+     */
+    public static Journal open(Path directory, long snapshotThreshold, long maxPendingBytes) throws IOException {
+        Files.createDirectories(directory);
+        final long generation = latestGeneration(directory);
+        final Path snapshotPath = directory.resolve(JournalFormat.snapshotFileName(generation));
+        final Document document;
+        if (Files.exists(snapshotPath)) {
+            try (final InputStream in = Files.newInputStream(snapshotPath)) {
+                document = new BinaryDrawingReader().readDocument(in);
+            }
+        } else {
+            document = new Document();
+        }
+        final Path journalPath = directory.resolve(JournalFormat.journalFileName(generation));
+        final FileChannel channel = FileChannel.open(journalPath,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        final long journalSize;
+        if (channel.size() < JournalFormat.HEADER_SIZE) {
+            channel.truncate(0);
+            writeHeader(channel);
+            journalSize = JournalFormat.HEADER_SIZE;
+        } else {
+            journalSize = replay(channel, document);
+            // discard a record that has been torn by a crash
+            channel.truncate(journalSize);
+        }
+        channel.position(journalSize);
+        deleteGenerationsBefore(directory, generation);
+        return new Journal(directory, document, generation, channel, journalSize, snapshotThreshold, maxPendingBytes);
+    }
+
+    public Document document() {
+        return this.document;
+    }
+
+    /**
+     * @return the number of records appended since the journal has been opened.
+     */
+    public long recordCount() {
+        synchronized (this.monitor) {
+            return this.recordCount;
+        }
+    }
+
+    /**
+     * @return the number of times the journal has been synced to disk.
+     */
+    public long groupCommitCount() {
+        synchronized (this.monitor) {
+            return this.groupCommitCount;
+        }
+    }
+
+    /**
+     * @return the size in bytes of the records waiting for the writer thread.
+     */
+    public long pendingBytes() {
+        synchronized (this.monitor) {
+            return this.pendingBytes;
+        }
+    }
+
+    /**
+     * @return {@code true} if writing the journal has failed or the records waiting for the writer thread have
+     *      exceeded their limit. The journal then no longer records messages, because records appended after
+     *      the failure would follow a gap and could not be replayed correctly.
+     */
+    public boolean isFailed() {
+        synchronized (this.monitor) {
+            return this.failed;
+        }
+    }
+
+    @Override
+    public void messageApplied(Message message, SimplificationMode simplificationMode, double simplificationTolerance) {
+        synchronized (this.monitor) {
+            if (this.closed || this.failed) {
+                return;
+            }
+            final RecordBuffer buffer = currentBuffer();
+            final int start = buffer.length;
+            if (encode(message, simplificationMode, simplificationTolerance, buffer) == false) {
+                return;
+            }
+            this.recordCount++;
+            this.bytesSinceSnapshot += buffer.length - start;
+            this.pendingBytes += buffer.length - start;
+            if (this.pendingBytes > this.maxPendingBytes) {
+                log.error("journal in {} is {} bytes behind, no longer recording", this.directory, this.pendingBytes);
+                this.failed = true;
+                this.pendingItems.clear();
+                this.pendingBytes = 0;
+                this.monitor.notifyAll();
+                return;
+            }
+            this.monitor.notifyAll();
+            if (this.bytesSinceSnapshot >= this.snapshotThreshold) {
+                requestSnapshot();
+            }
+        }
+    }
+
+    /**
+     * Writes all pending records and stops the writer thread.
+     */
+    @Override
+    public void close() throws IOException, InterruptedException {
+        synchronized (this.monitor) {
+            this.closed = true;
+            this.monitor.notifyAll();
+        }
+        this.writerThread.join();
+        this.channel.close();
+    }
+
+    private RecordBuffer currentBuffer() {
+        if (this.pendingItems.isEmpty() == false
+                && this.pendingItems.get(this.pendingItems.size() - 1) instanceof RecordBuffer buffer) {
+            return buffer;
+        }
+        final RecordBuffer buffer = new RecordBuffer();
+        this.pendingItems.add(buffer);
+        return buffer;
+    }
+
+    private boolean encode(Message message,
+                           SimplificationMode simplificationMode,
+                           double simplificationTolerance,
+                           RecordBuffer buffer) {
+        if (message instanceof InitSizeMessage initSize) {
+            buffer.writeByte(JournalFormat.INIT_SIZE);
+            buffer.writeVarInt(initSize.width());
+            buffer.writeVarInt(initSize.height());
+        } else if (message instanceof FigureBeginMessage figureBegin) {
+            final Rgba color = figureBegin.color();
+            final boolean streaming = simplificationMode == SimplificationMode.STREAMING;
+            buffer.writeByte(streaming ? JournalFormat.FIGURE_BEGIN_STREAMING : JournalFormat.FIGURE_BEGIN);
+            this.lastX = BinaryFormat.quantize(figureBegin.point().x);
+            this.lastY = BinaryFormat.quantize(figureBegin.point().y);
+            buffer.writeVarInt(BinaryFormat.zigzag(this.lastX));
+            buffer.writeVarInt(BinaryFormat.zigzag(this.lastY));
+            buffer.writeInt(BinaryFormat.packRgba(color.r(), color.g(), color.b(), color.a()));
+            buffer.writeVarInt(BinaryFormat.quantize(figureBegin.strokeWidth()));
+            if (streaming) {
+                buffer.writeVarInt(BinaryFormat.quantize(simplificationTolerance));
+            }
+        } else if (message instanceof FigurePointMessage figurePoint) {
+            buffer.writeByte(JournalFormat.FIGURE_POINT);
+            writeDelta(figurePoint.point(), buffer);
+        } else if (message instanceof FigureEndMessage figureEnd && figureEnd.figure() != null) {
+            buffer.writeByte(JournalFormat.FIGURE_FINISH);
+            writeFigure(figureEnd.figure(), buffer);
+        } else if (message instanceof FigureRemoveMessage figureRemove) {
+            buffer.writeByte(JournalFormat.FIGURE_REMOVE);
+            buffer.writeVarInt(figureRemove.figureIndex());
+        } else if (message instanceof DrawingSwitchMessage drawingSwitch) {
+            if (drawingSwitch.inserted()) {
+                buffer.writeByte(JournalFormat.DRAWING_INSERT);
+            } else {
+                buffer.writeByte(JournalFormat.DRAWING_SELECT);
+                buffer.writeVarInt(drawingSwitch.drawingIndex());
+            }
+        } else {
+            return false;
+        }
+        return true;
+    }
+
+    private void writeDelta(Coordinate point, RecordBuffer buffer) {
+        final int x = BinaryFormat.quantize(point.x);
+        final int y = BinaryFormat.quantize(point.y);
+        buffer.writeVarInt(BinaryFormat.zigzag(x - this.lastX));
+        buffer.writeVarInt(BinaryFormat.zigzag(y - this.lastY));
+        this.lastX = x;
+        this.lastY = y;
+    }
+
+    private static void writeFigure(Figure figure, RecordBuffer buffer) {
+        final Rgba color = figure.color();
+        buffer.writeInt(BinaryFormat.packRgba(color.r(), color.g(), color.b(), color.a()));
+        buffer.writeLong(Double.doubleToLongBits(figure.strokeWidth()));
+        // points are held as floats, so their float bits are lossless
+        final PointSequence points = figure.points();
+        buffer.writeVarInt(points.size());
+        for (int i = 0; i < points.size(); i++) {
+            buffer.writeInt(Float.floatToRawIntBits((float) points.x(i)));
+            buffer.writeInt(Float.floatToRawIntBits((float) points.y(i)));
+        }
+    }
+
+    private static Figure readFigure(RecordInput input) throws IOException {
+        final Rgba color = unpackRgba(input.readInt());
+        final double strokeWidth = Double.longBitsToDouble(input.readLong());
+        final int pointCount = input.readVarInt();
+        if (pointCount < 0 || pointCount > input.remaining() / (2 * Float.BYTES)) {
+            // the points of a torn record are missing
+            throw new EOFException();
+        }
+        final float[] coords = new float[pointCount * 2];
+        for (int i = 0; i < coords.length; i++) {
+            coords[i] = Float.intBitsToFloat(input.readInt());
+        }
+        return new Figure(color, strokeWidth, PointSequence.of(coords, pointCount));
+    }
+
+    private static Rgba unpackRgba(int rgba) {
+        return new Rgba(rgba >>> 24, rgba >>> 16 & 0xff, rgba >>> 8 & 0xff, rgba & 0xff);
+    }
+
+    /**
+     * Captures the document as it is after the most recently appended message and starts a new generation.
+     * Called on the applying thread, so that the snapshot matches the journal exactly. Capturing takes a
+     * supplier of the figures of each drawing, neither encoding nor loading the drawings, which is left
+     * to the writer thread.
+     */
+    private void requestSnapshot() {
+        final DocumentSnapshot document = this.document.snapshot();
+        final List<Supplier<List<Figure>>> drawings = new ArrayList<>(document.drawings().size());
+        for (final Drawing drawing : document.drawings()) {
+            drawings.add(drawing.figuresOfCurrentVersion());
+        }
+        this.generation++;
+        this.pendingItems.add(new SnapshotItem(this.generation, document, drawings));
+        this.bytesSinceSnapshot = JournalFormat.HEADER_SIZE;
+        this.lastX = 0;
+        this.lastY = 0;
+    }
+
+    private void writeLoop() {
+        while (true) {
+            final List<Object> items;
+            synchronized (this.monitor) {
+                while (this.pendingItems.isEmpty() && this.closed == false) {
+                    try {
+                        this.monitor.wait();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                }
+                if (this.pendingItems.isEmpty()) {
+                    return;
+                }
+                items = this.pendingItems;
+                this.pendingItems = new ArrayList<>();
+                this.pendingBytes = 0;
+            }
+            try {
+                for (final Object item : items) {
+                    if (item instanceof RecordBuffer buffer) {
+                        writeFully(this.channel, ByteBuffer.wrap(buffer.bytes, 0, buffer.length));
+                    } else if (item instanceof SnapshotItem snapshot) {
+                        rotate(snapshot);
+                    }
+                }
+                this.channel.force(false);
+            } catch (IOException | UncheckedIOException e) {
+                // the snapshot may fail to load a drawing, too
+                log.error("error writing journal in " + this.directory + ", no longer recording", e);
+                synchronized (this.monitor) {
+                    this.failed = true;
+                    this.pendingItems.clear();
+                    this.pendingBytes = 0;
+                }
+                return;
+            }
+            synchronized (this.monitor) {
+                this.groupCommitCount++;
+            }
+        }
+    }
+
+    private void rotate(SnapshotItem snapshot) throws IOException {
+        this.channel.force(false);
+        final Path snapshotPath = this.directory.resolve(JournalFormat.snapshotFileName(snapshot.generation));
+        final Path tempPath = this.directory.resolve(snapshotPath.getFileName() + ".tmp");
+        final long snapshotSize;
+        try (final FileChannel snapshotChannel = FileChannel.open(tempPath,
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            new BinaryDrawingWriter().writeExact(snapshot.document, snapshot.drawings,
+                    Channels.newOutputStream(snapshotChannel));
+            snapshotChannel.force(true);
+            snapshotSize = snapshotChannel.size();
+        }
+        Files.move(tempPath, snapshotPath, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        final FileChannel newChannel = FileChannel.open(
+                this.directory.resolve(JournalFormat.journalFileName(snapshot.generation)),
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+        writeHeader(newChannel);
+        this.channel.close();
+        this.channel = newChannel;
+        deleteGenerationsBefore(this.directory, snapshot.generation);
+        log.info("journal snapshot {} written: {} bytes", snapshot.generation, snapshotSize);
+    }
+
+    private static long latestGeneration(Path directory) throws IOException {
+        long generation = 0;
+        try (final Stream<Path> files = Files.list(directory)) {
+            for (final Path file : (Iterable<Path>) files::iterator) {
+                final String name = file.getFileName().toString();
+                final Matcher matcher = GENERATION_PATTERN.matcher(name);
+                if (matcher.matches() && name.startsWith("snapshot")) {
+                    generation = Math.max(generation, Long.parseLong(matcher.group(1)));
+                }
+            }
+        }
+        return generation;
+    }
+
+    private static void deleteGenerationsBefore(Path directory, long generation) throws IOException {
+        try (final Stream<Path> files = Files.list(directory)) {
+            for (final Path file : (Iterable<Path>) files::iterator) {
+                final Matcher matcher = GENERATION_PATTERN.matcher(file.getFileName().toString());
+                if (matcher.matches() && Long.parseLong(matcher.group(1)) < generation) {
+                    Files.deleteIfExists(file);
+                }
+            }
+        }
+    }
+
+    private static void writeHeader(FileChannel channel) throws IOException {
+        writeFully(channel, ByteBuffer.wrap(new byte[] {
+                JournalFormat.MAGIC_0, JournalFormat.MAGIC_1, JournalFormat.VERSION, 0 }));
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    /**
+     * Applies all complete records of the journal to the document. Like a torn record at the end, a record
+     * that does not fit the document ends the replay, so that the journal is truncated before it.
+     * @return the length of the journal up to the end of the last valid record.
+     */
+    private static long replay(FileChannel channel, Document document) throws IOException {
+        final long start = System.nanoTime();
+        channel.position(0);
+        final RecordInput input = new RecordInput(Channels.newInputStream(channel), channel.size());
+        if (input.readByte() != JournalFormat.MAGIC_0
+                || input.readByte() != JournalFormat.MAGIC_1
+                || input.readByte() != JournalFormat.VERSION) {
+            throw new IOException("not a lightboard journal");
+        }
+        input.readByte();
+        final MessageApplier applier = new MessageApplier(document);
+        long validLength = input.position;
+        long recordCount = 0;
+        int x = 0, y = 0;
+        try {
+            records:
+            while (true) {
+                final byte type;
+                try {
+                    type = input.readByte();
+                } catch (EOFException e) {
+                    break;
+                }
+                final Message message;
+                switch (type) {
+                    case JournalFormat.INIT_SIZE -> message = new InitSizeMessage(input.readVarInt(), input.readVarInt());
+                    case JournalFormat.FIGURE_BEGIN, JournalFormat.FIGURE_BEGIN_STREAMING -> {
+                        x = BinaryFormat.unzigzag(input.readVarInt());
+                        y = BinaryFormat.unzigzag(input.readVarInt());
+                        message = new FigureBeginMessage(
+                                new Coordinate(BinaryFormat.dequantize(x), BinaryFormat.dequantize(y)),
+                                unpackRgba(input.readInt()),
+                                BinaryFormat.dequantize(input.readVarInt()));
+                        if (type == JournalFormat.FIGURE_BEGIN_STREAMING) {
+                            applier.setSimplificationMode(SimplificationMode.STREAMING);
+                            applier.setSimplificationTolerance(BinaryFormat.dequantize(input.readVarInt()));
+                        } else {
+                            applier.setSimplificationMode(SimplificationMode.END_OF_STROKE);
+                        }
+                    }
+                    case JournalFormat.FIGURE_POINT -> {
+                        x += BinaryFormat.unzigzag(input.readVarInt());
+                        y += BinaryFormat.unzigzag(input.readVarInt());
+                        message = new FigurePointMessage(
+                                new Coordinate(BinaryFormat.dequantize(x), BinaryFormat.dequantize(y)));
+                    }
+                    case JournalFormat.FIGURE_END -> {
+                        x += BinaryFormat.unzigzag(input.readVarInt());
+                        y += BinaryFormat.unzigzag(input.readVarInt());
+                        message = new FigureEndMessage(
+                                new Coordinate(BinaryFormat.dequantize(x), BinaryFormat.dequantize(y)));
+                        applier.setSimplificationTolerance(BinaryFormat.dequantize(input.readVarInt()));
+                    }
+                    case JournalFormat.FIGURE_FINISH -> {
+                        if (document.drawing().endFigure(readFigure(input)) == false) {
+                            log.warn("journal record at {} ends a figure that does not exist, discarding the rest",
+                                    validLength);
+                            break records;
+                        }
+                        message = null;
+                    }
+                    case JournalFormat.FIGURE_REMOVE -> message = new FigureRemoveMessage(new Coordinate(), input.readVarInt());
+                    case JournalFormat.FIGURE_ERASE -> message = new FigureEraseMessage(
+                            new Coordinate(
+                                    BinaryFormat.dequantize(BinaryFormat.unzigzag(input.readVarInt())),
+                                    BinaryFormat.dequantize(BinaryFormat.unzigzag(input.readVarInt()))),
+                            BinaryFormat.dequantize(input.readVarInt()));
+                    case JournalFormat.DRAWING_SELECT -> {
+                        final int drawingIndex = input.readVarInt();
+                        final int drawingCount = document.snapshot().drawings().size();
+                        if (drawingIndex < 0 || drawingIndex >= drawingCount) {
+                            log.warn("journal record at {} selects drawing {} of {}, discarding the rest",
+                                    validLength, drawingIndex, drawingCount);
+                            break records;
+                        }
+                        document.selectDrawing(drawingIndex);
+                        message = null;
+                    }
+                    case JournalFormat.DRAWING_INSERT -> {
+                        document.insertNewDrawing();
+                        message = null;
+                    }
+                    default -> throw new IOException("unknown journal record type " + type + " at " + validLength);
+                }
+                if (message != null) {
+                    try {
+                        applier.apply(message);
+                    } catch (RuntimeException e) {
+                        // the message failed when it was applied originally, too
+                        log.warn("could not replay {}: {}", message, e.toString());
+                    }
+                }
+                validLength = input.position;
+                recordCount++;
+            }
+        } catch (EOFException e) {
+            log.warn("journal ends with an incomplete record at {}", validLength);
+        }
+        log.info("replayed {} journal records ({} bytes) in {} ms",
+                recordCount, validLength, (System.nanoTime() - start) / 1_000_000);
+        return validLength;
+    }
+
+    private static class SnapshotItem {
+        final long generation;
+        final DocumentSnapshot document;
+        final List<Supplier<List<Figure>>> drawings;
+
+        SnapshotItem(long generation, DocumentSnapshot document, List<Supplier<List<Figure>>> drawings) {
+            this.generation = generation;
+            this.document = document;
+            this.drawings = drawings;
+        }
+    }
+
+    private static class RecordBuffer {
+        private static final int INITIAL_CAPACITY = 4096;
+        byte[] bytes = new byte[INITIAL_CAPACITY];
+        int length;
+
+        void writeByte(int value) {
+            ensureCapacity(1);
+            this.bytes[this.length++] = (byte) value;
+        }
+
+        void writeInt(int value) {
+            ensureCapacity(4);
+            this.bytes[this.length++] = (byte) (value >>> 24);
+            this.bytes[this.length++] = (byte) (value >>> 16);
+            this.bytes[this.length++] = (byte) (value >>> 8);
+            this.bytes[this.length++] = (byte) value;
+        }
+
+        void writeLong(long value) {
+            writeInt((int) (value >>> 32));
+            writeInt((int) value);
+        }
+
+        void writeVarInt(int value) {
+            ensureCapacity(5);
+            while ((value & ~0x7f) != 0) {
+                this.bytes[this.length++] = (byte) ((value & 0x7f) | 0x80);
+                value >>>= 7;
+            }
+            this.bytes[this.length++] = (byte) value;
+        }
+
+        private void ensureCapacity(int count) {
+            if (this.length + count > this.bytes.length) {
+                this.bytes = Arrays.copyOf(this.bytes, this.bytes.length * 2);
+            }
+        }
+    }
+
+    private static class RecordInput {
+        private final InputStream in;
+        private final long length;
+        private final byte[] buffer = new byte[READ_BUFFER_SIZE];
+        private int offset;
+        private int limit;
+        long position;
+
+        /**
+         * @param length the number of bytes {@code in} provides.
+         */
+        RecordInput(InputStream in, long length) {
+            this.in = in;
+            this.length = length;
+        }
+
+        long remaining() {
+            return this.length - this.position;
+        }
+
+        byte readByte() throws IOException {
+            if (this.offset == this.limit) {
+                final int count = this.in.read(this.buffer, 0, this.buffer.length);
+                if (count <= 0) {
+                    throw new EOFException();
+                }
+                this.offset = 0;
+                this.limit = count;
+            }
+            this.position++;
+            return this.buffer[this.offset++];
+        }
+
+        int readInt() throws IOException {
+            return (readByte() & 0xff) << 24
+                   | (readByte() & 0xff) << 16
+                   | (readByte() & 0xff) << 8
+                   | (readByte() & 0xff);
+        }
+
+        long readLong() throws IOException {
+            return (long) readInt() << 32 | (readInt() & 0xffffffffL);
+        }
+
+        int readVarInt() throws IOException {
+            int value = 0;
+            for (int shift = 0; shift < 32; shift += 7) {
+                final byte b = readByte();
+                value |= (b & 0x7f) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+            throw new IOException("malformed varint");
+        }
+    }
+}
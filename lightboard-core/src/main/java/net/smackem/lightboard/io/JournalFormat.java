@@ -0,0 +1,65 @@
+package net.smackem.lightboard.io;
+
+/**
+ * Constants of the journal written by {@link Journal}.
+ * <pre>
+ * journal := header record*
+ * header  := 'L' 'J' version:u8 0:u8
+ * record  := INIT_SIZE width:varint height:varint
+ *          | FIGURE_BEGIN x:zigzag y:zigzag rgba:u32 strokeWidth:varint
+ *          | FIGURE_POINT dx:zigzag dy:zigzag
+ *          | FIGURE_END dx:zigzag dy:zigzag tolerance:varint
+ *          | FIGURE_REMOVE figureIndex:varint
+ *          | FIGURE_ERASE x:zigzag y:zigzag radius:varint
+ *          | DRAWING_SELECT drawingIndex:varint
+ *          | DRAWING_INSERT
+ *          | FIGURE_BEGIN_STREAMING x:zigzag y:zigzag rgba:u32 strokeWidth:varint tolerance:varint
+ *          | FIGURE_FINISH rgba:u32 strokeWidth:f64 pointCount:varint (x:f32 y:f32)*
+ * </pre>
+ * Each record starts with its type byte. Numbers are quantized like in {@link BinaryFormat}, except for the
+ * IEEE 754 bits of {@code f32} and {@code f64}. Points of a stroke are stored as deltas to the preceding point
+ * of the journal, which is reset to the origin at the beginning of each journal file.
+ * {@code FIGURE_BEGIN_STREAMING} begins a figure that is simplified while it is drawn.
+ * <p>
+ *     The journal records the outcome of each message rather than the message, so that replaying it
+ *     neither repeats simplification nor depends on the quantized geometry: {@code FIGURE_FINISH} replaces
+ *     the current figure with the figure as it has been ended, and an erasure is recorded as a
+ *     {@code FIGURE_REMOVE} for each removed figure. {@code FIGURE_END} and {@code FIGURE_ERASE} are no longer
+ *     written, but journals that contain them are still replayed by applying them again.
+ * </p>
+ * <p>
+ *     A journal belongs to the snapshot of the same generation, i.e. {@code journal-<n>.lbj} contains
+ *     the messages applied after {@code snapshot-<n>.lb} has been taken. Snapshots are exact documents, see
+ *     {@link BinaryFormat}, so that neither restoring nor rotating the journal changes the figures. Snapshots
+ *     written before were quantized documents, which are still read.
+ * </p>
+ */
+final class JournalFormat {
+    private JournalFormat() {
+        throw new IllegalAccessError();
+    }
+
+    static final byte MAGIC_0 = 'L';
+    static final byte MAGIC_1 = 'J';
+    static final byte VERSION = 1;
+    static final int HEADER_SIZE = 4;
+
+    static final byte INIT_SIZE = 1;
+    static final byte FIGURE_BEGIN = 2;
+    static final byte FIGURE_POINT = 3;
+    static final byte FIGURE_END = 4;
+    static final byte FIGURE_REMOVE = 5;
+    static final byte FIGURE_ERASE = 6;
+    static final byte DRAWING_SELECT = 7;
+    static final byte DRAWING_INSERT = 8;
+    static final byte FIGURE_BEGIN_STREAMING = 9;
+    static final byte FIGURE_FINISH = 10;
+
+    static String journalFileName(long generation) {
+        return "journal-" + generation + ".lbj";
+    }
+
+    static String snapshotFileName(long generation) {
+        return "snapshot-" + generation + ".lb";
+    }
+}
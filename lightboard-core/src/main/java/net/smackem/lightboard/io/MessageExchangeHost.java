@@ -1,172 +1,796 @@
 package net.smackem.lightboard.io;
 
-import com.fasterxml.jackson.databind.Module;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.module.SimpleModule;
-import com.google.common.base.Joiner;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.io.CountingOutputStream;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.illposed.osc.*;
-import com.illposed.osc.transport.udp.OSCPortIn;
 import com.sun.net.httpserver.HttpExchange;
 import com.sun.net.httpserver.HttpServer;
 import net.smackem.lightboard.messaging.*;
-import net.smackem.lightboard.model.Document;
+import net.smackem.lightboard.metrics.Counter;
+import net.smackem.lightboard.metrics.Histogram;
+import net.smackem.lightboard.metrics.MetricsRegistry;
+import net.smackem.lightboard.model.DocumentSnapshot;
 import net.smackem.lightboard.model.Drawing;
-import net.smackem.lightboard.model.Rgba;
-import org.locationtech.jts.geom.Coordinate;
+import net.smackem.lightboard.model.DrawingChange;
+import net.smackem.lightboard.model.DrawingSnapshot;
+import net.smackem.lightboard.model.SimplificationMode;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.io.OutputStream;
+import java.io.StringWriter;
 import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URLDecoder;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
 import java.util.concurrent.*;
-import java.util.function.Supplier;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPOutputStream;
 
 public class MessageExchangeHost implements AutoCloseable {
     private static final Logger log = LoggerFactory.getLogger(MessageExchangeHost.class);
-    public static final int DEFAULT_OSC_PORT = 7771;
-    public static final int DEFAULT_HTTP_PORT = 7772;
+    private static final int MAX_CACHED_POINT_COUNT = 10_000;
+    private static final int STREAM_BUFFER_SIZE = 8192;
+    private static final int MAX_BOARD_COUNT = 256;
+    private static final String BOARD_PATH_PREFIX = "/board/";
+    private static final byte[] BOARD_PATH_PREFIX_BYTES = BOARD_PATH_PREFIX.getBytes(StandardCharsets.US_ASCII);
+    private static final int SVG_EXPORT_THREADS = 2;
+    private static final int SVG_RENDER_PARALLELISM = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+    private static final long NAVIGATION_TIMEOUT_MILLIS = 5000;
 
-    private final OSCPortIn inbound;
-    private final SubmissionPublisher<Message> inboundMessagePublisher = new SubmissionPublisher<>();
-    private final Supplier<Document> documentSupplier;
+    private final HostConfig config;
+    private final OscReceiver inbound;
+    private final BoardRegistry boards;
     private final HttpServer httpServer;
-    private final ExecutorService httpExecutor;
-
-    public MessageExchangeHost(Supplier<Document> documentSupplier) throws IOException {
-        this.documentSupplier = Objects.requireNonNull(documentSupplier);
-        this.inbound = new OSCPortIn(DEFAULT_OSC_PORT);
-        this.inbound.addPacketListener(new PacketListener());
-        this.inbound.startListening();
-        this.httpExecutor = Executors.newSingleThreadExecutor();
-        this.httpServer = HttpServer.create(new InetSocketAddress(DEFAULT_HTTP_PORT), 16);
-        this.httpServer.setExecutor(this.httpExecutor);
-        this.httpServer.createContext("/drawing", this::handleDrawingRequest);
-        this.httpServer.createContext("/drawing/new", this::handleNewDrawingRequest);
-        this.httpServer.createContext("/drawing/prev", this::handlePrevDrawingRequest);
-        this.httpServer.createContext("/drawing/next", this::handleNextDrawingRequest);
+    private final ExecutorService ownedHttpExecutor;
+    private final Semaphore requestPermits;
+    private volatile boolean closing;
+    private final ObjectMapper mapper = DrawingJson.createObjectMapper();
+    private final Cache<Drawing, SerializedDrawing> jsonCache = CacheBuilder.newBuilder()
+            .weakKeys()
+            .build();
+    private final BinaryDrawingWriter binaryWriter = new BinaryDrawingWriter();
+    private final OscMessageDecoder decoder = new OscMessageDecoder();
+    private final ExecutorService eventStreamExecutor;
+    private final Set<EventStream> eventStreams = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger eventStreamCount = new AtomicInteger();
+    private final MetricsRegistry metrics = MetricsRegistry.defaultRegistry();
+    private final Counter oscPacketCount = this.metrics.counter("lightboard_osc_packets_total",
+            "OSC packets received");
+    private final Counter oscBadPacketCount = this.metrics.counter("lightboard_osc_bad_packets_total",
+            "OSC packets that could not be parsed");
+    private final Counter oscMessageCount = this.metrics.counter("lightboard_osc_messages_total",
+            "OSC messages decoded and submitted to a board");
+    private final Counter oscUnrecognizedCount = this.metrics.counter("lightboard_osc_unrecognized_messages_total",
+            "OSC messages with an unrecognized address");
+    private final Counter oscParsedPacketCount = this.metrics.counter("lightboard_osc_parsed_packets_total",
+            "OSC packets not handled by the fast path but parsed by javaosc");
+    private final Histogram oscDecodeDuration = this.metrics.histogram("lightboard_osc_decode_seconds",
+            "Time to decode and route an OSC packet");
+    private final Histogram jsonWriteDuration = this.metrics.histogram("lightboard_json_write_seconds",
+            "Time to write a drawing or drawing changes as JSON");
+    private final Counter jsonByteCount = this.metrics.counter("lightboard_json_written_bytes_total",
+            "Bytes of JSON responses, after compression");
+    private final Histogram svgWriteDuration = this.metrics.histogram("lightboard_svg_write_seconds",
+            "Time to write an SVG export");
+    private final Counter svgByteCount = this.metrics.counter("lightboard_svg_written_bytes_total",
+            "Bytes of SVG responses, after compression");
+    // renders the drawings of the exports, so that exports neither compete with nor wait for other users
+    // of the common pool
+    private final ForkJoinPool svgRenderPool = new ForkJoinPool(SVG_RENDER_PARALLELISM, pool -> {
+        final ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+        thread.setName("svg-render-" + thread.getPoolIndex());
+        return thread;
+    }, null, false);
+    private final SvgWriter svgWriter = new SvgWriter(this.svgRenderPool);
+    private final ExecutorService svgExportExecutor = Executors.newFixedThreadPool(SVG_EXPORT_THREADS,
+            new ThreadFactoryBuilder()
+                    .setNameFormat("svg-export-%d")
+                    .setDaemon(true)
+                    .build());
+
+    public MessageExchangeHost() throws IOException {
+        this(HostConfig.defaults());
+    }
+
+    public MessageExchangeHost(HostConfig config) throws IOException {
+        this.config = Objects.requireNonNull(config);
+        this.boards = new BoardRegistry(config.overflowPolicy(), MAX_BOARD_COUNT, config.journalDirectory(),
+                config.spillDirectory(), config.heapBudget());
+        this.requestPermits = new Semaphore(config.maxConcurrentRequests());
+        this.eventStreamExecutor = TaskExecutors.newIoExecutor("event-stream-%d", config.maxEventStreams());
+        this.metrics.gauge("lightboard_event_streams", "Open server-sent event streams",
+                Map.of(), this.eventStreamCount::get);
+        this.metrics.gauge("lightboard_http_active_requests", "HTTP requests being handled",
+                Map.of(), () -> config.maxConcurrentRequests() - this.requestPermits.availablePermits());
+        this.inbound = new OscReceiver(new InetSocketAddress(config.bindAddress(), config.oscPort()),
+                config.oscReceiveThreads(), config.oscReceiveBufferSize(), this::newInboundHandler);
+        this.inbound.start();
+        final Executor httpExecutor;
+        if (config.httpExecutor() != null) {
+            this.ownedHttpExecutor = null;
+            httpExecutor = config.httpExecutor();
+        } else {
+            this.ownedHttpExecutor = TaskExecutors.newIoExecutor("http-%d", config.maxConcurrentRequests());
+            httpExecutor = this.ownedHttpExecutor;
+        }
+        this.httpServer = HttpServer.create(
+                new InetSocketAddress(config.bindAddress(), config.httpPort()), config.httpBacklog());
+        this.httpServer.setExecutor(httpExecutor);
+        this.httpServer.createContext("/", this::handleRequest);
         this.httpServer.start();
+        log.info("serving {} on {}", config, httpExecutor);
+    }
+
+    public HostConfig config() {
+        return this.config;
     }
 
+    /**
+     * @return the publisher of the messages addressed to the default board.
+     */
     public Flow.Publisher<Message> inboundMessagePublisher() {
-        return this.inboundMessagePublisher;
+        return this.boards.defaultBoard().messagePublisher();
     }
 
+    public IngestionQueue ingestionQueue() {
+        return this.boards.defaultBoard().ingestionQueue();
+    }
+
+    public BoardRegistry boards() {
+        return this.boards;
+    }
+
+    /**
+     * Stops receiving OSC packets, rejects new HTTP requests, ends the event streams and waits up to
+     * {@link HostConfig#shutdownTimeout()} for the pending requests and exports to complete.
+     * Then the HTTP server and the boards are closed, which applies the messages received so far.
+     */
     @Override
     public void close() throws Exception {
-        this.inboundMessagePublisher.close();
         this.inbound.close();
-        this.httpExecutor.shutdown();
-        //noinspection ResultOfMethodCallIgnored
-        this.httpExecutor.awaitTermination(10, TimeUnit.SECONDS);
+        final long deadline = System.nanoTime() + this.config.shutdownTimeout().toNanos();
+        this.closing = true;
+        closeEventStreams();
+        // HttpServer.stop(delay) would not return before the delay has elapsed
+        if (this.requestPermits.tryAcquire(this.config.maxConcurrentRequests(),
+                Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS) == false) {
+            log.warn("requests still pending after shutdown timeout");
+        }
+        this.svgExportExecutor.shutdown();
+        this.eventStreamExecutor.shutdown();
+        awaitTermination(this.svgExportExecutor, deadline);
+        this.svgRenderPool.shutdown();
+        // streams opened while the host has been closing
+        closeEventStreams();
+        awaitTermination(this.eventStreamExecutor, deadline);
         this.httpServer.stop(0);
+        if (this.ownedHttpExecutor != null) {
+            this.ownedHttpExecutor.shutdown();
+            awaitTermination(this.ownedHttpExecutor, deadline);
+        }
+        this.boards.close();
+    }
+
+    private void closeEventStreams() {
+        for (final EventStream stream : this.eventStreams) {
+            stream.close();
+        }
     }
 
-    private void handleDrawingRequest(HttpExchange exchange) {
+    private static void awaitTermination(ExecutorService executor, long deadline) throws InterruptedException {
+        if (executor.awaitTermination(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS) == false) {
+            log.warn("tasks still running after shutdown timeout: {}", executor);
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Dispatches requests to the handlers. Paths starting with {@code /board/<id>} address the board
+     * with the specified id, all other paths address the default board.
+     */
+    private void handleRequest(HttpExchange exchange) {
         log.info("http request {} {}", exchange.getRequestMethod(), exchange.getRequestURI());
+        if (this.closing) {
+            writeStatus(exchange, 503);
+            return;
+        }
+        try {
+            this.requestPermits.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            writeStatus(exchange, 503);
+            return;
+        }
+        try {
+            dispatchRequest(exchange);
+        } finally {
+            this.requestPermits.release();
+        }
+    }
+
+    private void dispatchRequest(HttpExchange exchange) {
+        final String path = exchange.getRequestURI().getPath();
+        if (path.equals("/metrics")) {
+            handleMetricsRequest(exchange);
+            return;
+        }
+        final Board board;
+        final String boardPath;
+        String boardId = null;
+        if (path.startsWith(BOARD_PATH_PREFIX)) {
+            final int separatorIndex = path.indexOf('/', BOARD_PATH_PREFIX.length());
+            boardId = separatorIndex < 0
+                    ? path.substring(BOARD_PATH_PREFIX.length())
+                    : path.substring(BOARD_PATH_PREFIX.length(), separatorIndex);
+            // only requests that modify a board may create it, so that reading never allocates a board
+            board = Objects.equals(exchange.getRequestMethod(), "POST")
+                    ? this.boards.getOrCreate(boardId)
+                    : this.boards.get(boardId);
+            boardPath = separatorIndex < 0 ? "/" : path.substring(separatorIndex);
+        } else {
+            board = this.boards.defaultBoard();
+            boardPath = path;
+        }
+        if (board == null) {
+            writeStatus(exchange, boardId != null && this.boards.isOpening(boardId) ? 503 : 404);
+            return;
+        }
+        switch (boardPath) {
+            case "/drawing" -> handleDrawingRequest(board, exchange);
+            case "/drawing/new" -> handleNavigationRequest(board, DrawingNavigationMessage.Navigation.INSERT, exchange);
+            case "/drawing/prev" -> handleNavigationRequest(board, DrawingNavigationMessage.Navigation.PREVIOUS, exchange);
+            case "/drawing/next" -> handleNavigationRequest(board, DrawingNavigationMessage.Navigation.NEXT, exchange);
+            case "/events" -> handleEventsRequest(board, exchange);
+            case "/document/svg" -> handleSvgRequest(board, exchange);
+            case "/simplification" -> handleSimplificationRequest(board, exchange);
+            default -> writeStatus(exchange, 404);
+        }
+    }
+
+    /**
+     * Writes the metrics of the process in the Prometheus text exposition format.
+     */
+    private void handleMetricsRequest(HttpExchange exchange) {
         if (Objects.equals(exchange.getRequestMethod(), "GET") == false) {
             return;
         }
-        final Drawing drawing = this.documentSupplier.get().drawing();
-        writeDrawing(drawing, exchange);
+        exchange.getResponseHeaders().add("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+        try {
+            // the exposition is small and is rendered before the status is sent,
+            // so that a failing gauge never yields a truncated response
+            final StringWriter text = new StringWriter();
+            this.metrics.write(text);
+            final byte[] bytes = text.toString().getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(200, bytes.length);
+            try (final OutputStream os = exchange.getResponseBody()) {
+                os.write(bytes);
+            }
+        } catch (IOException e) {
+            log.error("error writing metrics", e);
+        }
     }
 
-    private void handlePrevDrawingRequest(HttpExchange exchange) {
-        log.info("http request {} {}", exchange.getRequestMethod(), exchange.getRequestURI());
-        if (Objects.equals(exchange.getRequestMethod(), "POST") == false) {
+    private void handleDrawingRequest(Board board, HttpExchange exchange) {
+        if (Objects.equals(exchange.getRequestMethod(), "GET") == false) {
+            return;
+        }
+        final Drawing drawing = board.document().drawing();
+        final Map<String, String> query = parseQuery(exchange.getRequestURI());
+        if (query.containsKey("since")) {
+            final long since, drawingId;
+            try {
+                since = Long.parseLong(query.get("since"));
+                drawingId = Long.parseLong(query.getOrDefault("drawing", "0"));
+            } catch (NumberFormatException e) {
+                writeStatus(exchange, 400);
+                return;
+            }
+            writeDrawingChanges(drawing, drawingId, since, exchange);
             return;
         }
-        final Drawing drawing = this.documentSupplier.get().selectPreviousDrawing();
+        final String ifNoneMatch = exchange.getRequestHeaders().getFirst("If-None-Match");
+        if (ifNoneMatch != null) {
+            final String etag = etag(drawing, drawing.snapshot(), acceptsBinary(exchange));
+            if (matchesETag(ifNoneMatch, etag)) {
+                writeNotModified(exchange, etag);
+                return;
+            }
+        }
         writeDrawing(drawing, exchange);
-        this.inboundMessagePublisher.submit(new RedrawMessage());
     }
 
-    private void handleNextDrawingRequest(HttpExchange exchange) {
-        log.info("http request {} {}", exchange.getRequestMethod(), exchange.getRequestURI());
+    /**
+     * Has the model thread of the board navigate the document, so that navigation is ordered with the strokes
+     * received before, and responds with the selected drawing.
+     */
+    private void handleNavigationRequest(Board board,
+                                         DrawingNavigationMessage.Navigation navigation,
+                                         HttpExchange exchange) {
         if (Objects.equals(exchange.getRequestMethod(), "POST") == false) {
             return;
         }
-        final Drawing drawing = this.documentSupplier.get().selectNextDrawing();
+        final DrawingNavigationMessage message = new DrawingNavigationMessage(navigation);
+        board.submit(message);
+        final Drawing drawing;
+        try {
+            drawing = message.result().get(NAVIGATION_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            writeStatus(exchange, 503);
+            return;
+        } catch (ExecutionException | TimeoutException e) {
+            log.warn("board {}: navigation {} failed: {}", board.id(), navigation, e.toString());
+            writeStatus(exchange, 503);
+            return;
+        }
         writeDrawing(drawing, exchange);
-        this.inboundMessagePublisher.submit(new RedrawMessage());
     }
 
-    private void handleNewDrawingRequest(HttpExchange exchange) {
-        log.info("http request {} {}", exchange.getRequestMethod(), exchange.getRequestURI());
+    /**
+     * Selects how the figures of a board are simplified, e.g.
+     * {@code POST /board/<id>/simplification?mode=streaming&tolerance=1.5}.
+     */
+    private void handleSimplificationRequest(Board board, HttpExchange exchange) {
         if (Objects.equals(exchange.getRequestMethod(), "POST") == false) {
             return;
         }
-        final Drawing drawing = this.documentSupplier.get().insertNewDrawing();
-        writeDrawing(drawing, exchange);
-        this.inboundMessagePublisher.submit(new RedrawMessage());
+        final MessageApplier applier = board.applier();
+        final Map<String, String> query = parseQuery(exchange.getRequestURI());
+        final SimplificationMode mode;
+        final double tolerance;
+        try {
+            mode = SimplificationMode.valueOf(
+                    query.getOrDefault("mode", applier.simplificationMode().name()).replace('-', '_').toUpperCase());
+            tolerance = query.containsKey("tolerance")
+                    ? Double.parseDouble(query.get("tolerance"))
+                    : applier.simplificationTolerance();
+        } catch (IllegalArgumentException e) {
+            writeStatus(exchange, 400);
+            return;
+        }
+        if (tolerance < 0 || Double.isFinite(tolerance) == false) {
+            writeStatus(exchange, 400);
+            return;
+        }
+        applier.setSimplificationMode(mode);
+        applier.setSimplificationTolerance(tolerance);
+        log.info("board {}: simplification mode {}, tolerance {}", board.id(), mode, tolerance);
+        writeStatus(exchange, 204);
+    }
+
+    /**
+     * Opens a server-sent event stream that pushes all applied messages to the client as they arrive,
+     * so that clients need not poll {@code /drawing} for changes.
+     */
+    private void handleEventsRequest(Board board, HttpExchange exchange) {
+        if (Objects.equals(exchange.getRequestMethod(), "GET") == false) {
+            return;
+        }
+        if (this.eventStreamCount.incrementAndGet() > this.config.maxEventStreams()) {
+            this.eventStreamCount.decrementAndGet();
+            writeStatus(exchange, 503);
+            return;
+        }
+        exchange.getResponseHeaders().add("Content-Type", "text/event-stream");
+        exchange.getResponseHeaders().add("Cache-Control", "no-cache");
+        try {
+            exchange.sendResponseHeaders(200, 0);
+        } catch (IOException e) {
+            log.error("error opening event stream", e);
+            this.eventStreamCount.decrementAndGet();
+            exchange.close();
+            return;
+        }
+        final EventStream stream = new EventStream(exchange, this.mapper.getFactory(), this::eventStreamClosed);
+        this.eventStreams.add(stream);
+        board.appliedMessagePublisher().subscribe(stream);
+        try {
+            this.eventStreamExecutor.execute(stream);
+        } catch (RejectedExecutionException e) {
+            // the host is closing
+            stream.close();
+            stream.run();
+        }
+    }
+
+    private void eventStreamClosed(EventStream stream) {
+        this.eventStreams.remove(stream);
+        this.eventStreamCount.decrementAndGet();
+    }
+
+    /**
+     * Streams the entire document or, if the query contains {@code drawing=<index>}, a single drawing as SVG.
+     * The SVG is rendered on {@link #svgExportExecutor} so that large exports do not block other requests.
+     */
+    private void handleSvgRequest(Board board, HttpExchange exchange) {
+        if (Objects.equals(exchange.getRequestMethod(), "GET") == false) {
+            return;
+        }
+        final DocumentSnapshot document = board.document().snapshot();
+        final String drawingParameter = parseQuery(exchange.getRequestURI()).get("drawing");
+        final List<Drawing> drawings;
+        if (drawingParameter != null) {
+            final int drawingIndex;
+            try {
+                drawingIndex = Integer.parseInt(drawingParameter);
+            } catch (NumberFormatException e) {
+                writeStatus(exchange, 400);
+                return;
+            }
+            if (drawingIndex < 0 || drawingIndex >= document.drawings().size()) {
+                writeStatus(exchange, 404);
+                return;
+            }
+            drawings = List.of(document.drawings().get(drawingIndex));
+        } else {
+            drawings = document.drawings();
+        }
+        try {
+            this.svgExportExecutor.execute(() -> writeSvg(document, drawings, exchange));
+        } catch (RejectedExecutionException e) {
+            writeStatus(exchange, 503);
+        }
+    }
+
+    private void writeSvg(DocumentSnapshot document, List<Drawing> drawings, HttpExchange exchange) {
+        final boolean gzip = acceptsGzip(exchange);
+        exchange.getResponseHeaders().add("Content-Type", SvgWriter.MEDIA_TYPE);
+        if (gzip) {
+            exchange.getResponseHeaders().add("Content-Encoding", "gzip");
+        }
+        final long startNanos = System.nanoTime();
+        try {
+            exchange.sendResponseHeaders(200, 0);
+            final CountingOutputStream body = new CountingOutputStream(exchange.getResponseBody());
+            try (final OutputStream os = gzip
+                    ? new GZIPOutputStream(body, STREAM_BUFFER_SIZE)
+                    : body) {
+                this.svgWriter.write(document, drawings, Channels.newChannel(os), (written, count) -> {});
+            }
+            this.svgWriteDuration.recordSince(startNanos);
+            this.svgByteCount.add(body.getCount());
+        } catch (IOException e) {
+            log.error("error writing svg response", e);
+        } finally {
+            exchange.close();
+        }
     }
 
     private void writeDrawing(Drawing drawing, HttpExchange exchange) {
+        exchange.getResponseHeaders().add("Vary", "Accept");
+        if (acceptsBinary(exchange)) {
+            writeBinaryDrawing(drawing, exchange);
+            return;
+        }
+        final DrawingSnapshot snapshot = drawing.snapshot();
+        final boolean gzip = acceptsGzip(exchange);
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.getResponseHeaders().add("ETag", etag(drawing, snapshot, false));
+        if (gzip) {
+            exchange.getResponseHeaders().add("Content-Encoding", "gzip");
+        }
+        final long startNanos = System.nanoTime();
         try {
-            exchange.getResponseHeaders().add("Content-Type", "application/json");
-            final OutputStream os = exchange.getResponseBody();
-            final Module module = new SimpleModule().addSerializer(new CoordinateSerializer());
-            final ObjectMapper mapper = new ObjectMapper().registerModule(module);
-            final byte[] bytes = mapper.writeValueAsBytes(drawing);
-            exchange.sendResponseHeaders(200, bytes.length);
-            os.write(bytes);
-            os.flush();
-            os.close();
+            final byte[] cached = cachedJson(drawing, snapshot);
+            if (cached != null && gzip == false) {
+                exchange.sendResponseHeaders(200, cached.length);
+                try (final OutputStream os = exchange.getResponseBody()) {
+                    os.write(cached);
+                }
+                this.jsonWriteDuration.recordSince(startNanos);
+                this.jsonByteCount.add(cached.length);
+                return;
+            }
+            // length 0 selects chunked transfer encoding
+            exchange.sendResponseHeaders(200, 0);
+            final CountingOutputStream body = new CountingOutputStream(exchange.getResponseBody());
+            try (final OutputStream os = gzip
+                    ? new GZIPOutputStream(body, STREAM_BUFFER_SIZE)
+                    : body) {
+                if (cached != null) {
+                    os.write(cached);
+                } else {
+                    writeJson(snapshot, os);
+                }
+            }
+            this.jsonWriteDuration.recordSince(startNanos);
+            this.jsonByteCount.add(body.getCount());
         } catch (IOException e) {
             log.error("error writing json response", e);
         }
     }
 
-    private void handleInboundPacket(OSCPacket packet) {
+    private void writeBinaryDrawing(Drawing drawing, HttpExchange exchange) {
+        final DrawingSnapshot snapshot = drawing.snapshot();
+        exchange.getResponseHeaders().add("Content-Type", BinaryDrawingWriter.MEDIA_TYPE);
+        exchange.getResponseHeaders().add("ETag", etag(drawing, snapshot, true));
+        try {
+            exchange.sendResponseHeaders(200, 0);
+            try (final OutputStream os = exchange.getResponseBody()) {
+                this.binaryWriter.write(snapshot, os);
+            }
+        } catch (IOException e) {
+            log.error("error writing binary response", e);
+        }
+    }
+
+    private void writeJson(DrawingSnapshot snapshot, OutputStream os) throws IOException {
+        try (final JsonGenerator generator = this.mapper.getFactory().createGenerator(os)) {
+            this.mapper.writeValue(generator, snapshot);
+        }
+    }
+
+    /**
+     * Writes the changes of the specified drawing since version {@code since} or, if these are not available
+     * or the client has been following another drawing, the current version of the entire drawing.
+     */
+    private void writeDrawingChanges(Drawing drawing, long drawingId, long since, HttpExchange exchange) {
+        final DrawingSnapshot snapshot = drawing.snapshot();
+        final List<DrawingChange> changes = drawingId == drawing.id()
+                ? drawing.changes(since, snapshot.version())
+                : null;
+        final boolean gzip = acceptsGzip(exchange);
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        if (gzip) {
+            exchange.getResponseHeaders().add("Content-Encoding", "gzip");
+        }
+        final long startNanos = System.nanoTime();
+        try {
+            exchange.sendResponseHeaders(200, 0);
+            final CountingOutputStream body = new CountingOutputStream(exchange.getResponseBody());
+            try (final OutputStream os = gzip
+                    ? new GZIPOutputStream(body, STREAM_BUFFER_SIZE)
+                    : body;
+                 final JsonGenerator generator = this.mapper.getFactory().createGenerator(os)) {
+                generator.writeStartObject();
+                generator.writeNumberField("drawing", drawing.id());
+                generator.writeNumberField("version", snapshot.version());
+                generator.writeBooleanField("full", changes == null);
+                if (changes != null) {
+                    generator.writeObjectField("changes", changes);
+                } else {
+                    generator.writeObjectField("figures", snapshot.figures());
+                }
+                generator.writeEndObject();
+            }
+            this.jsonWriteDuration.recordSince(startNanos);
+            this.jsonByteCount.add(body.getCount());
+        } catch (IOException e) {
+            log.error("error writing json response", e);
+        }
+    }
+
+    /**
+     * Responds with 304, which carries the same validator and {@code Vary} header as a full response would,
+     * so that caches can update the stored response.
+     */
+    private void writeNotModified(HttpExchange exchange, String etag) {
+        exchange.getResponseHeaders().add("Vary", "Accept");
+        exchange.getResponseHeaders().add("ETag", etag);
+        writeStatus(exchange, 304);
+    }
+
+    private static void writeStatus(HttpExchange exchange, int status) {
+        try {
+            exchange.sendResponseHeaders(status, -1);
+            exchange.close();
+        } catch (IOException e) {
+            log.error("error writing status response", e);
+        }
+    }
+
+    /**
+     * @return the JSON of the specified snapshot, which is serialized on the first call for each version,
+     *      or {@code null} if the drawing is too large to be held in memory. Large drawings are always
+     *      streamed, so that the memory consumed by a request does not depend on the size of the drawing.
+     */
+    private byte[] cachedJson(Drawing drawing, DrawingSnapshot snapshot) throws JsonProcessingException {
+        if (snapshot.pointCount() > MAX_CACHED_POINT_COUNT) {
+            return null;
+        }
+        final SerializedDrawing cached = this.jsonCache.getIfPresent(drawing);
+        if (cached != null && cached.version == snapshot.version()) {
+            return cached.bytes;
+        }
+        final byte[] bytes = this.mapper.writeValueAsBytes(snapshot);
+        this.jsonCache.put(drawing, new SerializedDrawing(snapshot.version(), bytes));
+        return bytes;
+    }
+
+    private static String etag(Drawing drawing, DrawingSnapshot snapshot, boolean binary) {
+        return "\"" + drawing.id() + "." + snapshot.version() + (binary ? "-bin" : "") + "\"";
+    }
+
+    private static boolean acceptsBinary(HttpExchange exchange) {
+        final List<String> accept = exchange.getRequestHeaders().get("Accept");
+        return accept != null && accept.stream().anyMatch(type -> type.contains(BinaryDrawingWriter.MEDIA_TYPE));
+    }
+
+    private static Map<String, String> parseQuery(URI uri) {
+        final String query = uri.getRawQuery();
+        if (query == null || query.isEmpty()) {
+            return Map.of();
+        }
+        final Map<String, String> parameters = new HashMap<>();
+        for (final String parameter : query.split("&")) {
+            final int separatorIndex = parameter.indexOf('=');
+            if (separatorIndex < 0) {
+                parameters.put(URLDecoder.decode(parameter, StandardCharsets.UTF_8), "");
+            } else {
+                parameters.put(URLDecoder.decode(parameter.substring(0, separatorIndex), StandardCharsets.UTF_8),
+                        URLDecoder.decode(parameter.substring(separatorIndex + 1), StandardCharsets.UTF_8));
+            }
+        }
+        return parameters;
+    }
+
+    private static boolean acceptsGzip(HttpExchange exchange) {
+        final List<String> encodings = exchange.getRequestHeaders().get("Accept-Encoding");
+        return encodings != null && encodings.stream().anyMatch(encoding -> encoding.contains("gzip"));
+    }
+
+    private static boolean matchesETag(String ifNoneMatch, String etag) {
+        for (final String candidate : ifNoneMatch.split(",")) {
+            final String trimmed = candidate.trim();
+            if (trimmed.equals("*") || trimmed.equals(etag) || trimmed.equals("W/" + etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private OscReceiver.Handler newInboundHandler() {
+        // javaosc parsers are not thread-safe, so each receiver thread gets its own
+        final OSCParser oscParser = new OSCSerializerAndParserBuilder().buildParser();
+        return (datagram, receivedNanos) -> handleInboundDatagram(oscParser, datagram, receivedNanos);
+    }
+
+    /**
+     * Decodes the datagrams that hold a single message with a known command directly from their bytes,
+     * all other datagrams, e.g. bundles, are parsed by javaosc.
+     */
+    private void handleInboundDatagram(OSCParser oscParser, ByteBuffer datagram, long receivedNanos) {
+        final long startNanos = System.nanoTime();
+        this.oscPacketCount.increment();
+        if (decodeInboundDatagram(datagram, receivedNanos, startNanos)) {
+            return;
+        }
+        this.oscParsedPacketCount.increment();
+        try {
+            handleInboundPacket(oscParser.convert(datagram), receivedNanos, startNanos);
+        } catch (OSCParseException | RuntimeException e) {
+            this.oscBadPacketCount.increment();
+            log.warn("bad osc data: {}", e.toString());
+        }
+    }
+
+    /**
+     * @return {@code false} if the datagram is no message with a known command and must be parsed by javaosc.
+     *      A message whose arguments are rejected is counted as a bad packet like on the javaosc path.
+     */
+    private boolean decodeInboundDatagram(ByteBuffer datagram, long receivedNanos, long startNanos) {
+        final int start = datagram.position();
+        int separatorIndex = start;
+        if (startsWith(datagram, BOARD_PATH_PREFIX_BYTES)) {
+            separatorIndex += BOARD_PATH_PREFIX_BYTES.length;
+            while (separatorIndex < datagram.limit()
+                    && datagram.get(separatorIndex) != '/'
+                    && datagram.get(separatorIndex) != 0) {
+                separatorIndex++;
+            }
+            if (separatorIndex == datagram.limit() || datagram.get(separatorIndex) != '/') {
+                return false;
+            }
+        }
+        final Message message;
+        try {
+            message = this.decoder.decode(datagram, separatorIndex - start);
+        } catch (RuntimeException e) {
+            // javaosc would fail on the same arguments
+            this.oscBadPacketCount.increment();
+            log.warn("bad osc data: {}", e.toString());
+            return true;
+        }
+        if (message == null) {
+            return false;
+        }
+        log.debug("message received: {}", message);
+        message.setReceivedNanos(receivedNanos);
+        this.oscDecodeDuration.recordSince(startNanos);
+        this.oscMessageCount.increment();
+        // the board is looked up only now, so that packets without a valid message never create a board
+        if (separatorIndex > start) {
+            final byte[] id = new byte[separatorIndex - start - BOARD_PATH_PREFIX_BYTES.length];
+            datagram.get(start + BOARD_PATH_PREFIX_BYTES.length, id);
+            this.boards.submit(new String(id, StandardCharsets.US_ASCII), message);
+        } else {
+            this.boards.defaultBoard().submit(message);
+        }
+        return true;
+    }
+
+    private static boolean startsWith(ByteBuffer buffer, byte[] prefix) {
+        if (buffer.remaining() < prefix.length) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length; i++) {
+            if (buffer.get(buffer.position() + i) != prefix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void handleInboundPacket(OSCPacket packet, long receivedNanos, long startNanos) {
         if (packet instanceof OSCBundle bundle) {
             log.info("bundle received @ {}: {}", bundle.getTimestamp(), bundle.getPackets());
             for (final OSCPacket innerPacket : bundle.getPackets()) {
-                handleInboundPacket(innerPacket);
+                handleInboundPacket(innerPacket, receivedNanos, startNanos);
             }
             return;
         }
         if (packet instanceof OSCMessage oscMsg) {
-            handleInboundMessage(oscMsg);
+            handleInboundMessage(oscMsg, receivedNanos, startNanos);
             return;
         }
         throw new IllegalArgumentException("invalid packet type: " + packet.getClass());
     }
 
-    private void handleInboundMessage(OSCMessage oscMsg) {
+    /**
+     * Submits the specified message to the board addressed by a {@code /board/<id>} prefix
+     * or, if the address has no such prefix, to the default board.
+     */
+    private void handleInboundMessage(OSCMessage oscMsg, long receivedNanos, long startNanos) {
         final List<Object> args = oscMsg.getArguments();
-        log.info("message @ {}: {}", oscMsg.getAddress(), Joiner.on(", ").join(oscMsg.getArguments()));
-        final Message message = switch (oscMsg.getAddress()) {
-            case "/init/size" -> new InitSizeMessage((int) args.get(0), (int) args.get(1));
-            case "/figure/begin" -> new FigureBeginMessage(
-                    new Coordinate((float) args.get(0), (float) args.get(1)),
-                    new Rgba((int) args.get(2), (int) args.get(3), (int) args.get(4), (int) args.get(5)),
-                    (float) args.get(6));
-            case "/figure/point" -> new FigurePointMessage(new Coordinate((float) args.get(0), (float) args.get(1)));
-            case "/figure/end" -> new FigureEndMessage(new Coordinate((float) args.get(0), (float) args.get(1)));
-            case "/figure/remove" -> new FigureRemoveMessage(
-                    new Coordinate((float) args.get(0), (float) args.get(1)),
-                    (int) args.get(2));
-            default -> {
-                log.warn("unrecognized OSC message address: {}", oscMsg.getAddress());
-                yield null;
-            }
-        };
-        if (message != null) {
-            this.inboundMessagePublisher.submit(message);
-        }
-    }
-
-    private class PacketListener implements OSCPacketListener {
-        @Override
-        public void handlePacket(OSCPacketEvent oscPacketEvent) {
-            handleInboundPacket(oscPacketEvent.getPacket());
-        }
-
-        @Override
-        public void handleBadData(OSCBadDataEvent oscBadDataEvent) {
-            log.warn("bad osc data: {}", oscBadDataEvent);
+        log.info("message @ {}: {}", oscMsg.getAddress(), args);
+        final String address = oscMsg.getAddress();
+        String boardId = null;
+        String command = address;
+        if (address.startsWith(BOARD_PATH_PREFIX)) {
+            final int separatorIndex = address.indexOf('/', BOARD_PATH_PREFIX.length());
+            if (separatorIndex < 0) {
+                log.warn("OSC message without command: {}", address);
+                return;
+            }
+            boardId = address.substring(BOARD_PATH_PREFIX.length(), separatorIndex);
+            command = address.substring(separatorIndex);
+        }
+        final Message message = this.decoder.decode(command, args);
+        if (message == null) {
+            this.oscUnrecognizedCount.increment();
+            return;
+        }
+        message.setReceivedNanos(receivedNanos);
+        this.oscDecodeDuration.recordSince(startNanos);
+        this.oscMessageCount.increment();
+        if (boardId != null) {
+            this.boards.submit(boardId, message);
+        } else {
+            this.boards.defaultBoard().submit(message);
+        }
+    }
+
+    private static class SerializedDrawing {
+        final long version;
+        final byte[] bytes;
+
+        SerializedDrawing(long version, byte[] bytes) {
+            this.version = version;
+            this.bytes = bytes;
         }
     }
 }
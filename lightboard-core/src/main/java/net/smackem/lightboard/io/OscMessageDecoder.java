@@ -0,0 +1,154 @@
+package net.smackem.lightboard.io;
+
+import net.smackem.lightboard.messaging.*;
+import net.smackem.lightboard.model.Rgba;
+import org.locationtech.jts.geom.Coordinate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * Translates the commands of inbound OSC messages into {@link Message}s.
+ * <pre>
+ * /init/size     width:i height:i
+ * /figure/begin  x:f y:f r:i g:i b:i a:i strokeWidth:f
+ * /figure/point  x:f y:f
+ * /figure/end    x:f y:f
+ * /figure/remove x:f y:f figureIndex:i
+ * /figure/erase  x:f y:f radius:f
+ * </pre>
+ * The routing of a command to a board, i.e. the {@code /board/<id>} prefix of the address, is up to the caller.
+ * <p>
+ *     Messages are decoded either from the arguments parsed by javaosc or, on the fast path, directly from
+ *     the bytes of a datagram that holds a single message with one of the commands above.
+ * </p>
+ */
+public final class OscMessageDecoder {
+    private static final Logger log = LoggerFactory.getLogger(OscMessageDecoder.class);
+    private static final Command[] COMMANDS = Command.values();
+
+    private enum Command {
+        INIT_SIZE("/init/size", ",ii"),
+        FIGURE_BEGIN("/figure/begin", ",ffiiiif"),
+        FIGURE_POINT("/figure/point", ",ff"),
+        FIGURE_END("/figure/end", ",ff"),
+        FIGURE_REMOVE("/figure/remove", ",ffi"),
+        FIGURE_ERASE("/figure/erase", ",fff");
+
+        final byte[] address;
+        // including the terminating zero
+        final byte[] typeTags;
+        final int argumentCount;
+
+        Command(String address, String typeTags) {
+            this.address = address.getBytes(StandardCharsets.US_ASCII);
+            this.typeTags = (typeTags + '\0').getBytes(StandardCharsets.US_ASCII);
+            this.argumentCount = typeTags.length() - 1;
+        }
+    }
+
+    /**
+     * @return the decoded message or {@code null} if the command is not recognized.
+     * @throws ClassCastException if an argument has the wrong type.
+     * @throws IndexOutOfBoundsException if arguments are missing.
+     */
+    public Message decode(String command, List<Object> args) {
+        return switch (command) {
+            case "/init/size" -> new InitSizeMessage((int) args.get(0), (int) args.get(1));
+            case "/figure/begin" -> new FigureBeginMessage(
+                    new Coordinate((float) args.get(0), (float) args.get(1)),
+                    new Rgba((int) args.get(2), (int) args.get(3), (int) args.get(4), (int) args.get(5)),
+                    (float) args.get(6));
+            case "/figure/point" -> new FigurePointMessage(new Coordinate((float) args.get(0), (float) args.get(1)));
+            case "/figure/end" -> new FigureEndMessage(new Coordinate((float) args.get(0), (float) args.get(1)));
+            case "/figure/remove" -> new FigureRemoveMessage(
+                    new Coordinate((float) args.get(0), (float) args.get(1)),
+                    (int) args.get(2));
+            case "/figure/erase" -> new FigureEraseMessage(
+                    new Coordinate((float) args.get(0), (float) args.get(1)),
+                    (float) args.get(2));
+            default -> {
+                log.warn("unrecognized OSC message address: {}", command);
+                yield null;
+            }
+        };
+    }
+
+    /**
+     * Decodes an OSC message from the bytes of a datagram without allocating anything but the message.
+     * The message must have one of the commands above with exactly the listed argument types.
+     *
+     * @param packet the datagram from its position to its limit, in big-endian byte order.
+     *      Its position is not modified.
+     * @param commandOffset the offset of the command within the address, e.g. the length of a
+     *      {@code /board/<id>} prefix.
+     * @return the decoded message or {@code null} if the datagram is no such message, e.g. a bundle,
+     *      a message with another command or with other arguments, which is then left to javaosc.
+     * @throws RuntimeException if the message cannot be created from its arguments, like
+     *      {@link #decode(String, List)} would.
+     */
+    public Message decode(ByteBuffer packet, int commandOffset) {
+        final int start = packet.position();
+        final int limit = packet.limit();
+        int addressEnd = start + commandOffset;
+        while (addressEnd < limit && packet.get(addressEnd) != 0) {
+            addressEnd++;
+        }
+        final Command command = findCommand(packet, start + commandOffset, addressEnd);
+        if (command == null) {
+            return null;
+        }
+        // strings are terminated by at least one zero byte and padded to a multiple of four bytes
+        final int typeTagsStart = start + align(addressEnd - start + 1);
+        final int argumentsStart = typeTagsStart + align(command.typeTags.length);
+        if (argumentsStart + command.argumentCount * 4 > limit
+                || equals(packet, typeTagsStart, command.typeTags) == false) {
+            return null;
+        }
+        final int a = argumentsStart;
+        return switch (command) {
+            case INIT_SIZE -> new InitSizeMessage(packet.getInt(a), packet.getInt(a + 4));
+            case FIGURE_BEGIN -> new FigureBeginMessage(
+                    new Coordinate(packet.getFloat(a), packet.getFloat(a + 4)),
+                    new Rgba(packet.getInt(a + 8), packet.getInt(a + 12),
+                            packet.getInt(a + 16), packet.getInt(a + 20)),
+                    packet.getFloat(a + 24));
+            case FIGURE_POINT -> new FigurePointMessage(new Coordinate(packet.getFloat(a), packet.getFloat(a + 4)));
+            case FIGURE_END -> new FigureEndMessage(new Coordinate(packet.getFloat(a), packet.getFloat(a + 4)));
+            case FIGURE_REMOVE -> new FigureRemoveMessage(
+                    new Coordinate(packet.getFloat(a), packet.getFloat(a + 4)),
+                    packet.getInt(a + 8));
+            case FIGURE_ERASE -> new FigureEraseMessage(
+                    new Coordinate(packet.getFloat(a), packet.getFloat(a + 4)),
+                    packet.getFloat(a + 8));
+        };
+    }
+
+    private static Command findCommand(ByteBuffer packet, int start, int end) {
+        for (final Command command : COMMANDS) {
+            if (command.address.length == end - start && equals(packet, start, command.address)) {
+                return command;
+            }
+        }
+        return null;
+    }
+
+    private static boolean equals(ByteBuffer packet, int index, byte[] bytes) {
+        if (index + bytes.length > packet.limit()) {
+            return false;
+        }
+        for (int i = 0; i < bytes.length; i++) {
+            if (packet.get(index + i) != bytes[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int align(int length) {
+        return (length + 3) & ~3;
+    }
+}
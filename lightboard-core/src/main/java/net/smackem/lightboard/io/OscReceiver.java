@@ -0,0 +1,269 @@
+package net.smackem.lightboard.io;
+
+import net.smackem.lightboard.metrics.Counter;
+import net.smackem.lightboard.metrics.MetricsRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.DatagramChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Receives OSC datagrams on a UDP port and hands their bytes to a {@link Handler}.
+ * <p>
+ *     The datagrams are received by several workers, each with its own socket, thread and handler, if the
+ *     platform supports {@link StandardSocketOptions#SO_REUSEPORT}. The kernel assigns each sender to one of the
+ *     sockets, so the datagrams of a sender are handled one at a time and in order of arrival, while the datagrams
+ *     of different senders are handled in parallel. Otherwise there is a single worker.
+ *     Each worker receives into a single buffer, so that receiving allocates nothing.
+ * </p>
+ */
+final class OscReceiver implements AutoCloseable {
+    private static final Logger log = LoggerFactory.getLogger(OscReceiver.class);
+    // the maximum payload of a UDP datagram
+    private static final int MAX_DATAGRAM_SIZE = 65507;
+    private static final long CLOSE_TIMEOUT_MILLIS = 5000;
+    // senders beyond this number are counted as "other", so that the metrics do not grow unbounded
+    private static final int MAX_TRACKED_SOURCE_COUNT = 64;
+    private static final List<Path> PROC_NET_UDP_PATHS = List.of(Path.of("/proc/net/udp"), Path.of("/proc/net/udp6"));
+
+    private final List<Worker> workers = new ArrayList<>();
+    private final MetricsRegistry metrics = MetricsRegistry.defaultRegistry();
+    private final AtomicInteger trackedSourceCount = new AtomicInteger();
+    private final Counter otherSourceDatagramCount;
+    private final int port;
+    private final Object monitor = new Object();
+    private long lastKernelDropCount;
+
+    @FunctionalInterface
+    interface Handler {
+        /**
+         * @param datagram the bytes of the datagram from position to limit, valid only during the call.
+         * @param receivedNanos the {@link System#nanoTime()} at which the datagram has been received.
+         */
+        void handleDatagram(ByteBuffer datagram, long receivedNanos);
+    }
+
+    /**
+     * @param workerCount the number of sockets and threads to receive on, which is reduced to one
+     *      if the platform does not support {@link StandardSocketOptions#SO_REUSEPORT}.
+     * @param receiveBufferSize the size of the socket receive buffer requested from the operating system,
+     *      which bounds the bursts a worker can fall behind before datagrams are dropped.
+     * @param handlerFactory creates the handler of each worker. A handler is only called by its worker.
+     */
+    OscReceiver(InetSocketAddress address,
+                int workerCount,
+                int receiveBufferSize,
+                Supplier<? extends Handler> handlerFactory) throws IOException {
+        Objects.requireNonNull(handlerFactory);
+        try {
+            final DatagramChannel first = openChannel(receiveBufferSize);
+            this.workers.add(new Worker(0, first, handlerFactory.get()));
+            final boolean reusePort = workerCount > 1
+                    && first.supportedOptions().contains(StandardSocketOptions.SO_REUSEPORT);
+            if (reusePort) {
+                first.setOption(StandardSocketOptions.SO_REUSEPORT, true);
+            } else if (workerCount > 1) {
+                log.info("SO_REUSEPORT is not supported, receiving osc on a single thread");
+            }
+            first.bind(address);
+            // bind the other sockets to the same port, even if an ephemeral port has been requested
+            final SocketAddress localAddress = first.getLocalAddress();
+            for (int index = 1; reusePort && index < workerCount; index++) {
+                final DatagramChannel channel = openChannel(receiveBufferSize);
+                this.workers.add(new Worker(index, channel, handlerFactory.get()));
+                channel.setOption(StandardSocketOptions.SO_REUSEPORT, true);
+                channel.bind(localAddress);
+            }
+            this.port = ((InetSocketAddress) localAddress).getPort();
+            final int actualBufferSize = first.getOption(StandardSocketOptions.SO_RCVBUF);
+            if (actualBufferSize < receiveBufferSize) {
+                log.warn("osc receive buffer is {} bytes instead of {}, see net.core.rmem_max",
+                        actualBufferSize, receiveBufferSize);
+            }
+            log.info("receiving osc on {} with {} worker(s), {} bytes receive buffer",
+                    localAddress, this.workers.size(), actualBufferSize);
+        } catch (IOException | RuntimeException e) {
+            for (final Worker worker : this.workers) {
+                worker.channel.close();
+            }
+            throw e;
+        }
+        this.otherSourceDatagramCount = this.metrics.counter("lightboard_osc_source_datagrams_total",
+                "OSC datagrams received per sender", Map.of("source", "other"));
+        if (PROC_NET_UDP_PATHS.stream().anyMatch(Files::isReadable)) {
+            this.metrics.counter("lightboard_osc_kernel_drops_total",
+                    "OSC datagrams dropped by the kernel because a socket receive buffer was full",
+                    Map.of(), this::kernelDropCount);
+        }
+    }
+
+    /**
+     * @return the local port, which differs from the requested one if an ephemeral port has been requested.
+     */
+    int port() {
+        return this.port;
+    }
+
+    int workerCount() {
+        return this.workers.size();
+    }
+
+    void start() {
+        for (final Worker worker : this.workers) {
+            worker.thread.start();
+        }
+    }
+
+    /**
+     * @return the number of datagrams the kernel has dropped for the sockets bound to the port of this receiver,
+     *      including sockets of other receivers that share the port, as reported by {@code /proc/net/udp}.
+     */
+    long kernelDropCount() {
+        synchronized (this.monitor) {
+            long count = 0;
+            try {
+                for (final Path path : PROC_NET_UDP_PATHS) {
+                    if (Files.isReadable(path)) {
+                        count += sumDrops(Files.readAllLines(path), this.port);
+                    }
+                }
+            } catch (IOException | RuntimeException e) {
+                log.debug("could not read udp drops: {}", e.toString());
+                return this.lastKernelDropCount;
+            }
+            // the sockets and their counts vanish when the receiver is closed
+            this.lastKernelDropCount = Math.max(this.lastKernelDropCount, count);
+            return this.lastKernelDropCount;
+        }
+    }
+
+    /**
+     * Sums up the {@code drops} column of the lines of {@code /proc/net/udp} or {@code /proc/net/udp6}
+     * whose local address has the specified port.
+     */
+    private static long sumDrops(List<String> lines, int port) {
+        long drops = 0;
+        // the first line is the header
+        for (final String line : lines.subList(Math.min(1, lines.size()), lines.size())) {
+            final String[] columns = line.trim().split("\\s+");
+            final String localAddress = columns[1];
+            final int localPort = Integer.parseInt(localAddress.substring(localAddress.indexOf(':') + 1), 16);
+            if (localPort == port) {
+                drops += Long.parseLong(columns[columns.length - 1]);
+            }
+        }
+        return drops;
+    }
+
+    private static String formatSource(SocketAddress source) {
+        return source instanceof InetSocketAddress address
+                ? address.getAddress().getHostAddress() + ":" + address.getPort()
+                : String.valueOf(source);
+    }
+
+    private static DatagramChannel openChannel(int receiveBufferSize) throws IOException {
+        final DatagramChannel channel = DatagramChannel.open();
+        channel.setOption(StandardSocketOptions.SO_RCVBUF, receiveBufferSize);
+        return channel;
+    }
+
+    /**
+     * Stops receiving and waits for the datagrams being handled.
+     */
+    @Override
+    public void close() throws IOException, InterruptedException {
+        for (final Worker worker : this.workers) {
+            worker.channel.close();
+        }
+        for (final Worker worker : this.workers) {
+            worker.thread.join(CLOSE_TIMEOUT_MILLIS);
+        }
+    }
+
+    private class Worker {
+        final DatagramChannel channel;
+        final Handler handler;
+        final Thread thread;
+        final Counter datagramCount;
+        final Counter byteCount;
+        final Map<SocketAddress, Counter> sourceDatagramCounts = new HashMap<>();
+        SocketAddress lastSource;
+        Counter lastSourceDatagramCount;
+
+        Worker(int index, DatagramChannel channel, Handler handler) {
+            this.channel = channel;
+            this.handler = Objects.requireNonNull(handler);
+            this.thread = new Thread(this::receive, "osc-receiver-" + index);
+            this.thread.setDaemon(true);
+            final Map<String, String> labels = Map.of("worker", Integer.toString(index));
+            this.datagramCount = metrics.counter("lightboard_osc_received_datagrams_total",
+                    "OSC datagrams received per worker", labels);
+            this.byteCount = metrics.counter("lightboard_osc_received_bytes_total",
+                    "OSC bytes received per worker", labels);
+        }
+
+        void receive() {
+            final ByteBuffer buffer = ByteBuffer.allocateDirect(MAX_DATAGRAM_SIZE);
+            while (true) {
+                buffer.clear();
+                final SocketAddress source;
+                try {
+                    source = this.channel.receive(buffer);
+                } catch (ClosedChannelException e) {
+                    break;
+                } catch (IOException e) {
+                    log.warn("error receiving osc datagram", e);
+                    continue;
+                }
+                final long receivedNanos = System.nanoTime();
+                buffer.flip();
+                this.datagramCount.increment();
+                this.byteCount.add(buffer.remaining());
+                sourceDatagramCount(source).increment();
+                try {
+                    this.handler.handleDatagram(buffer, receivedNanos);
+                } catch (RuntimeException e) {
+                    log.error("error handling osc datagram", e);
+                }
+            }
+            log.info("osc receiver {} stopped", this.thread.getName());
+        }
+
+        private Counter sourceDatagramCount(SocketAddress source) {
+            // the channel returns the same address object as long as the sender does not change
+            if (source == this.lastSource) {
+                return this.lastSourceDatagramCount;
+            }
+            Counter counter = this.sourceDatagramCounts.get(source);
+            if (counter == null) {
+                if (trackedSourceCount.getAndUpdate(n -> Math.min(n + 1, MAX_TRACKED_SOURCE_COUNT))
+                        < MAX_TRACKED_SOURCE_COUNT) {
+                    counter = metrics.counter("lightboard_osc_source_datagrams_total",
+                            "OSC datagrams received per sender", Map.of("source", formatSource(source)));
+                    this.sourceDatagramCounts.put(source, counter);
+                    log.info("receiving osc from {} on {}", source, this.thread.getName());
+                } else {
+                    counter = otherSourceDatagramCount;
+                }
+            }
+            this.lastSource = source;
+            this.lastSourceDatagramCount = counter;
+            return counter;
+        }
+    }
+}
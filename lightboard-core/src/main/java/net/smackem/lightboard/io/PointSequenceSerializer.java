@@ -0,0 +1,27 @@
+package net.smackem.lightboard.io;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+import net.smackem.lightboard.model.PointSequence;
+
+import java.io.IOException;
+
+class PointSequenceSerializer extends StdSerializer<PointSequence> {
+
+    PointSequenceSerializer() {
+        super(PointSequence.class);
+    }
+
+    @Override
+    public void serialize(PointSequence points, JsonGenerator json, SerializerProvider serializerProvider) throws IOException {
+        json.writeStartArray(points.size());
+        for (int i = 0; i < points.size(); i++) {
+            json.writeStartObject();
+            json.writeNumberField("x", points.x(i));
+            json.writeNumberField("y", points.y(i));
+            json.writeEndObject();
+        }
+        json.writeEndArray();
+    }
+}
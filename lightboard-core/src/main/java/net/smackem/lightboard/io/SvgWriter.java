@@ -1,52 +1,228 @@
 package net.smackem.lightboard.io;
 
 import net.smackem.lightboard.model.Document;
+import net.smackem.lightboard.model.DocumentSnapshot;
 import net.smackem.lightboard.model.Drawing;
+import net.smackem.lightboard.model.DrawingSnapshot;
 import net.smackem.lightboard.model.Figure;
+import net.smackem.lightboard.model.PointSequence;
 import net.smackem.lightboard.model.Rgba;
 
 import java.io.IOException;
-import java.util.Collection;
-import java.util.Locale;
-import java.util.stream.Collectors;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 
+/**
+ * Writes documents as SVG.
+ * <p>
+ *     The drawings are rendered into separate buffers in parallel on a {@link ForkJoinPool}
+ *     and written to the channel in order as soon as they are complete. Only a few drawings are rendered
+ *     ahead of the one being written, so memory consumption does not grow with the size of the document.
+ *     The writing thread may be interrupted to cancel the export.
+ * </p>
+ */
 public class SvgWriter {
-    public void write(Document document, Appendable out) throws IOException {
-        final Collection<Drawing> drawings = document.drawings();
-        int drawingIndex = 0;
-        int baseY = 0;
-        out.append(String.format(Locale.ROOT, """
-                <svg xmlns="http://www.w3.org/2000/svg" width="%d" height="%d">
-                """, document.width(), document.height() * drawings.size()));
-        for (final Drawing drawing : document.drawings()) {
-            if ((drawingIndex & 1) == 1) {
-                out.append(String.format(Locale.ROOT, """
-                        <rect x="0" y="%d" width="%d" height="%d"
-                              style="fill:#e0e0e0" />
-                        """, baseY, document.width(), document.height()));
-            }
-            writeDrawing(drawing, baseY, out);
-            baseY += document.height();
-            drawingIndex++;
-        }
-        out.append("</svg>\n");
-    }
-
-    private static void writeDrawing(Drawing drawing, int baseY, Appendable out) throws IOException {
+    public static final String MEDIA_TYPE = "image/svg+xml";
+    private static final int COORDINATE_SCALE = 1000;
+    private final ForkJoinPool pool;
+
+    @FunctionalInterface
+    public interface ProgressListener {
+        void progress(long writtenDrawingCount, long drawingCount);
+    }
+
+    /**
+     * Creates a writer that renders on the common pool. Long-running processes should pass a dedicated pool,
+     * see {@link #SvgWriter(ForkJoinPool)}.
+     */
+    public SvgWriter() {
+        this(ForkJoinPool.commonPool());
+    }
+
+    /**
+     * @param pool the pool to render the drawings on.
+     */
+    public SvgWriter(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    public void write(Document document, WritableByteChannel channel) throws IOException {
+        write(document, channel, (written, count) -> {});
+    }
+
+    public void write(Document document, WritableByteChannel channel, ProgressListener listener) throws IOException {
+        final DocumentSnapshot snapshot = document.snapshot();
+        write(snapshot, snapshot.drawings(), channel, listener);
+    }
+
+    /**
+     * Writes the specified drawings one below the other, each sized like the document.
+     */
+    public void write(DocumentSnapshot document,
+                      List<Drawing> drawings,
+                      WritableByteChannel channel,
+                      ProgressListener listener) throws IOException {
+        final int width = document.width();
+        final int height = document.height();
+        final SvgBuffer header = new SvgBuffer(128)
+                .append("<svg xmlns=\"http://www.w3.org/2000/svg\" width=\"")
+                .append(width)
+                .append("\" height=\"")
+                .append(height * drawings.size())
+                .append("\">\n");
+        header.writeTo(channel);
+        final int window = Math.max(2, this.pool.getParallelism() * 2);
+        final ArrayDeque<ForkJoinTask<SvgBuffer>> pending = new ArrayDeque<>(window);
+        int nextIndex = 0;
+        try {
+            for (int index = 0; index < drawings.size(); index++) {
+                while (nextIndex < drawings.size() && pending.size() < window) {
+                    final DrawingSnapshot drawing = drawings.get(nextIndex).snapshot();
+                    final int drawingIndex = nextIndex;
+                    pending.addLast(this.pool.submit(() -> renderDrawing(drawing, drawingIndex, width, height)));
+                    nextIndex++;
+                }
+                final SvgBuffer buffer = pending.removeFirst().get();
+                buffer.writeTo(channel);
+                listener.progress(index + 1, drawings.size());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("svg export cancelled");
+        } catch (ExecutionException e) {
+            throw new IOException("error rendering drawing", e.getCause());
+        } finally {
+            for (final ForkJoinTask<SvgBuffer> task : pending) {
+                task.cancel(false);
+            }
+        }
+        new SvgBuffer(8).append("</svg>\n").writeTo(channel);
+    }
+
+    private static SvgBuffer renderDrawing(DrawingSnapshot drawing, int drawingIndex, int width, int height) {
+        final int baseY = drawingIndex * height;
+        final SvgBuffer out = new SvgBuffer(Math.max(256, drawing.pointCount() * 16));
+        if ((drawingIndex & 1) == 1) {
+            out.append("<rect x=\"0\" y=\"").append(baseY)
+                    .append("\" width=\"").append(width)
+                    .append("\" height=\"").append(height)
+                    .append("\"\n      style=\"fill:#e0e0e0\" />\n");
+        }
         for (final Figure figure : drawing.figures()) {
-            final String points = figure.points().stream()
-                    .map(pt -> String.format(Locale.ROOT, "%f,%f", pt.x, pt.y + baseY))
-                    .collect(Collectors.joining(" "));
-            out.append(String.format(Locale.ROOT, """
-                    <polyline points="%s"
-                              style="fill:none;stroke:%s;stroke-width:%f" />
-                    """, points, toWeb(figure.color()), figure.strokeWidth()));
+            final PointSequence points = figure.points();
+            final Rgba rgba = figure.color();
+            out.append("<polyline points=\"");
+            for (int i = 0; i < points.size(); i++) {
+                if (i > 0) {
+                    out.append(' ');
+                }
+                out.appendFixed(points.x(i)).append(',').appendFixed(points.y(i) + baseY);
+            }
+            out.append("\"\n          style=\"fill:none;stroke:rgba(")
+                    .append(rgba.r()).append(", ")
+                    .append(rgba.g()).append(", ")
+                    .append(rgba.b()).append(", ")
+                    .appendFixed(rgba.a() / 255.0)
+                    .append(");stroke-width:")
+                    .appendFixed(figure.strokeWidth())
+                    .append("\" />\n");
         }
+        return out;
     }
 
-    private static String toWeb(Rgba rgba) {
-        return String.format(Locale.ROOT,
-                "rgba(%d, %d, %d, %f)",
-                rgba.r(), rgba.g(), rgba.b(), (float) rgba.a() / 255.0f);
+    /**
+     * A growable buffer of ASCII characters with allocation-free number formatting.
+     */
+    private static class SvgBuffer {
+        private byte[] bytes;
+        private int length;
+
+        SvgBuffer(int capacity) {
+            this.bytes = new byte[capacity];
+        }
+
+        SvgBuffer append(String s) {
+            ensureCapacity(s.length());
+            for (int i = 0; i < s.length(); i++) {
+                this.bytes[this.length++] = (byte) s.charAt(i);
+            }
+            return this;
+        }
+
+        SvgBuffer append(char c) {
+            ensureCapacity(1);
+            this.bytes[this.length++] = (byte) c;
+            return this;
+        }
+
+        SvgBuffer append(long value) {
+            ensureCapacity(20);
+            if (value < 0) {
+                if (value == Long.MIN_VALUE) {
+                    return append(Long.toString(value));
+                }
+                this.bytes[this.length++] = '-';
+                value = -value;
+            }
+            final int start = this.length;
+            do {
+                this.bytes[this.length++] = (byte) ('0' + value % 10);
+                value /= 10;
+            } while (value != 0);
+            reverse(start, this.length - 1);
+            return this;
+        }
+
+        /**
+         * Appends the value with at most three decimal places and without trailing zeros.
+         */
+        SvgBuffer appendFixed(double value) {
+            if (Double.isFinite(value) == false || Math.abs(value) >= 1e12) {
+                return append(Double.toString(value));
+            }
+            long scaled = Math.round(value * COORDINATE_SCALE);
+            if (scaled < 0) {
+                append('-');
+                scaled = -scaled;
+            }
+            append(scaled / COORDINATE_SCALE);
+            int fraction = (int) (scaled % COORDINATE_SCALE);
+            if (fraction != 0) {
+                append('.');
+                for (int divisor = COORDINATE_SCALE / 10; fraction != 0; divisor /= 10) {
+                    append((char) ('0' + fraction / divisor));
+                    fraction %= divisor;
+                }
+            }
+            return this;
+        }
+
+        void writeTo(WritableByteChannel channel) throws IOException {
+            final ByteBuffer buffer = ByteBuffer.wrap(this.bytes, 0, this.length);
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+
+        private void reverse(int from, int to) {
+            while (from < to) {
+                final byte b = this.bytes[from];
+                this.bytes[from++] = this.bytes[to];
+                this.bytes[to--] = b;
+            }
+        }
+
+        private void ensureCapacity(int count) {
+            if (this.length + count > this.bytes.length) {
+                this.bytes = Arrays.copyOf(this.bytes, Math.max(this.bytes.length * 2, this.length + count));
+            }
+        }
     }
 }
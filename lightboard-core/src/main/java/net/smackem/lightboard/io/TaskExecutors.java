@@ -0,0 +1,53 @@
+package net.smackem.lightboard.io;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Creates the executors for tasks that spend most of their time blocked on I/O, e.g. HTTP requests.
+ * Such tasks are run on virtual threads if the runtime supports them. The project is compiled for a release
+ * without virtual threads, so they are looked up reflectively.
+ */
+final class TaskExecutors {
+    private static final Logger log = LoggerFactory.getLogger(TaskExecutors.class);
+    private static final long KEEP_ALIVE_SECONDS = 60;
+
+    private TaskExecutors() {
+        throw new IllegalAccessError();
+    }
+
+    /**
+     * @return an executor that starts a virtual thread per task or, if virtual threads are not available,
+     *      a pool of at most {@code maxThreads} daemon threads that are started on demand.
+     */
+    static ExecutorService newIoExecutor(String nameFormat, int maxThreads) {
+        final ExecutorService virtualThreadExecutor = newVirtualThreadPerTaskExecutor();
+        if (virtualThreadExecutor != null) {
+            return virtualThreadExecutor;
+        }
+        final ThreadPoolExecutor executor = new ThreadPoolExecutor(maxThreads, maxThreads,
+                KEEP_ALIVE_SECONDS, TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
+                new ThreadFactoryBuilder().setNameFormat(nameFormat).setDaemon(true).build());
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    private static ExecutorService newVirtualThreadPerTaskExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (NoSuchMethodException e) {
+            return null;
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            // e.g. virtual threads are a preview feature of the runtime that has not been enabled
+            log.warn("virtual threads are not available: {}", e.toString());
+            return null;
+        }
+    }
+}
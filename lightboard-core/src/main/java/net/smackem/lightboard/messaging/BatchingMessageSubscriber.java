@@ -0,0 +1,166 @@
+package net.smackem.lightboard.messaging;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.function.Consumer;
+
+/**
+ * A {@link Flow.Subscriber} that collects incoming messages and hands them to a consumer in batches.
+ * <p>
+ *     At most one batch is scheduled on the executor at a time. Every message that arrives until the batch
+ *     runs is included in it, so a busy publisher results in few large batches instead of one task per message.
+ *     The number of requested but not yet consumed messages never exceeds the configured demand.
+ * </p>
+ */
+public class BatchingMessageSubscriber implements Flow.Subscriber<Message> {
+    private static final Logger log = LoggerFactory.getLogger(BatchingMessageSubscriber.class);
+
+    private final Executor executor;
+    private final Consumer<List<Message>> consumer;
+    private final int demand;
+    private final int maxBatchSize;
+    private final Object monitor = new Object();
+    private final ArrayDeque<Message> pendingMessages = new ArrayDeque<>();
+    private final CompletableFuture<Void> completion = new CompletableFuture<>();
+    private Flow.Subscription subscription;
+    private boolean drainScheduled;
+    private boolean completed;
+    private long batchCount;
+    private long messageCount;
+    private int lastBatchSize;
+    private int largestBatchSize;
+
+    /**
+     * @param executor executes the consumer, e.g. {@code Platform::runLater}.
+     * @param consumer receives the messages in order of arrival.
+     * @param demand the maximum number of messages requested from the publisher ahead of consumption.
+     * @param maxBatchSize the maximum number of messages passed to the consumer at once.
+     */
+    public BatchingMessageSubscriber(Executor executor, Consumer<List<Message>> consumer, int demand, int maxBatchSize) {
+        if (demand <= 0 || maxBatchSize <= 0) {
+            throw new IllegalArgumentException("demand and batch size must be positive");
+        }
+        this.executor = Objects.requireNonNull(executor);
+        this.consumer = Objects.requireNonNull(consumer);
+        this.demand = demand;
+        this.maxBatchSize = maxBatchSize;
+    }
+
+    @Override
+    public void onSubscribe(Flow.Subscription subscription) {
+        synchronized (this.monitor) {
+            this.subscription = subscription;
+        }
+        subscription.request(this.demand);
+    }
+
+    @Override
+    public void onNext(Message item) {
+        synchronized (this.monitor) {
+            this.pendingMessages.addLast(item);
+            if (this.drainScheduled) {
+                return;
+            }
+            this.drainScheduled = true;
+        }
+        this.executor.execute(this::drain);
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+        log.error("error consuming message", throwable);
+        onComplete();
+    }
+
+    @Override
+    public void onComplete() {
+        log.info("message stream complete");
+        synchronized (this.monitor) {
+            this.completed = true;
+            if (this.drainScheduled) {
+                return;
+            }
+        }
+        this.completion.complete(null);
+    }
+
+    /**
+     * @return a future that is completed once the publisher has completed and all messages have been consumed.
+     */
+    public CompletableFuture<Void> completion() {
+        return this.completion;
+    }
+
+    /**
+     * @return the number of batches passed to the consumer.
+     */
+    public long batchCount() {
+        synchronized (this.monitor) {
+            return this.batchCount;
+        }
+    }
+
+    /**
+     * @return the number of messages passed to the consumer.
+     */
+    public long messageCount() {
+        synchronized (this.monitor) {
+            return this.messageCount;
+        }
+    }
+
+    public int lastBatchSize() {
+        synchronized (this.monitor) {
+            return this.lastBatchSize;
+        }
+    }
+
+    public int largestBatchSize() {
+        synchronized (this.monitor) {
+            return this.largestBatchSize;
+        }
+    }
+
+    private void drain() {
+        final List<Message> batch;
+        final Flow.Subscription subscription;
+        synchronized (this.monitor) {
+            final int size = Math.min(this.pendingMessages.size(), this.maxBatchSize);
+            batch = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                batch.add(this.pendingMessages.pollFirst());
+            }
+            this.batchCount++;
+            this.messageCount += size;
+            this.lastBatchSize = size;
+            this.largestBatchSize = Math.max(this.largestBatchSize, size);
+            subscription = this.subscription;
+        }
+        try {
+            this.consumer.accept(batch);
+        } finally {
+            if (batch.isEmpty() == false) {
+                subscription.request(batch.size());
+            }
+            final boolean reschedule, complete;
+            synchronized (this.monitor) {
+                reschedule = this.pendingMessages.isEmpty() == false;
+                this.drainScheduled = reschedule;
+                complete = reschedule == false && this.completed;
+            }
+            if (reschedule) {
+                this.executor.execute(this::drain);
+            } else if (complete) {
+                this.completion.complete(null);
+            }
+        }
+    }
+}
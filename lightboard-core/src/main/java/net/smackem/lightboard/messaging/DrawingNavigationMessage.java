@@ -0,0 +1,37 @@
+package net.smackem.lightboard.messaging;
+
+import net.smackem.lightboard.model.Drawing;
+
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Asks for the previous or next drawing of the document to be selected or for a new drawing to be inserted.
+ * Once the message has been applied, the selected drawing is available from {@link #result()} and
+ * the change is announced by a {@link DrawingSwitchMessage}.
+ */
+public class DrawingNavigationMessage extends Message {
+    public enum Navigation {
+        PREVIOUS,
+        NEXT,
+        INSERT,
+    }
+
+    private final Navigation navigation;
+    private final CompletableFuture<Drawing> result = new CompletableFuture<>();
+
+    public DrawingNavigationMessage(Navigation navigation) {
+        this.navigation = Objects.requireNonNull(navigation);
+    }
+
+    public Navigation navigation() {
+        return this.navigation;
+    }
+
+    /**
+     * @return a future that is completed with the selected drawing once the message has been applied.
+     */
+    public CompletableFuture<Drawing> result() {
+        return this.result;
+    }
+}
@@ -0,0 +1,25 @@
+package net.smackem.lightboard.messaging;
+
+/**
+ * Signals that another drawing of the document has been selected or inserted.
+ */
+public class DrawingSwitchMessage extends RedrawMessage {
+    private final int drawingIndex;
+    private final boolean inserted;
+
+    public DrawingSwitchMessage(int drawingIndex, boolean inserted) {
+        this.drawingIndex = drawingIndex;
+        this.inserted = inserted;
+    }
+
+    public int drawingIndex() {
+        return this.drawingIndex;
+    }
+
+    /**
+     * @return {@code true} if the selected drawing has been newly inserted at {@link #drawingIndex()}.
+     */
+    public boolean inserted() {
+        return this.inserted;
+    }
+}
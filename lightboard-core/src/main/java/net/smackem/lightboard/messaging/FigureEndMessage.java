@@ -1,9 +1,29 @@
 package net.smackem.lightboard.messaging;
 
+import net.smackem.lightboard.model.Figure;
 import org.locationtech.jts.geom.Coordinate;
 
 public class FigureEndMessage extends FigureMessage {
+    private final Figure figure;
+
     public FigureEndMessage(Coordinate point) {
+        this(point, null);
+    }
+
+    /**
+     * @param figure the figure as it has been ended, i.e. simplified, or {@code null}
+     *      if the message has not been applied yet.
+     */
+    public FigureEndMessage(Coordinate point, Figure figure) {
         super(point);
+        this.figure = figure;
+    }
+
+    /**
+     * @return the figure as it has been ended or {@code null} if the message has not been applied yet,
+     *      see {@link MessageApplier.Listener}.
+     */
+    public Figure figure() {
+        return this.figure;
     }
 }
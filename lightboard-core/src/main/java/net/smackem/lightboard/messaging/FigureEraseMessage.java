@@ -0,0 +1,16 @@
+package net.smackem.lightboard.messaging;
+
+import org.locationtech.jts.geom.Coordinate;
+
+public class FigureEraseMessage extends FigureMessage {
+    private final double radius;
+
+    public FigureEraseMessage(Coordinate point, double radius) {
+        super(point);
+        this.radius = radius;
+    }
+
+    public double radius() {
+        return this.radius;
+    }
+}
@@ -0,0 +1,249 @@
+package net.smackem.lightboard.messaging;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Objects;
+import java.util.concurrent.SubmissionPublisher;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A bounded ring buffer between the decoding of inbound messages and their publication.
+ * <p>
+ *     Producers (typically the OSC listener thread) only ever wait for the ring if the {@link OverflowPolicy}
+ *     says so. A dedicated drain thread moves the messages to a {@link SubmissionPublisher} in order of arrival
+ *     and absorbs any blocking of the publisher.
+ * </p>
+ */
+public class IngestionQueue implements AutoCloseable {
+    private static final Logger log = LoggerFactory.getLogger(IngestionQueue.class);
+    private static final int DRAIN_CHUNK_SIZE = 256;
+
+    /**
+     * Determines what happens when a message is offered to a full queue.
+     */
+    public enum OverflowPolicy {
+        /**
+         * Wait until the drain thread has made room.
+         */
+        BLOCK,
+        /**
+         * Discard the oldest queued {@link FigurePointMessage}. Waits if there is none.
+         */
+        DROP_OLDEST_POINT,
+        /**
+         * Replace the newest queued message with the offered one if both are {@link FigurePointMessage}s,
+         * i.e. belong to the same stroke. Waits otherwise.
+         */
+        COALESCE_POINTS,
+    }
+
+    private final Message[] ring;
+    private final int mask;
+    private final OverflowPolicy policy;
+    private final SubmissionPublisher<Message> publisher;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = this.lock.newCondition();
+    private final Condition notFull = this.lock.newCondition();
+    private final Thread drainThread;
+    private long head;
+    private long tail;
+    private boolean closed;
+    private long dropCount;
+    private long coalesceCount;
+    private long blockCount;
+
+    /**
+     * @param capacity the number of slots, rounded up to the next power of two.
+     */
+    public IngestionQueue(int capacity, OverflowPolicy policy, SubmissionPublisher<Message> publisher) {
+        this(capacity, policy, publisher, "ingestion-drain");
+    }
+
+    /**
+     * @param capacity the number of slots, rounded up to the next power of two.
+     * @param threadName the name of the thread that drains the queue.
+     */
+    public IngestionQueue(int capacity,
+                          OverflowPolicy policy,
+                          SubmissionPublisher<Message> publisher,
+                          String threadName) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be positive");
+        }
+        final int slotCount = capacity == 1 ? 1 : Integer.highestOneBit(capacity - 1) << 1;
+        this.ring = new Message[slotCount];
+        this.mask = slotCount - 1;
+        this.policy = Objects.requireNonNull(policy);
+        this.publisher = Objects.requireNonNull(publisher);
+        this.drainThread = new Thread(this::drain, threadName);
+        this.drainThread.setDaemon(true);
+        this.drainThread.start();
+    }
+
+    /**
+     * Enqueues the specified message, applying the overflow policy if the queue is full.
+     * Messages offered after {@link #close()} are ignored.
+     */
+    public void offer(Message message) throws InterruptedException {
+        Objects.requireNonNull(message);
+        this.lock.lockInterruptibly();
+        try {
+            while (this.closed == false && this.tail - this.head == this.ring.length) {
+                if (this.policy == OverflowPolicy.COALESCE_POINTS && coalescePoint(message)) {
+                    return;
+                }
+                if (this.policy == OverflowPolicy.DROP_OLDEST_POINT && dropOldestPoint()) {
+                    break;
+                }
+                this.blockCount++;
+                this.notFull.await();
+            }
+            if (this.closed) {
+                return;
+            }
+            this.ring[(int) this.tail & this.mask] = message;
+            this.tail++;
+            this.notEmpty.signal();
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    public OverflowPolicy policy() {
+        return this.policy;
+    }
+
+    public int capacity() {
+        return this.ring.length;
+    }
+
+    /**
+     * @return the number of messages currently waiting to be published.
+     */
+    public int depth() {
+        this.lock.lock();
+        try {
+            return (int) (this.tail - this.head);
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * @return the number of point messages discarded by {@link OverflowPolicy#DROP_OLDEST_POINT}.
+     */
+    public long dropCount() {
+        this.lock.lock();
+        try {
+            return this.dropCount;
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * @return the number of point messages merged by {@link OverflowPolicy#COALESCE_POINTS}.
+     */
+    public long coalesceCount() {
+        this.lock.lock();
+        try {
+            return this.coalesceCount;
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * @return the number of times a producer had to wait for the queue.
+     */
+    public long blockCount() {
+        this.lock.lock();
+        try {
+            return this.blockCount;
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * Publishes the remaining messages and stops the drain thread.
+     */
+    @Override
+    public void close() throws InterruptedException {
+        this.lock.lock();
+        try {
+            this.closed = true;
+            this.notEmpty.signalAll();
+            this.notFull.signalAll();
+        } finally {
+            this.lock.unlock();
+        }
+        this.drainThread.join(TimeUnit.SECONDS.toMillis(10));
+    }
+
+    /**
+     * Replaces the newest queued message with the specified one if both are point messages.
+     */
+    private boolean coalescePoint(Message message) {
+        final int newest = (int) (this.tail - 1) & this.mask;
+        if (message instanceof FigurePointMessage && this.ring[newest] instanceof FigurePointMessage) {
+            this.ring[newest] = message;
+            this.coalesceCount++;
+            return true;
+        }
+        return false;
+    }
+
+    private boolean dropOldestPoint() {
+        for (long i = this.head; i < this.tail; i++) {
+            if (this.ring[(int) i & this.mask] instanceof FigurePointMessage) {
+                removeAt(i);
+                this.dropCount++;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void removeAt(long position) {
+        for (long i = position; i > this.head; i--) {
+            this.ring[(int) i & this.mask] = this.ring[(int) (i - 1) & this.mask];
+        }
+        this.ring[(int) this.head & this.mask] = null;
+        this.head++;
+    }
+
+    private void drain() {
+        final Message[] chunk = new Message[DRAIN_CHUNK_SIZE];
+        while (true) {
+            int count = 0;
+            this.lock.lock();
+            try {
+                while (this.head == this.tail && this.closed == false) {
+                    this.notEmpty.awaitUninterruptibly();
+                }
+                if (this.head == this.tail) {
+                    break;
+                }
+                while (count < chunk.length && this.head < this.tail) {
+                    final int index = (int) this.head & this.mask;
+                    chunk[count++] = this.ring[index];
+                    this.ring[index] = null;
+                    this.head++;
+                }
+                this.notFull.signalAll();
+            } finally {
+                this.lock.unlock();
+            }
+            for (int i = 0; i < count; i++) {
+                this.publisher.submit(chunk[i]);
+                chunk[i] = null;
+            }
+        }
+        log.info("ingestion queue closed, {} points dropped, {} points coalesced, producers blocked {} times",
+                dropCount(), coalesceCount(), blockCount());
+    }
+}
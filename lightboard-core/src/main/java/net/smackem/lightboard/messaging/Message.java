@@ -1,4 +1,40 @@
 package net.smackem.lightboard.messaging;
 
 public abstract class Message {
+    private long receivedNanos;
+    private long drawingId;
+    private long drawingVersion;
+
+    /**
+     * @return the {@link System#nanoTime()} at which the message has been received from a client
+     *      or 0 if it has not been received over the network.
+     */
+    public long receivedNanos() {
+        return this.receivedNanos;
+    }
+
+    public void setReceivedNanos(long receivedNanos) {
+        this.receivedNanos = receivedNanos;
+    }
+
+    /**
+     * @return the {@link net.smackem.lightboard.model.Drawing#id()} of the drawing the message has been applied to
+     *      or 0 if the message has not been applied.
+     */
+    public long drawingId() {
+        return this.drawingId;
+    }
+
+    /**
+     * @return the version of the drawing after the message has been applied
+     *      or 0 if the message has not been applied.
+     */
+    public long drawingVersion() {
+        return this.drawingVersion;
+    }
+
+    public void setDrawingVersion(long drawingId, long drawingVersion) {
+        this.drawingId = drawingId;
+        this.drawingVersion = drawingVersion;
+    }
 }
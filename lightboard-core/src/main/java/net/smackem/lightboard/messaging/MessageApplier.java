@@ -0,0 +1,184 @@
+package net.smackem.lightboard.messaging;
+
+import net.smackem.lightboard.model.Document;
+import net.smackem.lightboard.model.Drawing;
+import net.smackem.lightboard.model.Figure;
+import net.smackem.lightboard.model.SimplificationMode;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Applies inbound messages to a {@link Document}. An applier must be used by the single writer of the document only.
+ */
+public class MessageApplier {
+    private static final Logger log = LoggerFactory.getLogger(MessageApplier.class);
+    public static final double DEFAULT_SIMPLIFICATION_TOLERANCE = 0.5;
+
+    private final Document document;
+    private volatile double simplificationTolerance = DEFAULT_SIMPLIFICATION_TOLERANCE;
+    private volatile SimplificationMode simplificationMode = SimplificationMode.END_OF_STROKE;
+    private Listener listener;
+
+    /**
+     * Is notified of each message after it has been applied, on the thread that applied it. Messages are reported
+     * as their outcome, so that a listener never needs to repeat a computation: navigation requests as the
+     * resulting {@link DrawingSwitchMessage}, erasures as a {@link FigureRemoveMessage} for each removed figure
+     * and the end of a figure as a {@link FigureEndMessage} that carries the simplified figure.
+     * Messages without effect are not reported. Reported messages carry the version of the drawing they have been
+     * applied to, see {@link Message#drawingVersion()}.
+     */
+    @FunctionalInterface
+    public interface Listener {
+        void messageApplied(Message message, SimplificationMode simplificationMode, double simplificationTolerance);
+    }
+
+    public MessageApplier(Document document) {
+        this.document = Objects.requireNonNull(document);
+    }
+
+    public Document document() {
+        return this.document;
+    }
+
+    public double simplificationTolerance() {
+        return this.simplificationTolerance;
+    }
+
+    public void setSimplificationTolerance(double simplificationTolerance) {
+        this.simplificationTolerance = simplificationTolerance;
+    }
+
+    public SimplificationMode simplificationMode() {
+        return this.simplificationMode;
+    }
+
+    /**
+     * Sets the simplification mode of the figures begun from now on.
+     */
+    public void setSimplificationMode(SimplificationMode simplificationMode) {
+        this.simplificationMode = Objects.requireNonNull(simplificationMode);
+    }
+
+    /**
+     * Sets the listener to notify of applied messages, e.g. a journal. Must be set before messages are applied.
+     */
+    public void setListener(Listener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Applies the specified messages in order. Messages that cannot be applied, e.g. because they refer
+     * to a figure that no longer exists, are logged and skipped.
+     */
+    public void applyAll(List<Message> messages) {
+        for (final Message message : messages) {
+            try {
+                apply(message);
+            } catch (RuntimeException e) {
+                log.warn("could not apply message {}: {}", message, e.toString());
+                if (message instanceof DrawingNavigationMessage navigation) {
+                    navigation.result().completeExceptionally(e);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return {@code true} if the document has been modified or the message asks for a redraw, i.e.
+     *      if the message has been reported to the listener.
+     */
+    public boolean apply(Message message) {
+        final SimplificationMode simplificationMode = this.simplificationMode;
+        final double simplificationTolerance = this.simplificationTolerance;
+        if (message instanceof FigureEraseMessage figureErase) {
+            // each removal is reported with the version it has been recorded as
+            final Drawing drawing = this.document.drawing();
+            return drawing.eraseAt(figureErase.point(), figureErase.radius(), (index, version) -> {
+                final Message figureRemove = new FigureRemoveMessage(figureErase.point(), index);
+                figureRemove.setReceivedNanos(figureErase.receivedNanos());
+                figureRemove.setDrawingVersion(drawing.id(), version);
+                notifyListener(figureRemove, simplificationMode, simplificationTolerance);
+            }).isEmpty() == false;
+        }
+        final Message appliedMessage = applyToDocument(message, simplificationMode, simplificationTolerance);
+        if (appliedMessage == null) {
+            return false;
+        }
+        report(appliedMessage, simplificationMode, simplificationTolerance);
+        return true;
+    }
+
+    private void report(Message message, SimplificationMode simplificationMode, double simplificationTolerance) {
+        final Drawing drawing = this.document.drawing();
+        message.setDrawingVersion(drawing.id(), drawing.snapshot().version());
+        notifyListener(message, simplificationMode, simplificationTolerance);
+    }
+
+    private void notifyListener(Message message, SimplificationMode simplificationMode, double simplificationTolerance) {
+        if (this.listener != null) {
+            this.listener.messageApplied(message, simplificationMode, simplificationTolerance);
+        }
+    }
+
+    /**
+     * @return the message to report or {@code null} if the message had no effect.
+     */
+    private Message applyToDocument(Message message,
+                                    SimplificationMode simplificationMode,
+                                    double simplificationTolerance) {
+        if (message instanceof InitSizeMessage initSize) {
+            this.document.setSize(initSize.width(), initSize.height());
+            if (this.document.drawing().isBlank() == false) {
+                this.document.insertNewDrawing();
+            }
+            return message;
+        }
+        if (message instanceof FigureBeginMessage figureBegin) {
+            this.document.drawing().beginFigure(figureBegin.point(), figureBegin.color(), figureBegin.strokeWidth(),
+                    simplificationMode, simplificationTolerance);
+            return message;
+        }
+        if (message instanceof FigurePointMessage figurePoint) {
+            this.document.drawing().addPoint(figurePoint.point());
+            return message;
+        }
+        if (message instanceof FigureEndMessage figureEnd) {
+            final Figure figure = this.document.drawing().endFigure(figureEnd.point(), simplificationTolerance);
+            if (figure == null) {
+                return null;
+            }
+            final Message figureEnded = new FigureEndMessage(figureEnd.point(), figure);
+            figureEnded.setReceivedNanos(figureEnd.receivedNanos());
+            return figureEnded;
+        }
+        if (message instanceof FigureRemoveMessage figureRemove) {
+            this.document.drawing().removeFigure(figureRemove.figureIndex());
+            return message;
+        }
+        if (message instanceof DrawingNavigationMessage navigation) {
+            return navigate(navigation);
+        }
+        if (message instanceof RedrawMessage) {
+            return message;
+        }
+        throw new IllegalArgumentException("unsupported message type " + message.getClass());
+    }
+
+    private Message navigate(DrawingNavigationMessage message) {
+        final int drawingIndex = this.document.snapshot().drawingIndex();
+        final Drawing drawing = switch (message.navigation()) {
+            case PREVIOUS -> this.document.selectPreviousDrawing();
+            case NEXT -> this.document.selectNextDrawing();
+            case INSERT -> this.document.insertNewDrawing();
+        };
+        message.result().complete(drawing);
+        final int newDrawingIndex = this.document.snapshot().drawingIndex();
+        final boolean inserted = message.navigation() == DrawingNavigationMessage.Navigation.INSERT;
+        return newDrawingIndex != drawingIndex || inserted
+                ? new DrawingSwitchMessage(newDrawingIndex, inserted)
+                : null;
+    }
+}
@@ -0,0 +1,26 @@
+package net.smackem.lightboard.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A monotonic count. Increments are striped across cells, so that counting on hot paths of several threads
+ * does not contend on a single memory location.
+ */
+public final class Counter {
+    private final LongAdder count = new LongAdder();
+
+    Counter() {
+    }
+
+    public void increment() {
+        this.count.increment();
+    }
+
+    public void add(long amount) {
+        this.count.add(amount);
+    }
+
+    public long count() {
+        return this.count.sum();
+    }
+}
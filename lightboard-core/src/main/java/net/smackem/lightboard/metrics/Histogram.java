@@ -0,0 +1,105 @@
+package net.smackem.lightboard.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The distribution of durations in nanoseconds since the histogram has been created.
+ * <p>
+ *     Like an HDR histogram, values are counted in buckets whose width grows with their magnitude:
+ *     each power of two is divided into {@value #SUB_BUCKET_COUNT} buckets, so that quantiles are reported
+ *     with a relative error of at most 12.5% at any scale. Recording a value takes a few atomic additions
+ *     and never allocates.
+ * </p>
+ */
+public final class Histogram {
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKET_COUNT = (Long.SIZE - SUB_BUCKET_BITS) * SUB_BUCKET_COUNT;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_COUNT);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+    Histogram() {
+    }
+
+    /**
+     * @param nanos the duration to record. Negative durations are recorded as 0.
+     */
+    public void record(long nanos) {
+        final long value = Math.max(nanos, 0);
+        this.buckets.incrementAndGet(bucketIndex(value));
+        this.count.increment();
+        this.sum.add(value);
+        this.max.accumulate(value);
+    }
+
+    /**
+     * Records the time elapsed since {@code startNanos}, which has been obtained from {@link System#nanoTime()}.
+     */
+    public void recordSince(long startNanos) {
+        record(System.nanoTime() - startNanos);
+    }
+
+    public long count() {
+        return this.count.sum();
+    }
+
+    /**
+     * @return the sum of all recorded durations in nanoseconds.
+     */
+    public long sum() {
+        return this.sum.sum();
+    }
+
+    public long max() {
+        return this.max.get();
+    }
+
+    /**
+     * @param quantile the quantile between 0 and 1, e.g. 0.99.
+     * @return an upper bound of the specified quantile of the recorded durations or 0 if nothing has been recorded.
+     */
+    public long quantile(double quantile) {
+        final long[] counts = new long[BUCKET_COUNT];
+        long total = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            counts[i] = this.buckets.get(i);
+            total += counts[i];
+        }
+        if (total == 0) {
+            return 0;
+        }
+        final long rank = Math.max(1, (long) Math.ceil(quantile * total));
+        long cumulative = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            cumulative += counts[i];
+            if (cumulative >= rank) {
+                return Math.min(bucketUpperBound(i), max());
+            }
+        }
+        return max();
+    }
+
+    static int bucketIndex(long value) {
+        if (value < SUB_BUCKET_COUNT) {
+            return (int) value;
+        }
+        final int exponent = 63 - Long.numberOfLeadingZeros(value);
+        final int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKET_COUNT - 1);
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKET_COUNT + subBucket;
+    }
+
+    static long bucketUpperBound(int index) {
+        if (index < SUB_BUCKET_COUNT) {
+            return index;
+        }
+        final int exponent = index / SUB_BUCKET_COUNT + SUB_BUCKET_BITS - 1;
+        final int subBucket = index % SUB_BUCKET_COUNT;
+        final long width = 1L << (exponent - SUB_BUCKET_BITS);
+        return (1L << exponent) + subBucket * width + width - 1;
+    }
+}
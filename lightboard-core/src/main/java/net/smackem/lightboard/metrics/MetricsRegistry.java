@@ -0,0 +1,150 @@
+package net.smackem.lightboard.metrics;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.DoubleSupplier;
+import java.util.function.LongSupplier;
+
+/**
+ * A set of named metrics, written in the Prometheus text exposition format by {@link #write(Writer)}.
+ * <p>
+ *     Counters and histograms are recorded by the code they measure, gauges and function counters are sampled
+ *     when the metrics are written. Histograms are exposed as summaries of their lifetime in seconds.
+ *     A metric is identified by its name and labels; asking for an existing metric returns it,
+ *     registering an existing gauge replaces it.
+ * </p>
+ */
+public final class MetricsRegistry {
+    private static final MetricsRegistry DEFAULT = new MetricsRegistry();
+    private static final double[] QUANTILES = { 0.5, 0.9, 0.99, 0.999 };
+
+    private final ConcurrentMap<String, Family> families = new ConcurrentSkipListMap<>();
+
+    private enum Type {
+        COUNTER,
+        GAUGE,
+        SUMMARY,
+    }
+
+    /**
+     * @return the registry served by {@code /metrics}.
+     */
+    public static MetricsRegistry defaultRegistry() {
+        return DEFAULT;
+    }
+
+    public Counter counter(String name, String help) {
+        return counter(name, help, Map.of());
+    }
+
+    public Counter counter(String name, String help, Map<String, String> labels) {
+        return (Counter) family(name, help, Type.COUNTER).children
+                .computeIfAbsent(formatLabels(labels), key -> new Counter());
+    }
+
+    public Histogram histogram(String name, String help) {
+        return histogram(name, help, Map.of());
+    }
+
+    public Histogram histogram(String name, String help, Map<String, String> labels) {
+        return (Histogram) family(name, help, Type.SUMMARY).children
+                .computeIfAbsent(formatLabels(labels), key -> new Histogram());
+    }
+
+    /**
+     * Registers a counter that is maintained elsewhere and read when the metrics are written.
+     */
+    public void counter(String name, String help, Map<String, String> labels, LongSupplier supplier) {
+        family(name, help, Type.COUNTER).children.put(formatLabels(labels), Objects.requireNonNull(supplier));
+    }
+
+    public void gauge(String name, String help, Map<String, String> labels, DoubleSupplier supplier) {
+        family(name, help, Type.GAUGE).children.put(formatLabels(labels), Objects.requireNonNull(supplier));
+    }
+
+    public void write(Writer writer) throws IOException {
+        for (final Map.Entry<String, Family> entry : this.families.entrySet()) {
+            final String name = entry.getKey();
+            final Family family = entry.getValue();
+            writer.write("# HELP " + name + " " + family.help + "\n");
+            writer.write("# TYPE " + name + " " + family.type.name().toLowerCase() + "\n");
+            for (final Map.Entry<String, Object> child : family.children.entrySet()) {
+                writeSamples(writer, name, child.getKey(), child.getValue());
+            }
+        }
+    }
+
+    private Family family(String name, String help, Type type) {
+        final Family family = this.families.computeIfAbsent(name, key -> new Family(help, type));
+        if (family.type != type) {
+            throw new IllegalArgumentException("metric " + name + " is a " + family.type.name().toLowerCase());
+        }
+        return family;
+    }
+
+    private static void writeSamples(Writer writer, String name, String labels, Object metric) throws IOException {
+        if (metric instanceof Counter counter) {
+            writeSample(writer, name, labels, counter.count());
+        } else if (metric instanceof LongSupplier supplier) {
+            writeSample(writer, name, labels, supplier.getAsLong());
+        } else if (metric instanceof DoubleSupplier supplier) {
+            writeSample(writer, name, labels, supplier.getAsDouble());
+        } else if (metric instanceof Histogram histogram) {
+            for (final double quantile : QUANTILES) {
+                final String quantileLabel = "quantile=\"" + quantile + "\"";
+                writeSample(writer, name, labels.isEmpty() ? quantileLabel : labels + "," + quantileLabel,
+                        histogram.quantile(quantile) / 1e9);
+            }
+            writeSample(writer, name + "_sum", labels, histogram.sum() / 1e9);
+            writeSample(writer, name + "_count", labels, histogram.count());
+        }
+    }
+
+    private static void writeSample(Writer writer, String name, String labels, double value) throws IOException {
+        writer.write(name);
+        if (labels.isEmpty() == false) {
+            writer.write("{" + labels + "}");
+        }
+        writer.write(" ");
+        writer.write(value == Math.rint(value) && Math.abs(value) < 1e15
+                ? Long.toString((long) value)
+                : Double.toString(value));
+        writer.write("\n");
+    }
+
+    private static String formatLabels(Map<String, String> labels) {
+        final StringBuilder sb = new StringBuilder();
+        for (final Map.Entry<String, String> label : new TreeMap<>(labels).entrySet()) {
+            if (sb.length() > 0) {
+                sb.append(',');
+            }
+            sb.append(label.getKey()).append("=\"");
+            for (final char c : label.getValue().toCharArray()) {
+                switch (c) {
+                    case '\\' -> sb.append("\\\\");
+                    case '"' -> sb.append("\\\"");
+                    case '\n' -> sb.append("\\n");
+                    default -> sb.append(c);
+                }
+            }
+            sb.append('"');
+        }
+        return sb.toString();
+    }
+
+    private static class Family {
+        final String help;
+        final Type type;
+        final ConcurrentMap<String, Object> children = new ConcurrentSkipListMap<>();
+
+        Family(String help, Type type) {
+            this.help = help;
+            this.type = type;
+        }
+    }
+}
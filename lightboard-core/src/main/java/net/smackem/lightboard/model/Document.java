@@ -2,81 +2,83 @@ package net.smackem.lightboard.model;
 
 import java.util.*;
 
+/**
+ * A mutable document. Like its drawings, a document has a single writer, the model thread of the board
+ * it belongs to, and publishes a new {@link DocumentSnapshot} after each mutation.
+ */
 public class Document {
-    private final Object monitor = new Object();
-    private final List<Drawing> drawings = new LinkedList<>();
-    private int width;
-    private int height;
-    private int drawingIndex;
+    private volatile DocumentSnapshot snapshot;
 
-    {
-        this.drawings.add(new Drawing());
+    public Document() {
+        this.snapshot = new DocumentSnapshot(0, 0, 0, List.of(new Drawing()));
     }
 
-    public int width() {
-        synchronized (this.monitor) {
-            return this.width;
+    public Document(int width, int height, List<Drawing> drawings, int drawingIndex) {
+        if (drawings.isEmpty()) {
+            throw new IllegalArgumentException("a document needs at least one drawing");
         }
+        Objects.checkIndex(drawingIndex, drawings.size());
+        this.snapshot = new DocumentSnapshot(width, height, drawingIndex, drawings);
+    }
+
+    /**
+     * @return the most recently published structure of this document.
+     */
+    public DocumentSnapshot snapshot() {
+        return this.snapshot;
+    }
+
+    public int width() {
+        return this.snapshot.width();
     }
 
     public int height() {
-        synchronized (this.monitor) {
-            return this.height;
-        }
+        return this.snapshot.height();
     }
 
-    public Collection<Drawing> drawings() {
-        return Collections.unmodifiableCollection(this.drawings);
+    public List<Drawing> drawings() {
+        return this.snapshot.drawings();
     }
 
     public void setSize(int width, int height) {
-        synchronized (this.monitor) {
-            this.width = width;
-            this.height = height;
-        }
+        this.snapshot = this.snapshot.withSize(width, height);
     }
 
     public Drawing drawing() {
-        synchronized (this.monitor) {
-            if (this.drawings.isEmpty()) {
-                throw new IllegalStateException("there is no drawing");
-            }
-            Objects.checkIndex(this.drawingIndex, this.drawings.size());
-            return this.drawings.get(this.drawingIndex);
-        }
+        return this.snapshot.drawing();
     }
 
     public Drawing selectPreviousDrawing() {
-        synchronized (this.monitor) {
-            if (this.drawings.isEmpty()) {
-                throw new IllegalStateException("there is no drawing");
-            }
-            if (this.drawingIndex > 0) {
-                this.drawingIndex--;
-            }
-            return this.drawings.get(this.drawingIndex);
-        }
+        final DocumentSnapshot snapshot = this.snapshot;
+        return selectDrawing(Math.max(snapshot.drawingIndex() - 1, 0));
     }
 
     public Drawing selectNextDrawing() {
-        synchronized (this.monitor) {
-            if (this.drawings.isEmpty()) {
-                throw new IllegalStateException("there is no drawing");
-            }
-            if (this.drawingIndex < this.drawings.size() - 1) {
-                this.drawingIndex++;
-            }
-            return this.drawings.get(this.drawingIndex);
+        final DocumentSnapshot snapshot = this.snapshot;
+        return selectDrawing(Math.min(snapshot.drawingIndex() + 1, snapshot.drawings().size() - 1));
+    }
+
+    /**
+     * Selects the drawing with the specified index and loads it, if it has been created lazily.
+     */
+    public Drawing selectDrawing(int drawingIndex) {
+        final DocumentSnapshot snapshot = this.snapshot;
+        Objects.checkIndex(drawingIndex, snapshot.drawings().size());
+        if (drawingIndex != snapshot.drawingIndex()) {
+            this.snapshot = snapshot.withDrawingIndex(drawingIndex);
         }
+        final Drawing drawing = this.snapshot.drawing();
+        drawing.load();
+        return drawing;
     }
 
     public Drawing insertNewDrawing() {
         final Drawing drawing = new Drawing();
-        synchronized (this.monitor) {
-            Objects.checkIndex(this.drawingIndex, this.drawings.size());
-            this.drawings.add(this.drawingIndex + 1, drawing);
-            this.drawingIndex++;
-        }
+        final DocumentSnapshot snapshot = this.snapshot;
+        Objects.checkIndex(snapshot.drawingIndex(), snapshot.drawings().size());
+        final List<Drawing> drawings = new ArrayList<>(snapshot.drawings());
+        drawings.add(snapshot.drawingIndex() + 1, drawing);
+        this.snapshot = snapshot.withDrawings(drawings, snapshot.drawingIndex() + 1);
         return drawing;
     }
 }
@@ -0,0 +1,59 @@
+package net.smackem.lightboard.model;
+
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * An immutable version of the structure of a {@link Document}: its size, its drawings and
+ * the index of the selected drawing. The drawings themselves are published separately,
+ * see {@link Drawing#snapshot()}.
+ */
+public final class DocumentSnapshot {
+    private final int width;
+    private final int height;
+    private final int drawingIndex;
+    private final List<Drawing> drawings;
+
+    DocumentSnapshot(int width, int height, int drawingIndex, List<Drawing> drawings) {
+        this.width = width;
+        this.height = height;
+        this.drawingIndex = drawingIndex;
+        this.drawings = List.copyOf(drawings);
+    }
+
+    public int width() {
+        return this.width;
+    }
+
+    public int height() {
+        return this.height;
+    }
+
+    public int drawingIndex() {
+        return this.drawingIndex;
+    }
+
+    public List<Drawing> drawings() {
+        return this.drawings;
+    }
+
+    public Drawing drawing() {
+        if (this.drawings.isEmpty()) {
+            throw new IllegalStateException("there is no drawing");
+        }
+        Objects.checkIndex(this.drawingIndex, this.drawings.size());
+        return this.drawings.get(this.drawingIndex);
+    }
+
+    DocumentSnapshot withSize(int width, int height) {
+        return new DocumentSnapshot(width, height, this.drawingIndex, this.drawings);
+    }
+
+    DocumentSnapshot withDrawingIndex(int drawingIndex) {
+        return new DocumentSnapshot(this.width, this.height, drawingIndex, this.drawings);
+    }
+
+    DocumentSnapshot withDrawings(List<Drawing> drawings, int drawingIndex) {
+        return new DocumentSnapshot(this.width, this.height, drawingIndex, drawings);
+    }
+}
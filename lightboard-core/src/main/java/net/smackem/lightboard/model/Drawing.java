@@ -2,82 +2,369 @@ package net.smackem.lightboard.model;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
+import net.smackem.lightboard.metrics.Histogram;
+import net.smackem.lightboard.metrics.MetricsRegistry;
 import org.locationtech.jts.geom.Coordinate;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.List;
 import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
 
+/**
+ * A mutable drawing. A drawing has a single writer, the model thread of the board it belongs to, which publishes
+ * a new {@link DrawingSnapshot} after each mutation. Readers never block. Only loading, evicting and clearing
+ * the figures, see {@link #lazy(Supplier)} and {@link #evict(long, Supplier)}, are guarded by a monitor, because
+ * readers may load a drawing, too.
+ * The most recent mutations are retained as {@link DrawingChange}s, so that clients can catch up
+ * with the drawing without downloading it entirely.
+ */
 public class Drawing {
+    private static final AtomicLong nextId = new AtomicLong();
+    private static final int CHANGE_LOG_CAPACITY = 8192;
+    private static final Histogram endFigureDuration = MetricsRegistry.defaultRegistry().histogram(
+            "lightboard_figure_end_seconds", "Time to end a figure, including its simplification");
     @JsonIgnore private final transient Object monitor = new Object();
-    @JsonIgnore private final List<Figure> figures = new ArrayList<>();
+    @JsonIgnore private final long id = nextId.incrementAndGet();
+    @JsonIgnore private final DrawingChange[] changeLog = new DrawingChange[CHANGE_LOG_CAPACITY];
+    @JsonIgnore private final FigureIndex figureIndex = new FigureIndex();
+    @JsonIgnore private boolean lastFigureIndexed = true;
+    @JsonIgnore private StreamingSimplifier strokeSimplifier;
+    @JsonIgnore private long sequence;
+    @JsonIgnore private Supplier<? extends Collection<? extends Figure>> loader;
+    @JsonIgnore private volatile DrawingSnapshot snapshot;
 
-    @JsonProperty
-    public Collection<Figure> figures() {
+    /**
+     * Is notified of each figure removed by {@link #eraseAt(Coordinate, double, RemovalListener)}.
+     */
+    @FunctionalInterface
+    public interface RemovalListener {
+        /**
+         * @param figureIndex the index of the removed figure in the drawing as it was before its removal.
+         * @param version the version of the drawing right after the removal, see {@link #changes(long, long)}.
+         */
+        void figureRemoved(int figureIndex, long version);
+    }
+
+    public Drawing() {
+        this.snapshot = DrawingSnapshot.EMPTY;
+    }
+
+    public Drawing(Collection<? extends Figure> figures) {
+        this.snapshot = new DrawingSnapshot(0, FigureList.of(figures), false);
+        this.figureIndex.appendAll(snapshot().figureList());
+    }
+
+    private Drawing(Supplier<? extends Collection<? extends Figure>> loader) {
+        this.loader = Objects.requireNonNull(loader);
+    }
+
+    /**
+     * Creates a drawing whose figures are obtained from {@code loader} when the drawing is accessed
+     * for the first time, e.g. when a {@link Document} selects it.
+     */
+    public static Drawing lazy(Supplier<? extends Collection<? extends Figure>> loader) {
+        return new Drawing(loader);
+    }
+
+    /**
+     * @return an identifier that is unique among all drawings of this process.
+     *      Together with {@link DrawingSnapshot#version()} it identifies the content of a drawing.
+     */
+    public long id() {
+        return this.id;
+    }
+
+    /**
+     * @return the most recently published version of this drawing.
+     */
+    public DrawingSnapshot snapshot() {
+        final DrawingSnapshot snapshot = this.snapshot;
+        return snapshot != null ? snapshot : load();
+    }
+
+    /**
+     * @return a supplier of the figures of the current version, which may be called later and on any thread,
+     *      even if the drawing has been modified in the meantime. Unlike {@link #snapshot()}, this does not load
+     *      a drawing that has not been loaded. Must be called by the writer of the drawing.
+     */
+    public Supplier<List<Figure>> figuresOfCurrentVersion() {
         synchronized (this.monitor) {
-            return List.copyOf(this.figures);
+            final DrawingSnapshot snapshot = this.snapshot;
+            if (snapshot != null) {
+                return snapshot::figures;
+            }
+            final Supplier<? extends Collection<? extends Figure>> loader = this.loader;
+            return () -> List.copyOf(loader.get());
         }
     }
 
+    /**
+     * @return {@code false} if this drawing has been created by {@link #lazy(Supplier)}
+     *      and its figures have not been loaded yet.
+     */
+    @JsonIgnore
+    public boolean isLoaded() {
+        return this.snapshot != null;
+    }
+
+    /**
+     * @return the current snapshot or {@code null} if the figures have not been loaded.
+     */
+    public DrawingSnapshot loadedSnapshot() {
+        return this.snapshot;
+    }
+
+    @JsonProperty
+    public List<Figure> figures() {
+        return snapshot().figures();
+    }
+
     @JsonIgnore
     public boolean isBlank() {
-        synchronized (this.monitor) {
-            return this.figures.isEmpty();
-        }
+        return snapshot().isBlank();
     }
 
     public void clear() {
         synchronized (this.monitor) {
-            this.figures.clear();
+            // a reader may be loading the figures that are discarded here
+            this.loader = null;
+            this.strokeSimplifier = null;
+            record(DrawingChange.cleared(nextSequence()));
+            this.figureIndex.clear();
+            this.lastFigureIndexed = true;
+            publish(FigureList.EMPTY);
         }
     }
 
     public void beginFigure(Coordinate point, Rgba color, double strokeWidth) {
-        synchronized (this.monitor) {
-            final Figure figure = currentFigure();
-            if (figure != null && figure.isEmpty()) {
-                this.figures.remove(this.figures.size() - 1);
-            }
-            final Figure newFigure = new Figure(color, strokeWidth);
-            newFigure.addPoint(point);
-            this.figures.add(newFigure);
+        beginFigure(point, color, strokeWidth, SimplificationMode.END_OF_STROKE, 0);
+    }
+
+    /**
+     * Begins a new figure. If {@code simplificationMode} is {@link SimplificationMode#STREAMING}, the points
+     * of the figure are simplified with the specified tolerance as they are added, otherwise the figure is
+     * simplified by {@link #endFigure(Coordinate, double)}.
+     */
+    public void beginFigure(Coordinate point,
+                            Rgba color,
+                            double strokeWidth,
+                            SimplificationMode simplificationMode,
+                            double simplificationTolerance) {
+        FigureList figures = snapshot().figureList();
+        final Figure figure = figures.last();
+        if (figure != null && figure.isEmpty()) {
+            record(DrawingChange.figureRemoved(nextSequence(), figures.size() - 1));
+            this.figureIndex.remove(figures.size() - 1);
+            figures = figures.without(figures.size() - 1);
+        } else if (figure != null && this.lastFigureIndexed == false) {
+            // the previous stroke has not been ended properly
+            this.figureIndex.setLast(figure, true);
         }
+        final Figure newFigure = new Figure(color, strokeWidth).withPoint(point.x, point.y);
+        figures = figures.append(newFigure);
+        this.figureIndex.append(newFigure, false);
+        record(DrawingChange.figureAdded(nextSequence(), figures.size() - 1, newFigure));
+        this.lastFigureIndexed = false;
+        this.strokeSimplifier = simplificationMode == SimplificationMode.STREAMING
+                ? new StreamingSimplifier(simplificationTolerance, point.x, point.y)
+                : null;
+        publish(figures);
     }
 
     public void addPoint(Coordinate point) {
-        synchronized (this.monitor) {
-            final Figure figure = currentFigure();
-            if (figure == null) {
-                return;
+        final FigureList figures = snapshot().figureList();
+        final Figure figure = figures.last();
+        if (figure == null) {
+            return;
+        }
+        if (this.strokeSimplifier != null) {
+            final Figure newFigure = this.strokeSimplifier.add(figure, point.x, point.y);
+            if (newFigure != figure) {
+                final PointSequence points = newFigure.points();
+                final int last = points.size() - 1;
+                record(DrawingChange.pointAppended(nextSequence(), figures.size() - 1, points.x(last), points.y(last)));
+                publish(figures.withLast(newFigure));
             }
-            figure.addPoint(point);
+            return;
+        }
+        record(DrawingChange.pointAppended(nextSequence(), figures.size() - 1, point.x, point.y));
+        if (this.lastFigureIndexed) {
+            this.figureIndex.setLast(figure, false);
+            this.lastFigureIndexed = false;
         }
+        publish(figures.withLast(figure.withPoint(point.x, point.y)));
     }
 
-    public void endFigure(Coordinate point, double simplificationTolerance) {
-        synchronized (this.monitor) {
-            final Figure figure = currentFigure();
-            if (figure == null) {
-                return;
-            }
-            figure.addPoint(point);
-            figure.simplify(simplificationTolerance);
+    /**
+     * Ends the current figure. {@code simplificationTolerance} is ignored if the figure has been simplified
+     * while it was drawn, see {@link SimplificationMode#STREAMING}.
+     *
+     * @return the figure as it has been ended, i.e. simplified, or {@code null} if there is no figure to end.
+     */
+    public Figure endFigure(Coordinate point, double simplificationTolerance) {
+        final long startNanos = System.nanoTime();
+        final Figure figure = snapshot().figureList().last();
+        if (figure == null) {
+            return null;
+        }
+        final Figure newFigure = this.strokeSimplifier != null
+                ? this.strokeSimplifier.finish(figure, point.x, point.y)
+                : figure.withPoint(point.x, point.y).simplify(simplificationTolerance);
+        replaceLastFigure(newFigure);
+        endFigureDuration.recordSince(startNanos);
+        return newFigure;
+    }
+
+    /**
+     * Ends the current figure by replacing it with {@code figure}, e.g. with the outcome of
+     * {@link #endFigure(Coordinate, double)} recorded earlier.
+     *
+     * @return {@code false} if there is no figure to end.
+     */
+    public boolean endFigure(Figure figure) {
+        Objects.requireNonNull(figure);
+        if (snapshot().figureList().last() == null) {
+            return false;
         }
+        replaceLastFigure(figure);
+        return true;
+    }
+
+    private void replaceLastFigure(Figure newFigure) {
+        final FigureList figures = snapshot().figureList();
+        final Figure figure = figures.last();
+        this.strokeSimplifier = null;
+        record(DrawingChange.figureReplaced(nextSequence(), figures.size() - 1, newFigure));
+        this.figureIndex.setLast(newFigure, true);
+        this.lastFigureIndexed = true;
+        publish(figures.withLast(newFigure));
     }
 
     public Figure currentFigure() {
+        return snapshot().currentFigure();
+    }
+
+    public Figure removeFigure(int figureIndex) {
+        final FigureList figures = snapshot().figureList();
+        Objects.checkIndex(figureIndex, figures.size());
+        final Figure figure = figures.get(figureIndex);
+        record(DrawingChange.figureRemoved(nextSequence(), figureIndex));
+        this.figureIndex.remove(figureIndex);
+        if (figureIndex == figures.size() - 1) {
+            this.lastFigureIndexed = true;
+            this.strokeSimplifier = null;
+        }
+        publish(figures.without(figureIndex));
+        return figure;
+    }
+
+    /**
+     * Removes all finished figures that are hit by a circle with the specified center and radius.
+     * The figures and their positions are looked up in the {@link FigureIndex}, and all of them are removed
+     * by a single copy of the remaining figures, so the cost is dominated by the number of figures near the center.
+     * <p>
+     *     The figures are removed from last to first, so that the index of each removed figure is not affected
+     *     by the removals before it. Each removal is recorded as a change of its own.
+     * </p>
+     *
+     * @param removalListener is called for each removed figure, in order of removal,
+     *      after the drawing without the removed figures has been published.
+     * @return the removed figures, in order of removal.
+     */
+    public List<Figure> eraseAt(Coordinate center, double radius, RemovalListener removalListener) {
+        final FigureList figures = load().figureList();
+        final int[] hits = this.figureIndex.query(center.x, center.y, radius);
+        if (hits.length == 0) {
+            return List.of();
+        }
+        final Figure[] removed = new Figure[hits.length];
+        final long[] versions = new long[hits.length];
+        for (int i = 0; i < hits.length; i++) {
+            final int index = hits[hits.length - 1 - i];
+            removed[i] = figures.get(index);
+            versions[i] = nextSequence();
+            record(DrawingChange.figureRemoved(versions[i], index));
+            this.figureIndex.remove(index);
+        }
+        publish(figures.withoutAll(hits));
+        for (int i = 0; i < hits.length; i++) {
+            removalListener.figureRemoved(hits[hits.length - 1 - i], versions[i]);
+        }
+        return List.of(removed);
+    }
+
+    /**
+     * @return the changes that lead from version {@code fromVersion} to version {@code toVersion}
+     *      of this drawing, or {@code null} if these changes are no longer retained.
+     *      Pass the version of a snapshot obtained by {@link #snapshot()} as {@code toVersion}.
+     */
+    public List<DrawingChange> changes(long fromVersion, long toVersion) {
+        if (fromVersion < 0 || fromVersion > toVersion || toVersion - fromVersion > CHANGE_LOG_CAPACITY) {
+            return null;
+        }
+        final List<DrawingChange> changes = new ArrayList<>((int) (toVersion - fromVersion));
+        for (long sequence = fromVersion + 1; sequence <= toVersion; sequence++) {
+            final DrawingChange change = this.changeLog[(int) (sequence % CHANGE_LOG_CAPACITY)];
+            // the slot may have been overwritten by a writer in the meantime
+            if (change == null || change.sequence() != sequence) {
+                return null;
+            }
+            changes.add(change);
+        }
+        return changes;
+    }
+
+    /**
+     * Loads the figures of a lazily created drawing, unless they have been loaded before.
+     */
+    DrawingSnapshot load() {
         synchronized (this.monitor) {
-            return this.figures.size() > 0
-                    ? this.figures.get(this.figures.size() - 1)
-                    : null;
+            if (this.snapshot == null) {
+                final FigureList figures = FigureList.of(this.loader.get());
+                this.figureIndex.appendAll(figures);
+                this.loader = null;
+                this.snapshot = new DrawingSnapshot(this.sequence, figures, false);
+            }
+            return this.snapshot;
         }
     }
 
-    public Figure removeFigure(int figureIndex) {
+    /**
+     * Drops the figures of this drawing from the heap, so that they are obtained from {@code loader} when
+     * the drawing is accessed again. The version of the drawing is retained, but its change log is not.
+     * Must be called by the writer of the drawing.
+     *
+     * @param version the version the figures provided by {@code loader} correspond to.
+     * @return {@code false} if the drawing has not been evicted because it has been modified since
+     *      {@code version}, a figure is being drawn or it has not been loaded.
+     */
+    public boolean evict(long version, Supplier<? extends Collection<? extends Figure>> loader) {
+        Objects.requireNonNull(loader);
         synchronized (this.monitor) {
-            Objects.checkIndex(figureIndex, this.figures.size());
-            return this.figures.remove(figureIndex);
+            if (this.snapshot == null || this.snapshot.version() != version || this.lastFigureIndexed == false) {
+                return false;
+            }
+            this.snapshot = null;
+            this.loader = loader;
+            this.figureIndex.clear();
+            Arrays.fill(this.changeLog, null);
+            return true;
         }
     }
+
+    private long nextSequence() {
+        return ++this.sequence;
+    }
+
+    private void record(DrawingChange change) {
+        this.changeLog[(int) (change.sequence() % CHANGE_LOG_CAPACITY)] = change;
+    }
+
+    private void publish(FigureList figures) {
+        this.snapshot = new DrawingSnapshot(this.sequence, figures, this.lastFigureIndexed == false && figures.isEmpty() == false);
+    }
 }
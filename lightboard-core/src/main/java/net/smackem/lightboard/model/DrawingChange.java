@@ -0,0 +1,85 @@
+package net.smackem.lightboard.model;
+
+/**
+ * An entry of the change log of a {@link Drawing}. Applying all changes with sequence numbers
+ * in {@code (a, b]} in order to version {@code a} of a drawing yields version {@code b}.
+ */
+public final class DrawingChange {
+    public enum Kind {
+        FIGURE_ADDED,
+        FIGURE_REMOVED,
+        FIGURE_REPLACED,
+        POINT_APPENDED,
+        CLEARED,
+    }
+
+    private final long sequence;
+    private final Kind kind;
+    private final int figureIndex;
+    private final Figure figure;
+    private final float x;
+    private final float y;
+
+    private DrawingChange(long sequence, Kind kind, int figureIndex, Figure figure, float x, float y) {
+        this.sequence = sequence;
+        this.kind = kind;
+        this.figureIndex = figureIndex;
+        this.figure = figure;
+        this.x = x;
+        this.y = y;
+    }
+
+    static DrawingChange figureAdded(long sequence, int figureIndex, Figure figure) {
+        return new DrawingChange(sequence, Kind.FIGURE_ADDED, figureIndex, figure, 0, 0);
+    }
+
+    static DrawingChange figureRemoved(long sequence, int figureIndex) {
+        return new DrawingChange(sequence, Kind.FIGURE_REMOVED, figureIndex, null, 0, 0);
+    }
+
+    static DrawingChange figureReplaced(long sequence, int figureIndex, Figure figure) {
+        return new DrawingChange(sequence, Kind.FIGURE_REPLACED, figureIndex, figure, 0, 0);
+    }
+
+    static DrawingChange pointAppended(long sequence, int figureIndex, double x, double y) {
+        return new DrawingChange(sequence, Kind.POINT_APPENDED, figureIndex, null, (float) x, (float) y);
+    }
+
+    static DrawingChange cleared(long sequence) {
+        return new DrawingChange(sequence, Kind.CLEARED, -1, null, 0, 0);
+    }
+
+    /**
+     * @return the version of the drawing produced by this change.
+     */
+    public long sequence() {
+        return this.sequence;
+    }
+
+    public Kind kind() {
+        return this.kind;
+    }
+
+    /**
+     * @return the index of the affected figure or {@code -1} for {@link Kind#CLEARED}.
+     */
+    public int figureIndex() {
+        return this.figureIndex;
+    }
+
+    /**
+     * @return the added or replacing figure for {@link Kind#FIGURE_ADDED} and {@link Kind#FIGURE_REPLACED},
+     *      otherwise {@code null}.
+     */
+    public Figure figure() {
+        return this.figure;
+    }
+
+    public double x() {
+        return this.x;
+    }
+
+    public double y() {
+        return this.y;
+    }
+}
@@ -0,0 +1,65 @@
+package net.smackem.lightboard.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.util.List;
+
+/**
+ * An immutable version of a {@link Drawing}. Each mutation of a drawing publishes a new snapshot
+ * with a higher {@link #version()}, sharing all unchanged figures with its predecessor.
+ */
+public final class DrawingSnapshot {
+    static final DrawingSnapshot EMPTY = new DrawingSnapshot(0, FigureList.EMPTY, false);
+
+    @JsonIgnore private final long version;
+    @JsonIgnore private final FigureList figures;
+    @JsonIgnore private final boolean figureInProgress;
+
+    DrawingSnapshot(long version, FigureList figures, boolean figureInProgress) {
+        this.version = version;
+        this.figures = figures;
+        this.figureInProgress = figureInProgress;
+    }
+
+    public long version() {
+        return this.version;
+    }
+
+    @JsonProperty
+    public List<Figure> figures() {
+        return this.figures;
+    }
+
+    @JsonIgnore
+    public boolean isBlank() {
+        return this.figures.isEmpty();
+    }
+
+    /**
+     * @return the total number of points of all figures of this version.
+     */
+    public int pointCount() {
+        int count = 0;
+        for (final Figure figure : this.figures) {
+            count += figure.points().size();
+        }
+        return count;
+    }
+
+    /**
+     * @return {@code true} if the last figure is still being drawn.
+     */
+    @JsonIgnore
+    public boolean isFigureInProgress() {
+        return this.figureInProgress;
+    }
+
+    public Figure currentFigure() {
+        return this.figures.last();
+    }
+
+    FigureList figureList() {
+        return this.figures;
+    }
+}
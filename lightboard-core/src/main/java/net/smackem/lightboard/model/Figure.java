@@ -2,34 +2,47 @@ package net.smackem.lightboard.model;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
-import org.locationtech.jts.geom.Coordinate;
+import net.smackem.lightboard.metrics.Histogram;
+import net.smackem.lightboard.metrics.MetricsRegistry;
+import org.locationtech.jts.geom.CoordinateSequence;
+import org.locationtech.jts.geom.Envelope;
 import org.locationtech.jts.geom.Geometry;
 import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.LineString;
+import org.locationtech.jts.geom.impl.PackedCoordinateSequence;
+import org.locationtech.jts.geom.impl.PackedCoordinateSequenceFactory;
 import org.locationtech.jts.simplify.TopologyPreservingSimplifier;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.ArrayList;
-import java.util.Collection;
-import java.util.List;
+import java.util.Objects;
 
-public class Figure {
+/**
+ * An immutable figure. Mutations of a {@link Drawing} replace figures instead of modifying them.
+ */
+public final class Figure {
     private static final Logger log = LoggerFactory.getLogger(Figure.class);
-    @JsonIgnore private final transient Object monitor = new Object();
-    @JsonIgnore private final List<Coordinate> points = new ArrayList<>();
+    private static final GeometryFactory geometryFactory = new GeometryFactory(PackedCoordinateSequenceFactory.FLOAT_FACTORY);
+    private static final Histogram simplifyDuration = MetricsRegistry.defaultRegistry().histogram(
+            "lightboard_figure_simplify_seconds", "Time to simplify a figure at the end of its stroke");
+    @JsonProperty private final PointSequence points;
     @JsonProperty private final Rgba color;
     @JsonProperty private final double strokeWidth;
+    // computed on demand by the writer of the drawing, which is the only caller of envelope()
+    @JsonIgnore private Envelope envelope;
 
     public Figure(Rgba color, double strokeWidth) {
+        this(color, strokeWidth, PointSequence.EMPTY);
+    }
+
+    public Figure(Rgba color, double strokeWidth, PointSequence points) {
         this.color = color;
         this.strokeWidth = strokeWidth;
+        this.points = Objects.requireNonNull(points);
     }
 
-    @JsonProperty
-    public Collection<Coordinate> points() {
-        synchronized (this.monitor) {
-            return List.copyOf(this.points);
-        }
+    public PointSequence points() {
+        return this.points;
     }
 
     public Rgba color() {
@@ -42,31 +55,73 @@ public class Figure {
 
     @JsonIgnore
     public boolean isEmpty() {
-        synchronized (this.monitor) {
-            return this.points.isEmpty();
-        }
+        return this.points.isEmpty();
+    }
+
+    Figure withPoint(double x, double y) {
+        return new Figure(this.color, this.strokeWidth, this.points.append(x, y));
     }
 
-    void addPoint(Coordinate point) {
-        synchronized (this.monitor) {
-            this.points.add(point);
+    /**
+     * @return the bounds of the stroke, i.e. of the points widened by half the stroke width.
+     *      Computed once per figure, must not be modified.
+     */
+    Envelope envelope() {
+        Envelope envelope = this.envelope;
+        if (envelope == null) {
+            envelope = new Envelope();
+            for (int i = 0; i < this.points.size(); i++) {
+                envelope.expandToInclude(this.points.x(i), this.points.y(i));
+            }
+            envelope.expandBy(this.strokeWidth / 2);
+            this.envelope = envelope;
         }
+        return envelope;
     }
 
-    void simplify(double tolerance) {
-        final int oldSize, newSize;
-        synchronized (this.monitor) {
-            final Geometry simplified = TopologyPreservingSimplifier.simplify(buildGeometry(), tolerance);
-            oldSize = this.points.size();
-            this.points.clear();
-            this.points.addAll(List.of(simplified.getCoordinates()));
-            newSize = this.points.size();
+    /**
+     * @return the distance between the specified point and the center line of the stroke.
+     */
+    double distance(double x, double y) {
+        final int size = this.points.size();
+        if (size == 0) {
+            return Double.POSITIVE_INFINITY;
+        }
+        double minDistanceSq = distanceSq(x, y, this.points.x(0), this.points.y(0));
+        for (int i = 1; i < size; i++) {
+            final double x0 = this.points.x(i - 1), y0 = this.points.y(i - 1);
+            final double dx = this.points.x(i) - x0, dy = this.points.y(i) - y0;
+            final double lengthSq = dx * dx + dy * dy;
+            final double t = lengthSq > 0
+                    ? Math.max(0, Math.min(1, ((x - x0) * dx + (y - y0) * dy) / lengthSq))
+                    : 0;
+            minDistanceSq = Math.min(minDistanceSq, distanceSq(x, y, x0 + t * dx, y0 + t * dy));
         }
-        log.info("figure simplified: {} -> {} points", oldSize, newSize);
+        return Math.sqrt(minDistanceSq);
     }
 
-    private Geometry buildGeometry() {
-        final GeometryFactory gf = new GeometryFactory();
-        return gf.createLineString(this.points.toArray(new Coordinate[0]));
+    private static double distanceSq(double x0, double y0, double x1, double y1) {
+        final double dx = x1 - x0, dy = y1 - y0;
+        return dx * dx + dy * dy;
+    }
+
+    /**
+     * @return a copy of this figure with as few points as possible, deviating at most {@code tolerance}
+     *      from the original points.
+     */
+    public Figure simplify(double tolerance) {
+        final long startNanos = System.nanoTime();
+        final Geometry geometry = geometryFactory.createLineString(
+                new PackedCoordinateSequence.Float(this.points.toArray(), 2, 0));
+        final Geometry simplified = TopologyPreservingSimplifier.simplify(geometry, tolerance);
+        final CoordinateSequence sequence = ((LineString) simplified).getCoordinateSequence();
+        final float[] coords = new float[sequence.size() * 2];
+        for (int i = 0; i < sequence.size(); i++) {
+            coords[i * 2] = (float) sequence.getX(i);
+            coords[i * 2 + 1] = (float) sequence.getY(i);
+        }
+        simplifyDuration.recordSince(startNanos);
+        log.info("figure simplified: {} -> {} points", this.points.size(), sequence.size());
+        return new Figure(this.color, this.strokeWidth, PointSequence.of(coords, sequence.size()));
     }
 }
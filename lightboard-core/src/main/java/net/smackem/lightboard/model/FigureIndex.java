@@ -0,0 +1,200 @@
+package net.smackem.lightboard.model;
+
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.index.quadtree.Quadtree;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Objects;
+
+/**
+ * Mirrors the figures of a {@link Drawing} in order and indexes the envelopes of its finished figures spatially.
+ * <p>
+ *     Each figure is assigned an ordinal when it is appended. Ordinals are never reused until they are compacted,
+ *     so the position of a figure in its drawing is the number of figures with a lower ordinal that have not been
+ *     removed, which a Fenwick tree over the ordinals yields in O(log n). The figures hit by an erasure are thus
+ *     located without scanning the drawing.
+ * </p>
+ * Not thread-safe: owned by the writer of a {@link Drawing}.
+ */
+final class FigureIndex {
+    private static final int INITIAL_CAPACITY = 16;
+
+    private Quadtree tree = new Quadtree();
+    // the entries by ordinal, null if removed
+    private Entry[] entries = new Entry[INITIAL_CAPACITY];
+    // a Fenwick tree over the ordinals, 1-based, that counts the entries that have not been removed
+    private int[] counts = new int[INITIAL_CAPACITY + 1];
+    private int ordinalCount;
+    private int size;
+
+    /**
+     * @return the number of figures, which equals the size of the mirrored drawing.
+     */
+    int size() {
+        return this.size;
+    }
+
+    /**
+     * Appends finished figures.
+     */
+    void appendAll(Collection<? extends Figure> figures) {
+        for (final Figure figure : figures) {
+            append(figure, true);
+        }
+    }
+
+    /**
+     * Appends a figure, which is hit by {@link #query(double, double, double)} if {@code finished}.
+     */
+    void append(Figure figure, boolean finished) {
+        if (this.ordinalCount == this.entries.length) {
+            compact();
+        }
+        final Entry entry = new Entry(Objects.requireNonNull(figure), this.ordinalCount++);
+        this.entries[entry.ordinal] = entry;
+        for (int i = entry.ordinal + 1; i < this.counts.length; i += i & -i) {
+            this.counts[i]++;
+        }
+        this.size++;
+        if (finished) {
+            insert(entry);
+        }
+    }
+
+    /**
+     * Replaces the last figure, which is hit by {@link #query(double, double, double)} if {@code finished}.
+     */
+    void setLast(Figure figure, boolean finished) {
+        final Entry entry = this.entries[ordinalAt(this.size - 1)];
+        removeFromTree(entry);
+        entry.figure = Objects.requireNonNull(figure);
+        if (finished) {
+            insert(entry);
+        }
+    }
+
+    void remove(int position) {
+        Objects.checkIndex(position, this.size);
+        final int ordinal = ordinalAt(position);
+        removeFromTree(this.entries[ordinal]);
+        this.entries[ordinal] = null;
+        for (int i = ordinal + 1; i < this.counts.length; i += i & -i) {
+            this.counts[i]--;
+        }
+        this.size--;
+    }
+
+    void clear() {
+        this.tree = new Quadtree();
+        this.entries = new Entry[INITIAL_CAPACITY];
+        this.counts = new int[INITIAL_CAPACITY + 1];
+        this.ordinalCount = 0;
+        this.size = 0;
+    }
+
+    /**
+     * @return the positions of the finished figures whose stroke is hit by a circle with the specified center
+     *      and radius, in ascending order.
+     */
+    int[] query(double x, double y, double radius) {
+        final Envelope searchEnvelope = new Envelope(x - radius, x + radius, y - radius, y + radius);
+        int[] positions = new int[8];
+        int count = 0;
+        for (final Object candidate : this.tree.query(searchEnvelope)) {
+            final Figure figure = ((Entry) candidate).figure;
+            // the quadtree returns all items of the visited nodes, so check the envelope first
+            if (figure.envelope().intersects(searchEnvelope)
+                    && figure.distance(x, y) <= radius + figure.strokeWidth() / 2) {
+                if (count == positions.length) {
+                    positions = Arrays.copyOf(positions, count * 2);
+                }
+                positions[count++] = positionOf(((Entry) candidate).ordinal);
+            }
+        }
+        positions = Arrays.copyOf(positions, count);
+        Arrays.sort(positions);
+        return positions;
+    }
+
+    private void insert(Entry entry) {
+        if (entry.figure.isEmpty() == false) {
+            this.tree.insert(entry.figure.envelope(), entry);
+            entry.inTree = true;
+        }
+    }
+
+    private void removeFromTree(Entry entry) {
+        if (entry.inTree) {
+            this.tree.remove(entry.figure.envelope(), entry);
+            entry.inTree = false;
+        }
+    }
+
+    /**
+     * @return the number of entries with an ordinal lower than {@code ordinal}.
+     */
+    private int positionOf(int ordinal) {
+        int position = 0;
+        for (int i = ordinal; i > 0; i -= i & -i) {
+            position += this.counts[i];
+        }
+        return position;
+    }
+
+    /**
+     * @return the ordinal of the entry at {@code position}, found by descending the Fenwick tree
+     *      to the highest ordinal with {@code position} entries below it.
+     */
+    private int ordinalAt(int position) {
+        int ordinal = 0;
+        int remaining = position;
+        for (int step = Integer.highestOneBit(this.counts.length - 1); step > 0; step >>= 1) {
+            final int next = ordinal + step;
+            if (next < this.counts.length && this.counts[next] <= remaining) {
+                ordinal = next;
+                remaining -= this.counts[next];
+            }
+        }
+        return ordinal;
+    }
+
+    /**
+     * Renumbers the remaining entries and makes room for as many new entries, so that appending
+     * costs amortized O(log n) however many figures have been removed.
+     */
+    private void compact() {
+        final Entry[] entries = new Entry[Math.max(this.size * 2, INITIAL_CAPACITY)];
+        int ordinal = 0;
+        for (int i = 0; i < this.ordinalCount; i++) {
+            final Entry entry = this.entries[i];
+            if (entry != null) {
+                entry.ordinal = ordinal;
+                entries[ordinal++] = entry;
+            }
+        }
+        this.entries = entries;
+        this.ordinalCount = ordinal;
+        this.counts = new int[entries.length + 1];
+        for (int i = 1; i < this.counts.length; i++) {
+            if (i <= ordinal) {
+                this.counts[i]++;
+            }
+            final int parent = i + (i & -i);
+            if (parent < this.counts.length) {
+                this.counts[parent] += this.counts[i];
+            }
+        }
+    }
+
+    private static final class Entry {
+        Figure figure;
+        int ordinal;
+        boolean inTree;
+
+        Entry(Figure figure, int ordinal) {
+            this.figure = figure;
+            this.ordinal = ordinal;
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package net.smackem.lightboard.model;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Objects;
+import java.util.RandomAccess;
+
+/**
+ * An immutable list of figures that shares structure between versions: the last figure
+ * (the one that receives points while a stroke is in progress) is kept apart from the others,
+ * so replacing it is O(1) and does not copy the preceding figures.
+ * <p>
+ *     The preceding figures are held in a backing array that is shared like the one of {@link PointSequence}:
+ *     appending writes behind the head of the original list whenever the original is the longest list over
+ *     that array, so appending costs amortized O(1). Elements below the head length of a list are never
+ *     overwritten.
+ * </p>
+ */
+final class FigureList extends AbstractList<Figure> implements RandomAccess {
+    private static final int INITIAL_CAPACITY = 16;
+    static final FigureList EMPTY = new FigureList(new Buffer(new Figure[0]), 0, null);
+
+    private final Buffer head;
+    private final int headLength;
+    private final Figure last;
+
+    private FigureList(Buffer head, int headLength, Figure last) {
+        this.head = head;
+        this.headLength = headLength;
+        this.last = last;
+    }
+
+    static FigureList of(Collection<? extends Figure> figures) {
+        if (figures.isEmpty()) {
+            return EMPTY;
+        }
+        final Figure[] array = figures.toArray(new Figure[0]);
+        for (final Figure figure : array) {
+            Objects.requireNonNull(figure);
+        }
+        final Buffer head = new Buffer(array);
+        head.tip = array.length - 1;
+        return new FigureList(head, array.length - 1, array[array.length - 1]);
+    }
+
+    @Override
+    public Figure get(int index) {
+        Objects.checkIndex(index, size());
+        return index < this.headLength ? this.head.figures[index] : this.last;
+    }
+
+    @Override
+    public int size() {
+        return this.last != null ? this.headLength + 1 : 0;
+    }
+
+    Figure last() {
+        return this.last;
+    }
+
+    FigureList withLast(Figure figure) {
+        return new FigureList(this.head, this.headLength, Objects.requireNonNull(figure));
+    }
+
+    /**
+     * Must only be called by the single writer of the owning {@link Drawing}.
+     */
+    FigureList append(Figure figure) {
+        Objects.requireNonNull(figure);
+        if (this.last == null) {
+            return new FigureList(this.head, this.headLength, figure);
+        }
+        Buffer head = this.head;
+        if (head.tip != this.headLength || this.headLength == head.figures.length) {
+            // another list already appended to this buffer or it is full: branch off
+            head = new Buffer(Arrays.copyOf(head.figures, Math.max(this.headLength * 2, INITIAL_CAPACITY)));
+        }
+        head.figures[this.headLength] = this.last;
+        head.tip = this.headLength + 1;
+        return new FigureList(head, this.headLength + 1, figure);
+    }
+
+    FigureList without(int index) {
+        Objects.checkIndex(index, size());
+        if (this.headLength == 0) {
+            return EMPTY;
+        }
+        if (index == this.headLength) {
+            return new FigureList(this.head, this.headLength - 1, this.head.figures[this.headLength - 1]);
+        }
+        final Figure[] figures = new Figure[Math.max(this.headLength, INITIAL_CAPACITY)];
+        System.arraycopy(this.head.figures, 0, figures, 0, index);
+        System.arraycopy(this.head.figures, index + 1, figures, index, this.headLength - index - 1);
+        final Buffer head = new Buffer(figures);
+        head.tip = this.headLength - 1;
+        return new FigureList(head, this.headLength - 1, this.last);
+    }
+
+    /**
+     * @param indices the distinct indices of the figures to remove, in ascending order.
+     * @return a list without the specified figures, which copies the remaining figures at most once.
+     */
+    FigureList withoutAll(int[] indices) {
+        if (indices.length == 0) {
+            return this;
+        }
+        if (indices.length == 1) {
+            return without(indices[0]);
+        }
+        final int size = size();
+        Objects.checkIndex(indices[indices.length - 1], size);
+        final int remaining = size - indices.length;
+        if (remaining == 0) {
+            return EMPTY;
+        }
+        final Figure[] figures = new Figure[Math.max(remaining - 1, INITIAL_CAPACITY)];
+        Figure last = null;
+        int count = 0;
+        for (int i = 0, next = 0; i < size; i++) {
+            if (next < indices.length && indices[next] == i) {
+                next++;
+                continue;
+            }
+            if (last != null) {
+                figures[count++] = last;
+            }
+            last = get(i);
+        }
+        final Buffer head = new Buffer(figures);
+        head.tip = count;
+        return new FigureList(head, count, last);
+    }
+
+    private static final class Buffer {
+        final Figure[] figures;
+        int tip;
+
+        Buffer(Figure[] figures) {
+            this.figures = figures;
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package net.smackem.lightboard.model;
+
+import org.locationtech.jts.geom.Coordinate;
+
+import java.util.Objects;
+
+/**
+ * An immutable sequence of points, stored as interleaved x/y floats in a single array.
+ * <p>
+ *     Appending shares the backing array with the original sequence whenever the original is the
+ *     longest sequence over that array, so a growing stroke costs amortized O(1) per point and older
+ *     versions of the stroke stay valid without copying. Elements below the size of a sequence are
+ *     never overwritten.
+ * </p>
+ */
+public final class PointSequence {
+    private static final int INITIAL_CAPACITY = 16;
+    static final PointSequence EMPTY = new PointSequence(new Buffer(new float[0]), 0);
+
+    private final Buffer buffer;
+    private final int size;
+
+    private PointSequence(Buffer buffer, int size) {
+        this.buffer = buffer;
+        this.size = size;
+    }
+
+    /**
+     * Creates a sequence over the specified interleaved x/y coordinates.
+     * The array is not copied and must not be modified afterwards.
+     */
+    public static PointSequence of(float[] coords, int size) {
+        Objects.checkFromIndexSize(0, size * 2, coords.length);
+        final Buffer buffer = new Buffer(coords);
+        buffer.tip = size;
+        return new PointSequence(buffer, size);
+    }
+
+    public int size() {
+        return this.size;
+    }
+
+    public boolean isEmpty() {
+        return this.size == 0;
+    }
+
+    public double x(int index) {
+        Objects.checkIndex(index, this.size);
+        return this.buffer.coords[index * 2];
+    }
+
+    public double y(int index) {
+        Objects.checkIndex(index, this.size);
+        return this.buffer.coords[index * 2 + 1];
+    }
+
+    public Coordinate[] toCoordinates() {
+        final float[] coords = this.buffer.coords;
+        final Coordinate[] coordinates = new Coordinate[this.size];
+        for (int i = 0; i < this.size; i++) {
+            coordinates[i] = new Coordinate(coords[i * 2], coords[i * 2 + 1]);
+        }
+        return coordinates;
+    }
+
+    /**
+     * @return a copy of the coordinates of this sequence, sized to fit exactly.
+     */
+    float[] toArray() {
+        final float[] coords = new float[this.size * 2];
+        System.arraycopy(this.buffer.coords, 0, coords, 0, coords.length);
+        return coords;
+    }
+
+    /**
+     * Must only be called by the single writer of the owning {@link Drawing}.
+     */
+    PointSequence append(double x, double y) {
+        final int offset = this.size * 2;
+        Buffer buffer = this.buffer;
+        if (buffer.tip != this.size || offset == buffer.coords.length) {
+            // another sequence already appended to this buffer or it is full: branch off
+            final float[] coords = new float[Math.max(offset * 2, INITIAL_CAPACITY * 2)];
+            System.arraycopy(buffer.coords, 0, coords, 0, offset);
+            buffer = new Buffer(coords);
+        }
+        buffer.coords[offset] = (float) x;
+        buffer.coords[offset + 1] = (float) y;
+        buffer.tip = this.size + 1;
+        return new PointSequence(buffer, this.size + 1);
+    }
+
+    private static final class Buffer {
+        final float[] coords;
+        int tip;
+
+        Buffer(float[] coords) {
+            this.coords = coords;
+        }
+    }
+}
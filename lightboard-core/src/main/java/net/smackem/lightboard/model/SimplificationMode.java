@@ -0,0 +1,17 @@
+package net.smackem.lightboard.model;
+
+/**
+ * Determines when the points of a stroke are simplified.
+ */
+public enum SimplificationMode {
+    /**
+     * All points are retained while the stroke is drawn, the entire stroke is simplified when it ends.
+     */
+    END_OF_STROKE,
+
+    /**
+     * Points are thinned as they arrive, so that the stroke never holds more points than
+     * its simplified version. See {@link StreamingSimplifier}.
+     */
+    STREAMING,
+}
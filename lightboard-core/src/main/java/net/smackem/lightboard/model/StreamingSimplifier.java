@@ -0,0 +1,125 @@
+package net.smackem.lightboard.model;
+
+/**
+ * Simplifies a stroke while it is being drawn. A point is dropped if it is closer than the tolerance to the
+ * preceding point (radial distance) or if it lies within the tolerance of the segment that connects the
+ * previously emitted point with the next point (sliding window). All points dropped since the last emitted
+ * point are checked against that segment, so the simplified stroke never deviates from the input by more
+ * than the tolerance. When the window of dropped points is full, the candidate is emitted and a new window
+ * is started, so that no point is dropped unchecked.
+ * <p>
+ *     The most recent point is held back until the next point shows whether it is needed,
+ *     so the simplified stroke lags one point behind the input until it is finished.
+ * </p>
+ */
+final class StreamingSimplifier {
+    private static final int MAX_WINDOW_SIZE = 64;
+
+    private final double tolerance;
+    private final double[] window = new double[MAX_WINDOW_SIZE * 2];
+    private int windowSize;
+    private double anchorX, anchorY;
+    private double candidateX, candidateY;
+    private boolean hasCandidate;
+
+    /**
+     * @param x the x-coordinate of the first point of the stroke, which is always emitted.
+     * @param y the y-coordinate of the first point of the stroke.
+     */
+    StreamingSimplifier(double tolerance, double x, double y) {
+        this.tolerance = tolerance;
+        this.anchorX = x;
+        this.anchorY = y;
+    }
+
+    /**
+     * Feeds the next point of the stroke.
+     * @return {@code figure} with the points appended that have become final, which is {@code figure} itself
+     *      if no point has become final.
+     */
+    Figure add(Figure figure, double x, double y) {
+        final double toleranceSq = this.tolerance * this.tolerance;
+        if (this.hasCandidate == false) {
+            if (distanceSq(this.anchorX, this.anchorY, x, y) >= toleranceSq) {
+                this.candidateX = x;
+                this.candidateY = y;
+                this.hasCandidate = true;
+            }
+            return figure;
+        }
+        if (distanceSq(this.candidateX, this.candidateY, x, y) < toleranceSq) {
+            if (this.windowSize == MAX_WINDOW_SIZE) {
+                // the candidate covers all dropped points, so it can be emitted at any time
+                return emitCandidate(figure, x, y);
+            }
+            addToWindow(x, y);
+            return figure;
+        }
+        if (this.windowSize < MAX_WINDOW_SIZE && isCovered(x, y)) {
+            addToWindow(this.candidateX, this.candidateY);
+            this.candidateX = x;
+            this.candidateY = y;
+            return figure;
+        }
+        return emitCandidate(figure, x, y);
+    }
+
+    /**
+     * Feeds the last point of the stroke.
+     * @return {@code figure} with all remaining points appended, including the specified one.
+     */
+    Figure finish(Figure figure, double x, double y) {
+        if (this.hasCandidate && isCovered(x, y) == false) {
+            figure = emitCandidate(figure, x, y);
+        }
+        this.hasCandidate = false;
+        return figure.withPoint(x, y);
+    }
+
+    private Figure emitCandidate(Figure figure, double nextX, double nextY) {
+        final Figure newFigure = figure.withPoint(this.candidateX, this.candidateY);
+        this.anchorX = this.candidateX;
+        this.anchorY = this.candidateY;
+        this.candidateX = nextX;
+        this.candidateY = nextY;
+        this.windowSize = 0;
+        return newFigure;
+    }
+
+    private void addToWindow(double x, double y) {
+        this.window[this.windowSize * 2] = x;
+        this.window[this.windowSize * 2 + 1] = y;
+        this.windowSize++;
+    }
+
+    /**
+     * @return {@code true} if the candidate and all dropped points lie within the tolerance
+     *      of the segment from the anchor to the specified point.
+     */
+    private boolean isCovered(double x, double y) {
+        final double toleranceSq = this.tolerance * this.tolerance;
+        if (segmentDistanceSq(this.candidateX, this.candidateY, x, y) > toleranceSq) {
+            return false;
+        }
+        for (int i = 0; i < this.windowSize; i++) {
+            if (segmentDistanceSq(this.window[i * 2], this.window[i * 2 + 1], x, y) > toleranceSq) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private double segmentDistanceSq(double px, double py, double x, double y) {
+        final double dx = x - this.anchorX, dy = y - this.anchorY;
+        final double lengthSq = dx * dx + dy * dy;
+        final double t = lengthSq > 0
+                ? Math.max(0, Math.min(1, ((px - this.anchorX) * dx + (py - this.anchorY) * dy) / lengthSq))
+                : 0;
+        return distanceSq(px, py, this.anchorX + t * dx, this.anchorY + t * dy);
+    }
+
+    private static double distanceSq(double x0, double y0, double x1, double y1) {
+        final double dx = x1 - x0, dy = y1 - y0;
+        return dx * dx + dy * dy;
+    }
+}
@@ -0,0 +1,190 @@
+package net.smackem.lightboard.io;
+
+import net.smackem.lightboard.model.*;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.within;
+
+public class BinaryDrawingReaderTest {
+
+    @Test
+    public void zigzag() {
+        for (final int value : new int[] { 0, 1, -1, 2, -2, 63, -64, 1000, -1000, Integer.MAX_VALUE, Integer.MIN_VALUE }) {
+            assertThat(BinaryFormat.unzigzag(BinaryFormat.zigzag(value))).isEqualTo(value);
+        }
+        // small magnitudes map to small unsigned values, so that they fit into a single varint byte
+        assertThat(BinaryFormat.zigzag(0)).isEqualTo(0);
+        assertThat(BinaryFormat.zigzag(-1)).isEqualTo(1);
+        assertThat(BinaryFormat.zigzag(1)).isEqualTo(2);
+        assertThat(BinaryFormat.zigzag(-64)).isEqualTo(127);
+    }
+
+    @Test
+    public void varInt() throws IOException {
+        // a figure count takes a byte per 7 bits, least significant group first
+        assertThat(countBytes(0)).containsExactly(bytes(0x00));
+        assertThat(countBytes(1)).containsExactly(bytes(0x01));
+        assertThat(countBytes(127)).containsExactly(bytes(0x7f));
+        assertThat(countBytes(128)).containsExactly(bytes(0x80, 0x01));
+        assertThat(countBytes(300)).containsExactly(bytes(0xac, 0x02));
+        assertThat(countBytes(16384)).containsExactly(bytes(0x80, 0x80, 0x01));
+    }
+
+    @Test
+    public void drawingRoundTrip() throws IOException {
+        final Drawing drawing = new Drawing(List.of(
+                figure(new Rgba(255, 0, 128, 64), 2.5, 0, 0, 10.25f, -3.5f, 10000.0625f, 20000.5f, -5000, 7),
+                figure(new Rgba(1, 2, 3, 4), 0.0625, 1, 1),
+                figure(new Rgba(0, 0, 0, 255), 1)));
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        new BinaryDrawingWriter().write(drawing.snapshot(), bytes);
+
+        final Drawing read = new BinaryDrawingReader().readDrawing(new ByteArrayInputStream(bytes.toByteArray()));
+
+        assertSameFigures(read.figures(), drawing.figures(), 1.0 / BinaryFormat.QUANTIZATION / 2);
+    }
+
+    @Test
+    public void longFigureRoundTrip() throws IOException {
+        final float[] coords = new float[20000];
+        for (int i = 0; i < coords.length; i += 2) {
+            coords[i] = (float) (Math.cos(i * 0.01) * 500 + 600);
+            coords[i + 1] = (float) (Math.sin(i * 0.01) * 300 + 400);
+        }
+        final Drawing drawing = new Drawing(List.of(
+                new Figure(new Rgba(10, 20, 30, 255), 3, PointSequence.of(coords, coords.length / 2))));
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        new BinaryDrawingWriter().write(drawing.snapshot(), bytes);
+
+        final Drawing read = new BinaryDrawingReader().readDrawing(new ByteArrayInputStream(bytes.toByteArray()));
+
+        assertSameFigures(read.figures(), drawing.figures(), 1.0 / BinaryFormat.QUANTIZATION / 2);
+    }
+
+    @Test
+    public void documentRoundTrip() throws IOException {
+        final Document document = new Document(1920, 1080, List.of(
+                new Drawing(List.of(figure(new Rgba(1, 2, 3, 4), 2, 5, 6, 7, 8))),
+                new Drawing(),
+                new Drawing(List.of(figure(new Rgba(5, 6, 7, 8), 4, 1, 2), figure(new Rgba(9, 9, 9, 9), 1, 3, 4)))),
+                2);
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        new BinaryDrawingWriter().write(document, bytes);
+
+        final Document read = new BinaryDrawingReader().readDocument(new ByteArrayInputStream(bytes.toByteArray()));
+
+        assertThat(read.width()).isEqualTo(1920);
+        assertThat(read.height()).isEqualTo(1080);
+        assertThat(read.snapshot().drawingIndex()).isEqualTo(2);
+        assertThat(read.drawings()).hasSize(3);
+        for (int i = 0; i < 3; i++) {
+            assertSameFigures(read.drawings().get(i).figures(), document.drawings().get(i).figures(), 0);
+        }
+    }
+
+    @Test
+    public void exactDrawingBodyRoundTrip() throws IOException {
+        final Drawing drawing = new Drawing(List.of(
+                figure(new Rgba(255, 255, 255, 255), 1.3, 0.1f, 0.2f, 1e6f, -1e-6f, Float.MIN_VALUE, Float.MAX_VALUE)));
+        final byte[] body = BinaryDrawingWriter.encodeExactDrawingBody(drawing.snapshot());
+
+        final List<Figure> figures = BinaryDrawingReader.decodeExactDrawingBody(ByteBuffer.wrap(body));
+
+        assertSameFigures(figures, drawing.figures(), 0);
+    }
+
+    @Test
+    public void rejectsCountBeyondStream() {
+        // a figure count of Integer.MAX_VALUE in a stream of a few bytes
+        final byte[] bytes = bytes('L', 'B', BinaryFormat.KIND_DRAWING, BinaryFormat.VERSION, 0xff, 0xff, 0xff, 0xff, 0x07);
+        assertThatThrownBy(() -> new BinaryDrawingReader().readDrawing(new ByteArrayInputStream(bytes)))
+                .isInstanceOf(IOException.class);
+    }
+
+    @Test
+    public void rejectsNegativeCount() {
+        final byte[] bytes = bytes('L', 'B', BinaryFormat.KIND_DRAWING, BinaryFormat.VERSION, 0xff, 0xff, 0xff, 0xff, 0x0f);
+        assertThatThrownBy(() -> new BinaryDrawingReader().readDrawing(new ByteArrayInputStream(bytes)))
+                .isInstanceOf(IOException.class)
+                .hasMessageContaining("invalid element count");
+    }
+
+    @Test
+    public void rejectsPointCountBeyondBody() {
+        // one figure: rgba, stroke width 1.0, then a point count of 1000 followed by a single point
+        final byte[] body = bytes(0x01, 0, 0, 0, 0xff, 0x3f, 0xf0, 0, 0, 0, 0, 0, 0, 0xe8, 0x07, 0, 0, 0, 0, 0, 0, 0, 0);
+        assertThatThrownBy(() -> BinaryDrawingReader.decodeExactDrawingBody(ByteBuffer.wrap(body)))
+                .isInstanceOf(IOException.class)
+                .hasMessageContaining("invalid element count");
+    }
+
+    @Test
+    public void rejectsTruncatedStream() throws IOException {
+        final Drawing drawing = new Drawing(List.of(figure(new Rgba(1, 2, 3, 4), 2, 5, 6, 7, 8, 9, 10)));
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        new BinaryDrawingWriter().write(drawing.snapshot(), bytes);
+        final byte[] truncated = Arrays.copyOf(bytes.toByteArray(), bytes.size() - 1);
+
+        assertThatThrownBy(() -> new BinaryDrawingReader().readDrawing(new ByteArrayInputStream(truncated)))
+                .isInstanceOf(IOException.class);
+    }
+
+    @Test
+    public void rejectsForeignHeader() {
+        final byte[] bytes = bytes('L', 'X', BinaryFormat.KIND_DRAWING, BinaryFormat.VERSION, 0);
+        assertThatThrownBy(() -> new BinaryDrawingReader().readDrawing(new ByteArrayInputStream(bytes)))
+                .isInstanceOf(IOException.class)
+                .hasMessageContaining("not a lightboard binary stream");
+    }
+
+    static Figure figure(Rgba color, double strokeWidth, float... coords) {
+        return new Figure(color, strokeWidth, PointSequence.of(coords, coords.length / 2));
+    }
+
+    static void assertSameFigures(List<Figure> actual, List<Figure> expected, double tolerance) {
+        assertThat(actual).hasSameSizeAs(expected);
+        for (int i = 0; i < expected.size(); i++) {
+            final Figure actualFigure = actual.get(i);
+            final Figure expectedFigure = expected.get(i);
+            assertThat(actualFigure.color()).isEqualTo(expectedFigure.color());
+            assertThat(actualFigure.strokeWidth()).isCloseTo(expectedFigure.strokeWidth(), within(tolerance));
+            assertThat(actualFigure.points().size()).isEqualTo(expectedFigure.points().size());
+            for (int j = 0; j < expectedFigure.points().size(); j++) {
+                assertThat(actualFigure.points().x(j)).isCloseTo(expectedFigure.points().x(j), within(tolerance));
+                assertThat(actualFigure.points().y(j)).isCloseTo(expectedFigure.points().y(j), within(tolerance));
+            }
+        }
+    }
+
+    /**
+     * @return the encoded figure count of a drawing with the specified number of empty figures,
+     *      which are read back to check the count.
+     */
+    private static byte[] countBytes(int figureCount) throws IOException {
+        final Figure[] figures = new Figure[figureCount];
+        Arrays.fill(figures, new Figure(new Rgba(0, 0, 0, 0), 0));
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        new BinaryDrawingWriter().write(new Drawing(List.of(figures)).snapshot(), bytes);
+        final Drawing read = new BinaryDrawingReader().readDrawing(new ByteArrayInputStream(bytes.toByteArray()));
+        assertThat(read.figures()).hasSize(figureCount);
+        // header and rgba:u32 strokeWidth:varint pointCount:varint of each figure
+        return Arrays.copyOfRange(bytes.toByteArray(), 4, bytes.size() - figureCount * 6);
+    }
+
+    private static byte[] bytes(int... values) {
+        final byte[] bytes = new byte[values.length];
+        for (int i = 0; i < values.length; i++) {
+            bytes[i] = (byte) values[i];
+        }
+        return bytes;
+    }
+}
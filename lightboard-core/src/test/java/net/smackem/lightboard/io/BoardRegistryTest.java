@@ -0,0 +1,57 @@
+package net.smackem.lightboard.io;
+
+import net.smackem.lightboard.messaging.IngestionQueue;
+import net.smackem.lightboard.messaging.RedrawMessage;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class BoardRegistryTest {
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void ignoresNewBoardsAfterClose() throws Exception {
+        final BoardRegistry registry = new BoardRegistry(IngestionQueue.OverflowPolicy.BLOCK, 4,
+                this.folder.getRoot().toPath(), null, 0);
+        registry.close();
+
+        assertThat(registry.getOrCreate("late")).isNull();
+        registry.submit("late", new RedrawMessage());
+        assertThat(registry.isOpening("late")).isFalse();
+        assertThat(registry.get("late")).isNull();
+    }
+
+    @Test
+    public void ignoresNewBoardsInMemoryAfterClose() throws Exception {
+        final BoardRegistry registry = new BoardRegistry(IngestionQueue.OverflowPolicy.BLOCK, 4, null, null, 0);
+        registry.close();
+
+        assertThat(registry.getOrCreate("late")).isNull();
+        assertThat(registry.boards()).hasSize(1);
+    }
+
+    @Test
+    public void spillsEachBoardToItsOwnFile() throws Exception {
+        final Path spillDirectory = this.folder.getRoot().toPath().resolve("spill");
+        final BoardRegistry registry = new BoardRegistry(IngestionQueue.OverflowPolicy.BLOCK, 4, null,
+                spillDirectory, 1 << 20);
+        final Board board = registry.getOrCreate("other");
+
+        assertThat(registry.defaultBoard().spill()).isNotNull();
+        assertThat(board.spill()).isNotNull().isNotSameAs(registry.defaultBoard().spill());
+        assertThat(spillDirectory.resolve("default.lbs")).exists();
+        assertThat(spillDirectory.resolve("other.lbs")).exists();
+
+        registry.close();
+
+        try (final var files = Files.list(spillDirectory)) {
+            assertThat(files).isEmpty();
+        }
+    }
+}
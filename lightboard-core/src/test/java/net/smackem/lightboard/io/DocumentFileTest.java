@@ -0,0 +1,158 @@
+package net.smackem.lightboard.io;
+
+import net.smackem.lightboard.model.Document;
+import net.smackem.lightboard.model.Drawing;
+import net.smackem.lightboard.model.Rgba;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.locationtech.jts.geom.Coordinate;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static net.smackem.lightboard.io.BinaryDrawingReaderTest.assertSameFigures;
+import static net.smackem.lightboard.io.BinaryDrawingReaderTest.figure;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class DocumentFileTest {
+    // header, width, height and drawing index precede the drawing count
+    private static final int DRAWING_INDEX_POSITION = 12;
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void saveAndOpen() throws IOException {
+        final Document document = document();
+        final Path path = this.folder.newFile().toPath();
+        new BinaryDrawingWriter().save(document, path);
+
+        final Document opened = new BinaryDrawingReader().openDocument(path);
+
+        assertThat(opened.width()).isEqualTo(800);
+        assertThat(opened.height()).isEqualTo(600);
+        assertThat(opened.snapshot().drawingIndex()).isEqualTo(1);
+        assertThat(opened.drawings()).hasSize(3);
+        for (int i = 0; i < 3; i++) {
+            assertSameFigures(opened.drawings().get(i).figures(), document.drawings().get(i).figures(), 0);
+        }
+    }
+
+    @Test
+    public void drawingsAreDecodedOnFirstAccess() throws IOException {
+        final Path path = this.folder.newFile().toPath();
+        new BinaryDrawingWriter().save(document(), path);
+
+        final Document opened = new BinaryDrawingReader().openDocument(path);
+        final Drawing last = opened.drawings().get(2);
+
+        assertThat(last.isLoaded()).isFalse();
+        assertThat(last.figures()).hasSize(2);
+        assertThat(last.isLoaded()).isTrue();
+    }
+
+    @Test
+    public void saveReplacesLazilyOpenedDocument() throws IOException {
+        final Document document = document();
+        final Path path = this.folder.newFile().toPath();
+        new BinaryDrawingWriter().save(document, path);
+        final Document opened = new BinaryDrawingReader().openDocument(path);
+        opened.drawings().get(0).beginFigure(new Coordinate(7, 8), new Rgba(1, 1, 1, 1), 3);
+        opened.drawings().get(0).endFigure(new Coordinate(9, 10), 0.5);
+
+        assertThat(opened.drawings().get(2).isLoaded()).isFalse();
+
+        // loads the drawings that have not been loaded from the file it replaces
+        new BinaryDrawingWriter().save(opened, path);
+
+        assertSameFigures(opened.drawings().get(2).figures(), document.drawings().get(2).figures(), 0);
+        final Document reopened = new BinaryDrawingReader().openDocument(path);
+        assertThat(reopened.drawings().get(0).figures()).hasSize(2);
+        for (int i = 0; i < 3; i++) {
+            assertSameFigures(reopened.drawings().get(i).figures(), opened.drawings().get(i).figures(), 0);
+        }
+        try (final Stream<Path> files = Files.list(this.folder.getRoot().toPath())) {
+            assertThat(files).containsExactly(path);
+        }
+    }
+
+    @Test
+    public void rejectsDrawingIndexOutOfRange() throws IOException {
+        final Path path = this.folder.newFile().toPath();
+        new BinaryDrawingWriter().save(document(), path);
+        patchInt(path, DRAWING_INDEX_POSITION, 3);
+
+        assertThatThrownBy(() -> new BinaryDrawingReader().openDocument(path))
+                .isInstanceOf(IOException.class)
+                .hasMessageContaining("invalid drawing index");
+    }
+
+    @Test
+    public void rejectsNegativeDrawingIndex() throws IOException {
+        final Path path = this.folder.newFile().toPath();
+        new BinaryDrawingWriter().save(document(), path);
+        patchInt(path, DRAWING_INDEX_POSITION, -1);
+
+        assertThatThrownBy(() -> new BinaryDrawingReader().openDocument(path))
+                .isInstanceOf(IOException.class)
+                .hasMessageContaining("invalid drawing index");
+    }
+
+    @Test
+    public void rejectsOffsetBeyondFile() throws IOException {
+        final Path path = this.folder.newFile().toPath();
+        new BinaryDrawingWriter().save(document(), path);
+        // the last entry of the offset table is the file size
+        final long fileSize = Files.size(path);
+        patchLong(path, BinaryFormat.FILE_OFFSET_TABLE_POSITION + 3 * Long.BYTES, fileSize + 1);
+
+        assertThatThrownBy(() -> new BinaryDrawingReader().openDocument(path))
+                .isInstanceOf(IOException.class)
+                .hasMessageContaining("invalid offset table");
+    }
+
+    @Test
+    public void corruptDrawingFailsOnAccess() throws IOException {
+        final Path path = this.folder.newFile().toPath();
+        new BinaryDrawingWriter().save(document(), path);
+        // claims a figure count that exceeds the body of the last drawing
+        final byte[] bytes = Files.readAllBytes(path);
+        final long offset = ByteBuffer.wrap(bytes).getLong(BinaryFormat.FILE_OFFSET_TABLE_POSITION + 2 * Long.BYTES);
+        bytes[(int) offset] = 0x7f;
+        Files.write(path, bytes);
+
+        final Document opened = new BinaryDrawingReader().openDocument(path);
+
+        assertThatThrownBy(() -> opened.drawings().get(2).figures())
+                .isInstanceOf(UncheckedIOException.class);
+    }
+
+    private static Document document() {
+        return new Document(800, 600, List.of(
+                new Drawing(List.of(figure(new Rgba(1, 2, 3, 4), 2, 10, 20, 30, 40))),
+                new Drawing(),
+                new Drawing(List.of(
+                        figure(new Rgba(5, 6, 7, 8), 4, 1, 2, 3, 4, 5, 6),
+                        figure(new Rgba(9, 9, 9, 9), 1, 100, 200)))),
+                1);
+    }
+
+    private static void patchInt(Path path, int position, int value) throws IOException {
+        final byte[] bytes = Files.readAllBytes(path);
+        ByteBuffer.wrap(bytes).putInt(position, value);
+        Files.write(path, bytes);
+    }
+
+    private static void patchLong(Path path, int position, long value) throws IOException {
+        final byte[] bytes = Files.readAllBytes(path);
+        ByteBuffer.wrap(bytes).putLong(position, value);
+        Files.write(path, bytes);
+    }
+}
@@ -0,0 +1,157 @@
+package net.smackem.lightboard.io;
+
+import net.smackem.lightboard.messaging.IngestionQueue;
+import net.smackem.lightboard.model.Document;
+import net.smackem.lightboard.model.Drawing;
+import net.smackem.lightboard.model.Figure;
+import net.smackem.lightboard.model.Rgba;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.locationtech.jts.geom.Coordinate;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.LongSupplier;
+
+import static net.smackem.lightboard.io.BinaryDrawingReaderTest.assertSameFigures;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class DrawingSpillTest {
+    private static final int DRAWING_COUNT = 6;
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+    private final ExecutorService modelExecutor = Executors.newSingleThreadExecutor();
+    private Board board;
+    private Document document;
+    private Path path;
+    private DrawingSpill spill;
+    private final List<List<Figure>> figures = new ArrayList<>();
+    private int bodyLength;
+
+    /**
+     * Creates a document of drawings of the same size, the last one selected, and a spill whose budget
+     * is exceeded until the four drawings that are not next to the selected drawing are evicted.
+     */
+    @Before
+    public void setUp() throws Exception {
+        this.board = new Board("spill-test", IngestionQueue.OverflowPolicy.BLOCK, this.modelExecutor, null, null, 0);
+        this.document = this.board.document();
+        onModelThread(() -> {
+            drawFigure(this.document.drawing(), 0);
+            for (int i = 1; i < DRAWING_COUNT; i++) {
+                drawFigure(this.document.insertNewDrawing(), i);
+            }
+        });
+        for (final Drawing drawing : this.document.drawings()) {
+            this.figures.add(drawing.figures());
+        }
+        final Drawing selected = this.document.drawing();
+        this.bodyLength = BinaryDrawingWriter.encodeExactDrawingBody(selected.snapshot()).length;
+        final long heapBudget = DrawingSpill.estimateHeapSize(selected.snapshot()) * 5 / 2;
+        this.path = this.folder.getRoot().toPath().resolve("board.lbs");
+        this.spill = new DrawingSpill(this.board, this.path, heapBudget);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        this.spill.close();
+        this.board.close();
+        this.modelExecutor.shutdown();
+    }
+
+    @Test
+    public void evictsAndReloadsDrawings() throws Exception {
+        this.spill.trimNow();
+
+        assertThat(this.spill.evictionCount()).isEqualTo(4);
+        assertThat(this.spill.fileSize()).isEqualTo(4L * this.bodyLength);
+        assertThat(Files.size(this.path)).isEqualTo(4L * this.bodyLength);
+        assertThat(this.spill.freeSize()).isZero();
+        assertThat(this.spill.heapSize()).isLessThanOrEqualTo(this.spill.heapBudget());
+        for (int i = 0; i < DRAWING_COUNT; i++) {
+            assertThat(this.document.drawings().get(i).isLoaded()).isEqualTo(i >= DRAWING_COUNT - 2);
+        }
+
+        for (int i = 0; i < DRAWING_COUNT; i++) {
+            assertSameFigures(this.document.drawings().get(i).figures(), this.figures.get(i), 0);
+        }
+        assertThat(this.spill.reloadCount()).isEqualTo(4);
+    }
+
+    @Test
+    public void reusesEncodingOfUnmodifiedDrawing() throws Exception {
+        this.spill.trimNow();
+        final Drawing drawing = this.document.drawings().get(0);
+
+        assertSameFigures(drawing.figures(), this.figures.get(0), 0);
+        // the reload has requested a check, which evicts the drawing again
+        this.spill.trimNow();
+
+        assertThat(drawing.isLoaded()).isFalse();
+        assertThat(this.spill.evictionCount()).isEqualTo(5);
+        assertThat(this.spill.fileSize()).isEqualTo(4L * this.bodyLength);
+        assertThat(this.spill.freeSize()).isZero();
+        assertSameFigures(drawing.figures(), this.figures.get(0), 0);
+    }
+
+    @Test
+    public void freesMergesAndTruncatesRegionsOfUnreachableEntries() throws Exception {
+        this.spill.trimNow();
+
+        // cleared drawings are empty and do not exceed the budget, so their entries are dropped, not replaced
+        clearDrawing(1);
+        clearDrawing(2);
+        awaitValue(this.spill::freeSize, 2L * this.bodyLength);
+
+        assertThat(this.spill.fileSize()).isEqualTo(4L * this.bodyLength);
+        assertThat(this.spill.evictionCount()).isEqualTo(4);
+
+        // the last region is merged with the preceding free regions, which are then cut off the file
+        clearDrawing(3);
+        awaitValue(this.spill::fileSize, this.bodyLength);
+
+        assertThat(this.spill.freeSize()).isZero();
+        assertThat(Files.size(this.path)).isEqualTo(this.bodyLength);
+        assertSameFigures(this.document.drawings().get(0).figures(), this.figures.get(0), 0);
+    }
+
+    private void clearDrawing(int drawingIndex) throws Exception {
+        onModelThread(() -> this.document.drawings().get(drawingIndex).clear());
+    }
+
+    /**
+     * Collects garbage and checks the heap size until the unreachable entries have been released.
+     */
+    private void awaitValue(LongSupplier supplier, long expected) throws Exception {
+        for (int i = 0; i < 100 && supplier.getAsLong() != expected; i++) {
+            System.gc();
+            Thread.sleep(10);
+            this.spill.trimNow();
+        }
+        assertThat(supplier.getAsLong()).isEqualTo(expected);
+    }
+
+    private void onModelThread(Runnable task) throws Exception {
+        CompletableFuture.runAsync(task, this.modelExecutor).get();
+    }
+
+    /**
+     * Draws a zigzag stroke, which is not simplified.
+     */
+    private static void drawFigure(Drawing drawing, int seed) {
+        drawing.beginFigure(new Coordinate(seed, 0), new Rgba(seed, 100, 200, 255), 1.5);
+        for (int i = 1; i < 10; i++) {
+            drawing.addPoint(new Coordinate(seed + i * 1.1, i % 2 * 3.3));
+        }
+        drawing.endFigure(new Coordinate(seed + 11, 0), 0);
+    }
+}
@@ -0,0 +1,244 @@
+package net.smackem.lightboard.io;
+
+import net.smackem.lightboard.messaging.*;
+import net.smackem.lightboard.model.Document;
+import net.smackem.lightboard.model.Drawing;
+import net.smackem.lightboard.model.Rgba;
+import net.smackem.lightboard.model.SimplificationMode;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.locationtech.jts.geom.Coordinate;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+import static net.smackem.lightboard.io.BinaryDrawingReaderTest.assertSameFigures;
+import static net.smackem.lightboard.io.BinaryDrawingReaderTest.figure;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class JournalTest {
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void replaysAppliedMessages() throws Exception {
+        final Path directory = this.folder.getRoot().toPath();
+        final Document document;
+        try (final Journal journal = Journal.open(directory)) {
+            final MessageApplier applier = applier(journal);
+            applier.apply(new InitSizeMessage(640, 480));
+            drawStroke(applier, 10.1, 20.2, 0);
+            drawStroke(applier, 100.3, 50.7, 1);
+            applier.setSimplificationMode(SimplificationMode.STREAMING);
+            drawStroke(applier, 300.9, 10.4, 2);
+            applier.apply(new FigureEraseMessage(new Coordinate(100.3, 50.7), 2));
+            applier.apply(new DrawingNavigationMessage(DrawingNavigationMessage.Navigation.INSERT));
+            drawStroke(applier, 5.5, 5.5, 3);
+            applier.apply(new DrawingNavigationMessage(DrawingNavigationMessage.Navigation.PREVIOUS));
+            document = journal.document();
+        }
+
+        try (final Journal journal = Journal.open(directory)) {
+            assertSameDocument(journal.document(), document);
+            assertThat(journal.document().drawings().get(0).figures()).hasSize(2);
+        }
+    }
+
+    @Test
+    public void discardsTornRecord() throws Exception {
+        final Path directory = this.folder.getRoot().toPath();
+        final Document document;
+        try (final Journal journal = Journal.open(directory)) {
+            final MessageApplier applier = applier(journal);
+            drawStroke(applier, 10, 10, 0);
+            document = journal.document();
+        }
+        final Path journalPath = journalPath(directory);
+        final long size = Files.size(journalPath);
+        // the type and x of a FIGURE_BEGIN, cut off by a crash
+        Files.write(journalPath, new byte[] { JournalFormat.FIGURE_BEGIN, 0x10 }, StandardOpenOption.APPEND);
+
+        try (final Journal journal = Journal.open(directory)) {
+            assertSameDocument(journal.document(), document);
+            assertThat(Files.size(journalPath)).isEqualTo(size);
+            // the journal continues behind the last complete record
+            drawStroke(applier(journal), 50, 50, 1);
+        }
+        try (final Journal journal = Journal.open(directory)) {
+            assertThat(journal.document().drawing().figures()).hasSize(2);
+        }
+    }
+
+    @Test
+    public void endsReplayAtDrawingSelectionOutOfRange() throws Exception {
+        final Path directory = this.folder.getRoot().toPath();
+        final Document document;
+        try (final Journal journal = Journal.open(directory)) {
+            final MessageApplier applier = applier(journal);
+            drawStroke(applier, 10, 10, 0);
+            document = journal.document();
+        }
+        final Path journalPath = journalPath(directory);
+        final long size = Files.size(journalPath);
+        // selects a drawing that does not exist, then removes the figure
+        Files.write(journalPath, new byte[] {
+                JournalFormat.DRAWING_SELECT, 5,
+                JournalFormat.FIGURE_REMOVE, 0,
+        }, StandardOpenOption.APPEND);
+
+        try (final Journal journal = Journal.open(directory)) {
+            assertSameDocument(journal.document(), document);
+            assertThat(journal.document().drawing().figures()).hasSize(1);
+            assertThat(Files.size(journalPath)).isEqualTo(size);
+        }
+    }
+
+    @Test
+    public void endsReplayAtFinishWithoutFigure() throws Exception {
+        final Path directory = this.folder.getRoot().toPath();
+        try (final Journal journal = Journal.open(directory)) {
+            applier(journal).apply(new InitSizeMessage(640, 480));
+        }
+        final Path journalPath = journalPath(directory);
+        final long size = Files.size(journalPath);
+        // a FIGURE_FINISH with an empty figure, although the drawing has no figure, then a valid record
+        Files.write(journalPath, new byte[] {
+                JournalFormat.FIGURE_FINISH, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0,
+                JournalFormat.DRAWING_INSERT,
+        }, StandardOpenOption.APPEND);
+
+        try (final Journal journal = Journal.open(directory)) {
+            assertThat(journal.document().width()).isEqualTo(640);
+            assertThat(journal.document().drawings()).hasSize(1);
+            assertThat(journal.document().drawing().figures()).isEmpty();
+            assertThat(Files.size(journalPath)).isEqualTo(size);
+        }
+    }
+
+    @Test
+    public void restoresSnapshotAndJournal() throws Exception {
+        final Path directory = this.folder.getRoot().toPath();
+        // a snapshot is requested after each record
+        try (final Journal journal = Journal.open(directory, 1)) {
+            final MessageApplier applier = applier(journal);
+            for (int i = 0; i < 10; i++) {
+                drawStroke(applier, i * 10, i * 20, i);
+            }
+            applier.apply(new FigureRemoveMessage(new Coordinate(), 3));
+        }
+
+        try (final Journal journal = Journal.open(directory)) {
+            assertThat(journal.document().drawing().figures()).hasSize(9);
+        }
+        try (final var files = Files.list(directory)) {
+            // older generations are deleted once a snapshot has been taken
+            assertThat(files.filter(path -> path.getFileName().toString().startsWith("snapshot-")).count())
+                    .isLessThanOrEqualTo(1);
+        }
+    }
+
+    @Test
+    public void stopsRecordingWhenTooFarBehind() throws Exception {
+        final Path directory = this.folder.getRoot().toPath();
+        // any record exceeds the limit, as if the writer thread was stalled
+        try (final Journal journal = Journal.open(directory, Journal.DEFAULT_SNAPSHOT_THRESHOLD, 1)) {
+            final MessageApplier applier = applier(journal);
+            applier.apply(new InitSizeMessage(640, 480));
+
+            assertThat(journal.isFailed()).isTrue();
+            assertThat(journal.pendingBytes()).isZero();
+            drawStroke(applier, 10, 10, 0);
+            assertThat(journal.recordCount()).isEqualTo(1);
+            assertThat(journal.pendingBytes()).isZero();
+        }
+
+        try (final Journal journal = Journal.open(directory)) {
+            // the journal ends before the record that exceeded the limit
+            assertThat(journal.document().width()).isNotEqualTo(640);
+            assertThat(journal.document().drawing().figures()).isEmpty();
+        }
+    }
+
+    @Test
+    public void snapshotsAreExact() throws Exception {
+        final Path directory = this.folder.getRoot().toPath();
+        final Document document;
+        try (final Journal journal = Journal.open(directory, 1)) {
+            final MessageApplier applier = applier(journal);
+            applier.apply(new InitSizeMessage(640, 480));
+            for (int i = 0; i < 5; i++) {
+                drawStroke(applier, i * 10.3, i * 20.7, i);
+            }
+            applier.apply(new DrawingNavigationMessage(DrawingNavigationMessage.Navigation.INSERT));
+            drawStroke(applier, 1.01, 2.02, 5);
+            document = journal.document();
+        }
+
+        // each restore rotates the journal again, which must not change the figures either
+        for (int i = 0; i < 3; i++) {
+            try (final Journal journal = Journal.open(directory, 1)) {
+                assertSameDocument(journal.document(), document);
+                final MessageApplier applier = applier(journal);
+                applier.apply(new DrawingNavigationMessage(DrawingNavigationMessage.Navigation.PREVIOUS));
+                applier.apply(new DrawingNavigationMessage(DrawingNavigationMessage.Navigation.NEXT));
+            }
+        }
+    }
+
+    @Test
+    public void restoresQuantizedSnapshot() throws Exception {
+        final Path directory = this.folder.getRoot().toPath();
+        final Document document = new Document(800, 600, List.of(
+                new Drawing(List.of(figure(new Rgba(1, 2, 3, 4), 2.5f, 10.3f, 20.7f, 30.1f, 40.9f)))), 0);
+        try (final OutputStream out = Files.newOutputStream(directory.resolve(JournalFormat.snapshotFileName(1)))) {
+            new BinaryDrawingWriter().write(document, out);
+        }
+
+        try (final Journal journal = Journal.open(directory)) {
+            assertThat(journal.document().width()).isEqualTo(800);
+            assertSameFigures(journal.document().drawing().figures(), document.drawing().figures(),
+                    1.0 / BinaryFormat.QUANTIZATION / 2);
+        }
+    }
+
+    private static MessageApplier applier(Journal journal) {
+        final MessageApplier applier = new MessageApplier(journal.document());
+        applier.setListener(journal);
+        return applier;
+    }
+
+    /**
+     * Draws a wobbly stroke whose coordinates are not on the quantization grid of the journal.
+     */
+    private static void drawStroke(MessageApplier applier, double x, double y, int seed) {
+        applier.apply(new FigureBeginMessage(new Coordinate(x, y), new Rgba(seed, 100, 200, 255), 1.3 + seed));
+        for (int i = 1; i <= 40; i++) {
+            applier.apply(new FigurePointMessage(new Coordinate(
+                    x + i * 1.37, y + Math.sin(i * 0.7 + seed) * 3.01)));
+        }
+        applier.apply(new FigureEndMessage(new Coordinate(x + 41 * 1.37, y)));
+    }
+
+    private static Path journalPath(Path directory) throws IOException {
+        try (final var files = Files.list(directory)) {
+            return files.filter(path -> path.getFileName().toString().endsWith(".lbj"))
+                    .findFirst()
+                    .orElseThrow();
+        }
+    }
+
+    private static void assertSameDocument(Document actual, Document expected) {
+        assertThat(actual.width()).isEqualTo(expected.width());
+        assertThat(actual.height()).isEqualTo(expected.height());
+        assertThat(actual.snapshot().drawingIndex()).isEqualTo(expected.snapshot().drawingIndex());
+        assertThat(actual.drawings()).hasSameSizeAs(expected.drawings());
+        for (int i = 0; i < expected.drawings().size(); i++) {
+            assertSameFigures(actual.drawings().get(i).figures(), expected.drawings().get(i).figures(), 0);
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package net.smackem.lightboard.io;
+
+import com.illposed.osc.BufferBytesReceiver;
+import com.illposed.osc.OSCBundle;
+import com.illposed.osc.OSCMessage;
+import com.illposed.osc.OSCPacket;
+import com.illposed.osc.OSCParser;
+import com.illposed.osc.OSCSerializerAndParserBuilder;
+import net.smackem.lightboard.messaging.*;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class OscMessageDecoderTest {
+    private final OscMessageDecoder decoder = new OscMessageDecoder();
+    private final OSCParser parser = new OSCSerializerAndParserBuilder().buildParser();
+
+    @Test
+    public void fastPathEqualsJavaosc() throws Exception {
+        final Random random = new Random(5);
+        for (int i = 0; i < 200; i++) {
+            final float x = random.nextFloat() * 2000 - 500, y = random.nextFloat() * 2000 - 500;
+            for (final OSCMessage message : List.of(
+                    new OSCMessage("/init/size", List.of(random.nextInt(4000), random.nextInt(4000))),
+                    new OSCMessage("/figure/begin", List.of(x, y,
+                            random.nextInt(256), random.nextInt(256), random.nextInt(256), random.nextInt(256),
+                            random.nextFloat() * 10)),
+                    new OSCMessage("/figure/point", List.of(x, y)),
+                    new OSCMessage("/figure/end", List.of(x, y)),
+                    new OSCMessage("/figure/remove", List.of(x, y, random.nextInt(100))),
+                    new OSCMessage("/figure/erase", List.of(x, y, random.nextFloat() * 50)))) {
+                assertFastPathEqualsJavaosc(message, 0);
+            }
+        }
+    }
+
+    @Test
+    public void fastPathSkipsBoardPrefix() throws Exception {
+        final OSCMessage message = new OSCMessage("/board/abc/figure/point", List.of(1.5f, 2.5f));
+
+        assertFastPathEqualsJavaosc(message, "/board/abc".length());
+    }
+
+    @Test
+    public void fastPathLeavesOtherPacketsToJavaosc() throws Exception {
+        // other argument types, missing arguments, surplus arguments, unknown commands and bundles
+        assertThat(this.decoder.decode(serialize(new OSCMessage("/figure/point", List.of(1, 2))), 0)).isNull();
+        assertThat(this.decoder.decode(serialize(new OSCMessage("/figure/point", List.of(1f))), 0)).isNull();
+        assertThat(this.decoder.decode(serialize(new OSCMessage("/figure/point", List.of(1f, 2f, 3f))), 0)).isNull();
+        assertThat(this.decoder.decode(serialize(new OSCMessage("/figure/pointer", List.of(1f, 2f))), 0)).isNull();
+        assertThat(this.decoder.decode(serialize(new OSCMessage("/figure", List.of(1f, 2f))), 0)).isNull();
+        assertThat(this.decoder.decode(serialize(
+                new OSCBundle(List.of(new OSCMessage("/figure/point", List.of(1f, 2f))))), 0)).isNull();
+    }
+
+    @Test
+    public void fastPathRejectsTruncatedPacket() throws Exception {
+        final ByteBuffer packet = serialize(new OSCMessage("/figure/begin", List.of(1f, 2f, 3, 4, 5, 6, 7f)));
+        packet.limit(packet.limit() - 1);
+
+        assertThat(this.decoder.decode(packet, 0)).isNull();
+    }
+
+    @Test
+    public void fastPathLeavesPositionUnchanged() throws Exception {
+        final ByteBuffer packet = serialize(new OSCMessage("/figure/point", List.of(1f, 2f)));
+        final int position = packet.position();
+
+        this.decoder.decode(packet, 0);
+
+        assertThat(packet.position()).isEqualTo(position);
+    }
+
+    private void assertFastPathEqualsJavaosc(OSCMessage message, int commandOffset) throws Exception {
+        final ByteBuffer packet = serialize(message);
+        final Message decoded = this.decoder.decode(packet, commandOffset);
+        final OSCMessage parsed = (OSCMessage) this.parser.convert(packet.duplicate());
+        final Message expected = this.decoder.decode(parsed.getAddress().substring(commandOffset), parsed.getArguments());
+
+        assertThat(decoded).isNotNull();
+        assertThat(describe(decoded)).isEqualTo(describe(expected));
+    }
+
+    private static ByteBuffer serialize(OSCPacket packet) throws Exception {
+        final ByteBuffer buffer = ByteBuffer.allocate(1024);
+        new OSCSerializerAndParserBuilder().buildSerializer(new BufferBytesReceiver(buffer)).write(packet);
+        return buffer.flip();
+    }
+
+    private static String describe(Message message) {
+        final StringBuilder sb = new StringBuilder(message.getClass().getSimpleName());
+        if (message instanceof FigureMessage figure) {
+            sb.append(' ').append(figure.point().x).append(' ').append(figure.point().y);
+        }
+        if (message instanceof FigureBeginMessage figureBegin) {
+            sb.append(' ').append(figureBegin.color()).append(' ').append(figureBegin.strokeWidth());
+        } else if (message instanceof FigureRemoveMessage figureRemove) {
+            sb.append(' ').append(figureRemove.figureIndex());
+        } else if (message instanceof FigureEraseMessage figureErase) {
+            sb.append(' ').append(figureErase.radius());
+        } else if (message instanceof InitSizeMessage initSize) {
+            sb.append(' ').append(initSize.width()).append(' ').append(initSize.height());
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,218 @@
+package net.smackem.lightboard.messaging;
+
+import net.smackem.lightboard.model.Rgba;
+import org.junit.After;
+import org.junit.Test;
+import org.locationtech.jts.geom.Coordinate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.SubmissionPublisher;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class IngestionQueueTest {
+    private static final int CAPACITY = 4;
+
+    private final BlockingPublisher publisher = new BlockingPublisher();
+
+    @After
+    public void tearDown() {
+        this.publisher.release();
+        this.publisher.close();
+    }
+
+    @Test
+    public void capacityIsRoundedUpToPowerOfTwo() throws InterruptedException {
+        try (final IngestionQueue queue = new IngestionQueue(5, IngestionQueue.OverflowPolicy.BLOCK, this.publisher)) {
+            assertThat(queue.capacity()).isEqualTo(8);
+        }
+    }
+
+    @Test
+    public void publishesInOrderOfArrival() throws InterruptedException {
+        final List<Message> messages = stroke(100);
+        this.publisher.release();
+        try (final IngestionQueue queue = new IngestionQueue(CAPACITY, IngestionQueue.OverflowPolicy.BLOCK,
+                this.publisher)) {
+            for (final Message message : messages) {
+                queue.offer(message);
+            }
+        }
+
+        assertThat(this.publisher.submitted()).containsExactlyElementsOf(messages);
+    }
+
+    @Test
+    public void blockWaitsForRoom() throws InterruptedException {
+        final IngestionQueue queue = new IngestionQueue(CAPACITY, IngestionQueue.OverflowPolicy.BLOCK, this.publisher);
+        final List<Message> messages = fill(queue);
+        final Message overflow = point(99);
+        final Thread producer = new Thread(() -> {
+            try {
+                queue.offer(overflow);
+            } catch (InterruptedException ignored) {
+            }
+        });
+        producer.start();
+        awaitWaiting(producer);
+
+        assertThat(queue.blockCount()).isEqualTo(1);
+        this.publisher.release();
+        producer.join(5000);
+        queue.close();
+        messages.add(overflow);
+        assertThat(this.publisher.submitted()).containsExactlyElementsOf(messages);
+    }
+
+    @Test
+    public void dropOldestPointDiscardsOldestQueuedPoint() throws InterruptedException {
+        final IngestionQueue queue = new IngestionQueue(CAPACITY, IngestionQueue.OverflowPolicy.DROP_OLDEST_POINT,
+                this.publisher);
+        final List<Message> messages = fill(queue);
+        final Message overflow = point(99);
+
+        queue.offer(overflow);
+
+        assertThat(queue.dropCount()).isEqualTo(1);
+        assertThat(queue.depth()).isEqualTo(CAPACITY);
+        this.publisher.release();
+        queue.close();
+        // the plug, the figure begin, then the first point has been dropped
+        messages.remove(2);
+        messages.add(overflow);
+        assertThat(this.publisher.submitted()).containsExactlyElementsOf(messages);
+    }
+
+    @Test
+    public void coalescePointsReplacesNewestQueuedPoint() throws InterruptedException {
+        final IngestionQueue queue = new IngestionQueue(CAPACITY, IngestionQueue.OverflowPolicy.COALESCE_POINTS,
+                this.publisher);
+        final List<Message> messages = fill(queue);
+        final Message overflow = point(99);
+
+        queue.offer(overflow);
+
+        assertThat(queue.coalesceCount()).isEqualTo(1);
+        assertThat(queue.depth()).isEqualTo(CAPACITY);
+        this.publisher.release();
+        queue.close();
+        messages.set(messages.size() - 1, overflow);
+        assertThat(this.publisher.submitted()).containsExactlyElementsOf(messages);
+    }
+
+    @Test
+    public void coalescePointsWaitsForOtherMessages() throws InterruptedException {
+        final IngestionQueue queue = new IngestionQueue(CAPACITY, IngestionQueue.OverflowPolicy.COALESCE_POINTS,
+                this.publisher);
+        final List<Message> messages = fill(queue);
+        final Message overflow = new FigureEndMessage(new Coordinate(99, 99));
+        final Thread producer = new Thread(() -> {
+            try {
+                queue.offer(overflow);
+            } catch (InterruptedException ignored) {
+            }
+        });
+        producer.start();
+        awaitWaiting(producer);
+
+        assertThat(queue.coalesceCount()).isZero();
+        assertThat(queue.blockCount()).isEqualTo(1);
+        this.publisher.release();
+        producer.join(5000);
+        queue.close();
+        messages.add(overflow);
+        assertThat(this.publisher.submitted()).containsExactlyElementsOf(messages);
+    }
+
+    @Test
+    public void ignoresMessagesAfterClose() throws InterruptedException {
+        this.publisher.release();
+        final IngestionQueue queue = new IngestionQueue(CAPACITY, IngestionQueue.OverflowPolicy.BLOCK, this.publisher);
+        queue.close();
+
+        queue.offer(point(1));
+
+        assertThat(queue.depth()).isZero();
+        assertThat(this.publisher.submitted()).isEmpty();
+    }
+
+    /**
+     * Stalls the drain thread with a first message and then fills the queue with a figure begin and points.
+     * @return all offered messages in order of arrival.
+     */
+    private List<Message> fill(IngestionQueue queue) throws InterruptedException {
+        final List<Message> messages = new ArrayList<>();
+        final Message plug = new RedrawMessage();
+        queue.offer(plug);
+        messages.add(plug);
+        this.publisher.awaitBlocked();
+        messages.addAll(stroke(CAPACITY - 1));
+        for (final Message message : messages.subList(1, messages.size())) {
+            queue.offer(message);
+        }
+        assertThat(queue.depth()).isEqualTo(CAPACITY);
+        return messages;
+    }
+
+    private static List<Message> stroke(int pointCount) {
+        final List<Message> messages = new ArrayList<>();
+        messages.add(new FigureBeginMessage(new Coordinate(0, 0), new Rgba(0, 0, 0, 255), 1));
+        for (int i = 1; i <= pointCount; i++) {
+            messages.add(point(i));
+        }
+        return messages;
+    }
+
+    private static Message point(int i) {
+        return new FigurePointMessage(new Coordinate(i, i));
+    }
+
+    private static void awaitWaiting(Thread thread) throws InterruptedException {
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (thread.getState() != Thread.State.WAITING && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+        assertThat(thread.getState()).isEqualTo(Thread.State.WAITING);
+    }
+
+    /**
+     * Records the submitted messages and blocks the first submission until {@link #release()} is called,
+     * which stalls the drain thread of the queue.
+     */
+    private static class BlockingPublisher extends SubmissionPublisher<Message> {
+        private final CountDownLatch blocked = new CountDownLatch(1);
+        private final CountDownLatch released = new CountDownLatch(1);
+        private final List<Message> submitted = new ArrayList<>();
+
+        @Override
+        public int submit(Message item) {
+            synchronized (this.submitted) {
+                this.submitted.add(item);
+            }
+            this.blocked.countDown();
+            try {
+                this.released.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return 0;
+        }
+
+        void awaitBlocked() throws InterruptedException {
+            assertThat(this.blocked.await(5, TimeUnit.SECONDS)).isTrue();
+        }
+
+        void release() {
+            this.released.countDown();
+        }
+
+        List<Message> submitted() {
+            synchronized (this.submitted) {
+                return List.copyOf(this.submitted);
+            }
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package net.smackem.lightboard.model;
+
+import org.junit.Test;
+import org.locationtech.jts.geom.Coordinate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class DrawingChangeLogTest {
+    private static final Rgba COLOR = new Rgba(10, 20, 30, 255);
+
+    @Test
+    public void changesLeadFromOneVersionToAnother() {
+        final Random random = new Random(7);
+        final Drawing drawing = new Drawing();
+        final List<DrawingSnapshot> snapshots = new ArrayList<>();
+        snapshots.add(drawing.snapshot());
+        for (int i = 0; i < 300; i++) {
+            modify(drawing, random);
+            snapshots.add(drawing.snapshot());
+        }
+        for (int i = 0; i < 500; i++) {
+            final int from = random.nextInt(snapshots.size());
+            final int to = from + random.nextInt(snapshots.size() - from);
+            assertChangesLeadTo(drawing, snapshots.get(from), snapshots.get(to));
+        }
+    }
+
+    @Test
+    public void changesOfCurrentVersionAreEmpty() {
+        final Drawing drawing = new Drawing();
+        drawStroke(drawing, 0, 0, SimplificationMode.END_OF_STROKE);
+        final long version = drawing.snapshot().version();
+
+        assertThat(drawing.changes(version, version)).isEmpty();
+    }
+
+    @Test
+    public void changesAreUnavailableForInvalidRange() {
+        final Drawing drawing = new Drawing();
+        drawStroke(drawing, 0, 0, SimplificationMode.END_OF_STROKE);
+        final long version = drawing.snapshot().version();
+
+        assertThat(drawing.changes(version, version - 1)).isNull();
+        assertThat(drawing.changes(-1, version)).isNull();
+    }
+
+    @Test
+    public void changesAreUnavailableOnceOverwritten() {
+        final Drawing drawing = new Drawing();
+        final long version = drawing.snapshot().version();
+        drawing.beginFigure(new Coordinate(0, 0), COLOR, 1);
+        for (int i = 0; i < 10000; i++) {
+            drawing.addPoint(new Coordinate(i, i));
+        }
+        final DrawingSnapshot snapshot = drawing.snapshot();
+
+        assertThat(drawing.changes(version, snapshot.version())).isNull();
+        assertChangesLeadTo(drawing, snapshot, snapshot);
+        assertThat(drawing.changes(snapshot.version() - 100, snapshot.version())).hasSize(100);
+    }
+
+    @Test
+    public void clearIsRecorded() {
+        final Drawing drawing = new Drawing();
+        drawStroke(drawing, 0, 0, SimplificationMode.END_OF_STROKE);
+        final DrawingSnapshot before = drawing.snapshot();
+        drawing.clear();
+
+        final List<DrawingChange> changes = drawing.changes(before.version(), drawing.snapshot().version());
+
+        assertThat(changes).extracting(DrawingChange::kind).containsExactly(DrawingChange.Kind.CLEARED);
+        assertChangesLeadTo(drawing, before, drawing.snapshot());
+    }
+
+    private static void modify(Drawing drawing, Random random) {
+        final int figureCount = drawing.figures().size();
+        switch (random.nextInt(5)) {
+            case 0, 1 -> drawStroke(drawing, random.nextInt(500), random.nextInt(500),
+                    random.nextBoolean() ? SimplificationMode.STREAMING : SimplificationMode.END_OF_STROKE);
+            case 2 -> {
+                if (figureCount > 0) {
+                    drawing.removeFigure(random.nextInt(figureCount));
+                }
+            }
+            case 3 -> drawing.eraseAt(new Coordinate(random.nextInt(500), random.nextInt(500)), 20, (index, version) -> { });
+            default -> {
+                if (random.nextInt(20) == 0) {
+                    drawing.clear();
+                } else {
+                    drawing.addPoint(new Coordinate(random.nextInt(500), random.nextInt(500)));
+                }
+            }
+        }
+    }
+
+    private static void drawStroke(Drawing drawing, double x, double y, SimplificationMode simplificationMode) {
+        drawing.beginFigure(new Coordinate(x, y), COLOR, 2, simplificationMode, 0.5);
+        for (int i = 1; i < 30; i++) {
+            drawing.addPoint(new Coordinate(x + i, y + Math.sin(i * 0.5) * 4));
+        }
+        drawing.endFigure(new Coordinate(x + 30, y), 0.5);
+    }
+
+    private static void assertChangesLeadTo(Drawing drawing, DrawingSnapshot from, DrawingSnapshot to) {
+        final List<DrawingChange> changes = drawing.changes(from.version(), to.version());
+        assertThat(changes).isNotNull();
+        final List<List<Float>> figures = new ArrayList<>();
+        for (final Figure figure : from.figures()) {
+            figures.add(coords(figure));
+        }
+        for (final DrawingChange change : changes) {
+            switch (change.kind()) {
+                case FIGURE_ADDED -> figures.add(change.figureIndex(), coords(change.figure()));
+                case FIGURE_REMOVED -> figures.remove(change.figureIndex());
+                case FIGURE_REPLACED -> figures.set(change.figureIndex(), coords(change.figure()));
+                case POINT_APPENDED -> {
+                    figures.get(change.figureIndex()).add((float) change.x());
+                    figures.get(change.figureIndex()).add((float) change.y());
+                }
+                case CLEARED -> figures.clear();
+            }
+        }
+        final List<List<Float>> expected = new ArrayList<>();
+        for (final Figure figure : to.figures()) {
+            expected.add(coords(figure));
+        }
+        assertThat(figures).isEqualTo(expected);
+    }
+
+    private static List<Float> coords(Figure figure) {
+        final List<Float> coords = new ArrayList<>();
+        final PointSequence points = figure.points();
+        for (int i = 0; i < points.size(); i++) {
+            coords.add((float) points.x(i));
+            coords.add((float) points.y(i));
+        }
+        return coords;
+    }
+}
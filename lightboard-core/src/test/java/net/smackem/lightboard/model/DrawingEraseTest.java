@@ -0,0 +1,132 @@
+package net.smackem.lightboard.model;
+
+import org.junit.Test;
+import org.locationtech.jts.geom.Coordinate;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static net.smackem.lightboard.model.FigureIndexTest.figure;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class DrawingEraseTest {
+    private static final Rgba COLOR = new Rgba(0, 0, 0, 255);
+
+    @Test
+    public void erasesFiguresWithinRadiusAndStrokeWidth() {
+        // horizontal strokes at y = 0, 10, 20 and 30, each 2 units wide
+        final Drawing drawing = new Drawing(List.of(
+                figure(2, 0, 0, 100, 0),
+                figure(2, 0, 10, 100, 10),
+                figure(2, 0, 20, 100, 20),
+                figure(2, 0, 30, 100, 30)));
+
+        // reaches the edges of the strokes at y = 10 and y = 20
+        final List<Figure> erased = drawing.eraseAt(new Coordinate(50, 15), 4, (index, version) -> { });
+
+        assertThat(erased).extracting(FigureIndexTest::y0).containsExactly(20.0, 10.0);
+        assertThat(drawing.figures()).extracting(FigureIndexTest::y0).containsExactly(0.0, 30.0);
+        assertThat(drawing.eraseAt(new Coordinate(50, 15), 4, (index, version) -> { })).isEmpty();
+        assertThat(drawing.eraseAt(new Coordinate(50, 15), 13.9, (index, version) -> { })).isEmpty();
+        assertThat(drawing.eraseAt(new Coordinate(50, 15), 14, (index, version) -> { })).hasSize(2);
+        assertThat(drawing.isBlank()).isTrue();
+    }
+
+    @Test
+    public void listenerReceivesIndicesAndVersionsInOrderOfRemoval() {
+        final Drawing drawing = new Drawing(List.of(
+                figure(1, 0, 0, 10, 0),
+                figure(1, 0, 50, 10, 50),
+                figure(1, 0, 1, 10, 1),
+                figure(1, 0, 60, 10, 60),
+                figure(1, 0, 2, 10, 2)));
+        final DrawingSnapshot before = drawing.snapshot();
+        final List<Integer> indices = new ArrayList<>();
+        final List<Long> versions = new ArrayList<>();
+
+        drawing.eraseAt(new Coordinate(5, 1), 2, (index, version) -> {
+            // the drawing without all removed figures has been published
+            assertThat(drawing.figures()).hasSize(2);
+            indices.add(index);
+            versions.add(version);
+        });
+
+        // removed from last to first, so each index refers to the drawing before that removal
+        assertThat(indices).containsExactly(4, 2, 0);
+        assertThat(versions).containsExactly(before.version() + 1, before.version() + 2, before.version() + 3);
+        assertThat(drawing.snapshot().version()).isEqualTo(before.version() + 3);
+        final List<DrawingChange> changes = drawing.changes(before.version(), versions.get(0));
+        assertThat(changes).extracting(DrawingChange::figureIndex).containsExactly(4);
+    }
+
+    @Test
+    public void figureInProgressIsNotErased() {
+        final Drawing drawing = new Drawing(List.of(figure(1, 0, 0, 10, 0)));
+        drawing.beginFigure(new Coordinate(0, 0), COLOR, 1);
+        drawing.addPoint(new Coordinate(10, 0));
+
+        assertThat(drawing.eraseAt(new Coordinate(5, 0), 1, (index, version) -> { })).hasSize(1);
+        assertThat(drawing.figures()).hasSize(1);
+        assertThat(drawing.snapshot().isFigureInProgress()).isTrue();
+
+        drawing.endFigure(new Coordinate(10, 0), 0.5);
+
+        assertThat(drawing.eraseAt(new Coordinate(5, 0), 1, (index, version) -> { })).hasSize(1);
+        assertThat(drawing.isBlank()).isTrue();
+    }
+
+    @Test
+    public void endedFigureIsErasedAsEnded() {
+        final Drawing drawing = new Drawing();
+        drawing.beginFigure(new Coordinate(0, 0), COLOR, 1);
+        drawing.addPoint(new Coordinate(10, 0));
+        drawing.endFigure(new Coordinate(20, 0), 0.5);
+        // a point after the end extends the figure, which is indexed again by the next end
+        drawing.addPoint(new Coordinate(20, 20));
+
+        assertThat(drawing.eraseAt(new Coordinate(20, 20), 1, (index, version) -> { })).isEmpty();
+
+        drawing.endFigure(new Coordinate(20, 30), 0.5);
+
+        assertThat(drawing.eraseAt(new Coordinate(20, 25), 1, (index, version) -> { })).hasSize(1);
+    }
+
+    @Test
+    public void indexFollowsRemoveFigureAndClear() {
+        final Drawing drawing = new Drawing(List.of(
+                figure(1, 0, 0, 10, 0),
+                figure(1, 0, 10, 10, 10),
+                figure(1, 0, 20, 10, 20)));
+
+        drawing.removeFigure(0);
+        final List<Integer> indices = new ArrayList<>();
+        drawing.eraseAt(new Coordinate(5, 20), 1, (index, version) -> indices.add(index));
+
+        assertThat(indices).containsExactly(1);
+        assertThat(drawing.figures()).extracting(FigureIndexTest::y0).containsExactly(10.0);
+
+        drawing.clear();
+
+        assertThat(drawing.eraseAt(new Coordinate(5, 10), 1, (index, version) -> { })).isEmpty();
+
+        drawing.beginFigure(new Coordinate(0, 5), COLOR, 1);
+        drawing.endFigure(new Coordinate(10, 5), 0.5);
+
+        assertThat(drawing.eraseAt(new Coordinate(5, 5), 1, (index, version) -> indices.add(index))).hasSize(1);
+        assertThat(indices).containsExactly(1, 0);
+    }
+
+    @Test
+    public void unfinishedStrokeIsIndexedWhenNextFigureBegins() {
+        final Drawing drawing = new Drawing();
+        drawing.beginFigure(new Coordinate(0, 0), COLOR, 1);
+        drawing.addPoint(new Coordinate(10, 0));
+        drawing.beginFigure(new Coordinate(0, 10), COLOR, 1);
+
+        final List<Integer> indices = new ArrayList<>();
+        drawing.eraseAt(new Coordinate(5, 0), 1, (index, version) -> indices.add(index));
+
+        assertThat(indices).containsExactly(0);
+        assertThat(drawing.figures()).hasSize(1);
+    }
+}
@@ -0,0 +1,95 @@
+package net.smackem.lightboard.model;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class FigureIndexTest {
+    private static final Rgba COLOR = new Rgba(0, 0, 0, 255);
+
+    @Test
+    public void hitsDependOnRadiusAndStrokeWidth() {
+        final FigureIndex index = new FigureIndex();
+        // a horizontal stroke from (0, 0) to (10, 0), 4 units wide
+        index.append(figure(4, 0, 0, 10, 0), true);
+
+        // the edge of the stroke is 2 units away from its center line
+        assertThat(index.query(5, 3, 1)).containsExactly(0);
+        assertThat(index.query(5, 3.5, 1)).isEmpty();
+        assertThat(index.query(13, 0, 1)).containsExactly(0);
+        assertThat(index.query(13.5, 0, 1)).isEmpty();
+        assertThat(index.query(5, 10, 8)).containsExactly(0);
+        assertThat(index.query(5, 10, 7.5)).isEmpty();
+    }
+
+    @Test
+    public void unfinishedFiguresAreNotHit() {
+        final FigureIndex index = new FigureIndex();
+        index.append(figure(1, 0, 0, 10, 0), true);
+        index.append(figure(1, 0, 0, 10, 0), false);
+
+        assertThat(index.query(5, 0, 1)).containsExactly(0);
+
+        index.setLast(figure(1, 0, 0, 10, 0), true);
+
+        assertThat(index.query(5, 0, 1)).containsExactly(0, 1);
+
+        index.setLast(figure(1, 0, 0, 10, 0), false);
+
+        assertThat(index.query(5, 0, 1)).containsExactly(0);
+    }
+
+    @Test
+    public void emptyFiguresAreNotHit() {
+        final FigureIndex index = new FigureIndex();
+        index.append(new Figure(COLOR, 100), true);
+
+        assertThat(index.query(0, 0, 100)).isEmpty();
+        assertThat(index.size()).isEqualTo(1);
+    }
+
+    @Test
+    public void positionsFollowRemovals() {
+        final Random random = new Random(3);
+        final FigureIndex index = new FigureIndex();
+        final List<Integer> reference = new ArrayList<>();
+        int nextId = 0;
+        for (int i = 0; i < 5000; i++) {
+            if (reference.isEmpty() || random.nextInt(3) > 0) {
+                // each figure is a dot whose x coordinate identifies it
+                index.append(figure(0.5, nextId, 0), true);
+                reference.add(nextId++);
+            } else {
+                final int position = random.nextInt(reference.size());
+                index.remove(position);
+                reference.remove(position);
+            }
+            if (i % 100 == 0) {
+                assertPositions(index, reference);
+            }
+        }
+        assertPositions(index, reference);
+        index.clear();
+        assertThat(index.size()).isZero();
+        assertThat(index.query(0, 0, nextId)).isEmpty();
+    }
+
+    private static void assertPositions(FigureIndex index, List<Integer> reference) {
+        assertThat(index.size()).isEqualTo(reference.size());
+        for (int position = 0; position < reference.size(); position++) {
+            assertThat(index.query(reference.get(position), 0, 0.1)).containsExactly(position);
+        }
+    }
+
+    static Figure figure(double strokeWidth, float... coords) {
+        return new Figure(COLOR, strokeWidth, PointSequence.of(coords, coords.length / 2));
+    }
+
+    static double y0(Figure figure) {
+        return figure.points().y(0);
+    }
+}
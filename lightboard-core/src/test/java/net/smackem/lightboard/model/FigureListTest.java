@@ -0,0 +1,152 @@
+package net.smackem.lightboard.model;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static net.smackem.lightboard.model.FigureIndexTest.figure;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class FigureListTest {
+    @Test
+    public void olderVersionsSurviveGrowth() {
+        final List<Figure> figures = figures(100);
+        final List<FigureList> versions = new ArrayList<>();
+        FigureList list = FigureList.EMPTY;
+        versions.add(list);
+        // grows the backing array several times beyond its initial capacity
+        for (final Figure figure : figures) {
+            list = list.append(figure);
+            versions.add(list);
+        }
+
+        for (int size = 0; size < versions.size(); size++) {
+            assertThat(versions.get(size)).containsExactlyElementsOf(figures.subList(0, size));
+        }
+    }
+
+    @Test
+    public void appendingToOlderVersionForks() {
+        final List<Figure> figures = figures(7);
+        // the tip of the older version differs from the figure the newer version has stored in the shared array
+        final FigureList base = FigureList.of(figures.subList(0, 3));
+        final FigureList newer = base.append(figures.get(4));
+        final FigureList older = base.withLast(figures.get(3));
+
+        final FigureList newest = older.append(figures.get(5));
+        final FigureList fork = older.append(figures.get(6));
+
+        assertThat(newest).containsExactly(figures.get(0), figures.get(1), figures.get(3), figures.get(5));
+        assertThat(fork).containsExactly(figures.get(0), figures.get(1), figures.get(3), figures.get(6));
+        assertThat(older).containsExactly(figures.get(0), figures.get(1), figures.get(3));
+        assertThat(newer).containsExactly(figures.get(0), figures.get(1), figures.get(2), figures.get(4));
+
+        // both continue independently
+        assertThat(newest.append(figures.get(2))).containsExactly(
+                figures.get(0), figures.get(1), figures.get(3), figures.get(5), figures.get(2));
+        assertThat(fork.append(figures.get(2))).containsExactly(
+                figures.get(0), figures.get(1), figures.get(3), figures.get(6), figures.get(2));
+        assertThat(newest).containsExactly(figures.get(0), figures.get(1), figures.get(3), figures.get(5));
+    }
+
+    @Test
+    public void withLastReplacesTip() {
+        final List<Figure> figures = figures(5);
+        final FigureList list = FigureList.of(figures.subList(0, 3));
+
+        final FigureList replaced = list.withLast(figures.get(3));
+
+        assertThat(replaced).containsExactly(figures.get(0), figures.get(1), figures.get(3));
+        assertThat(replaced.last()).isSameAs(figures.get(3));
+        assertThat(list).containsExactlyElementsOf(figures.subList(0, 3));
+
+        // the replaced tip is appended to the shared array, behind the figures of the original list
+        final FigureList appended = replaced.append(figures.get(4));
+
+        assertThat(appended).containsExactly(figures.get(0), figures.get(1), figures.get(3), figures.get(4));
+        assertThat(list).containsExactlyElementsOf(figures.subList(0, 3));
+        assertThat(list.append(figures.get(4))).containsExactly(
+                figures.get(0), figures.get(1), figures.get(2), figures.get(4));
+        assertThat(appended).containsExactly(figures.get(0), figures.get(1), figures.get(3), figures.get(4));
+    }
+
+    @Test
+    public void withLastOfEmptyListAddsFigure() {
+        final Figure figure = figure(1, 0, 0);
+
+        assertThat(FigureList.EMPTY.withLast(figure)).containsExactly(figure);
+        assertThat(FigureList.EMPTY).isEmpty();
+    }
+
+    @Test
+    public void withoutHead() {
+        final List<Figure> figures = figures(4);
+        final FigureList list = FigureList.of(figures.subList(0, 3));
+
+        final FigureList removed = list.without(0);
+
+        assertThat(removed).containsExactly(figures.get(1), figures.get(2));
+        assertThat(removed.last()).isSameAs(figures.get(2));
+        assertThat(removed.append(figures.get(3))).containsExactly(figures.get(1), figures.get(2), figures.get(3));
+        assertThat(list).containsExactlyElementsOf(figures.subList(0, 3));
+    }
+
+    @Test
+    public void withoutTip() {
+        final List<Figure> figures = figures(4);
+        final FigureList list = FigureList.of(figures.subList(0, 3));
+
+        final FigureList removed = list.without(2);
+
+        assertThat(removed).containsExactly(figures.get(0), figures.get(1));
+        assertThat(removed.last()).isSameAs(figures.get(1));
+
+        // the shortened list shares the array of the original list, so appending to it must not overwrite it
+        final FigureList appended = removed.append(figures.get(3));
+
+        assertThat(appended).containsExactly(figures.get(0), figures.get(1), figures.get(3));
+        assertThat(list).containsExactlyElementsOf(figures.subList(0, 3));
+        assertThat(list.append(figures.get(3))).containsExactly(
+                figures.get(0), figures.get(1), figures.get(2), figures.get(3));
+    }
+
+    @Test
+    public void withoutOnlyFigure() {
+        final FigureList list = FigureList.of(figures(1));
+
+        final FigureList removed = list.without(0);
+
+        assertThat(removed).isEmpty();
+        assertThat(removed.last()).isNull();
+        assertThat(list).hasSize(1);
+    }
+
+    @Test
+    public void withoutAllKeepsOrder() {
+        final List<Figure> figures = figures(40);
+        final FigureList list = FigureList.of(figures);
+
+        final FigureList removed = list.withoutAll(new int[] { 0, 17, 18, 39 });
+
+        final List<Figure> expected = new ArrayList<>(figures);
+        expected.remove(39);
+        expected.remove(18);
+        expected.remove(17);
+        expected.remove(0);
+        assertThat(removed).containsExactlyElementsOf(expected);
+        assertThat(removed.last()).isSameAs(figures.get(38));
+        assertThat(list).containsExactlyElementsOf(figures);
+    }
+
+    /**
+     * @return the specified number of distinct dots.
+     */
+    private static List<Figure> figures(int count) {
+        final List<Figure> figures = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            figures.add(figure(1, i, 0));
+        }
+        return figures;
+    }
+}
@@ -0,0 +1,90 @@
+package net.smackem.lightboard.model;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class PointSequenceTest {
+    @Test
+    public void olderVersionsSurviveGrowth() {
+        final List<PointSequence> versions = new ArrayList<>();
+        PointSequence points = PointSequence.EMPTY;
+        versions.add(points);
+        // grows the backing array several times beyond its initial capacity
+        for (int i = 0; i < 100; i++) {
+            points = points.append(i, -i);
+            versions.add(points);
+        }
+
+        for (int size = 0; size < versions.size(); size++) {
+            assertPoints(versions.get(size), size);
+        }
+    }
+
+    @Test
+    public void appendingToOlderVersionForks() {
+        PointSequence older = PointSequence.EMPTY;
+        for (int i = 0; i < 3; i++) {
+            older = older.append(i, -i);
+        }
+        final PointSequence newer = older.append(3, -3);
+
+        final PointSequence fork = older.append(30, -30);
+
+        assertThat(fork.size()).isEqualTo(4);
+        assertThat(fork.x(3)).isEqualTo(30);
+        assertThat(fork.y(3)).isEqualTo(-30);
+        assertPrefix(fork, 3);
+        assertPoints(newer, 4);
+        assertPoints(older, 3);
+
+        // both continue independently
+        final PointSequence newerContinued = newer.append(4, -4);
+        final PointSequence forkContinued = fork.append(40, -40);
+
+        assertPoints(newerContinued, 5);
+        assertThat(forkContinued.x(3)).isEqualTo(30);
+        assertThat(forkContinued.x(4)).isEqualTo(40);
+        assertPrefix(forkContinued, 3);
+    }
+
+    @Test
+    public void appendingToFullArrayCopies() {
+        final float[] coords = { 0, 0, 1, -1 };
+        final PointSequence points = PointSequence.of(coords, 2);
+
+        final PointSequence appended = points.append(2, -2);
+
+        assertPoints(appended, 3);
+        assertPoints(points, 2);
+        assertThat(coords).containsExactly(0, 0, 1, -1);
+    }
+
+    @Test
+    public void appendingToPrefixOfArrayUsesRemainingCapacity() {
+        final PointSequence points = PointSequence.of(new float[] { 0, 0, 1, -1, 2, -2, 99, 99 }, 3);
+
+        final PointSequence appended = points.append(3, -3);
+
+        assertPoints(appended, 4);
+        assertPoints(points, 3);
+    }
+
+    /**
+     * Asserts that the sequence consists of {@code size} points {@code (i, -i)}.
+     */
+    private static void assertPoints(PointSequence points, int size) {
+        assertThat(points.size()).isEqualTo(size);
+        assertPrefix(points, size);
+    }
+
+    private static void assertPrefix(PointSequence points, int count) {
+        for (int i = 0; i < count; i++) {
+            assertThat(points.x(i)).isEqualTo(i);
+            assertThat(points.y(i)).isEqualTo(-i);
+        }
+    }
+}
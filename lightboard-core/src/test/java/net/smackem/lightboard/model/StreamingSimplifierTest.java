@@ -0,0 +1,119 @@
+package net.smackem.lightboard.model;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+public class StreamingSimplifierTest {
+    private static final Rgba COLOR = new Rgba(0, 0, 0, 255);
+    // the simplified points are held as floats
+    private static final double EPSILON = 1e-4;
+
+    @Test
+    public void straightLineIsReducedToItsEnds() {
+        // fewer points than fit into the window of dropped points
+        final double[] coords = new double[100];
+        for (int i = 0; i < coords.length; i += 2) {
+            coords[i] = i * 0.5;
+            coords[i + 1] = i * 0.25;
+        }
+
+        final Figure figure = simplify(coords, 0.5);
+
+        assertThat(figure.points().size()).isEqualTo(2);
+        assertWithinTolerance(coords, figure, 0.5);
+    }
+
+    @Test
+    public void keepsFirstAndLastPoint() {
+        final double[] coords = { 1, 2, 1.1, 2.1, 1.2, 2 };
+
+        final Figure figure = simplify(coords, 0.5);
+
+        assertThat(figure.points().x(0)).isEqualTo(1);
+        assertThat(figure.points().y(0)).isEqualTo(2);
+        assertThat(figure.points().x(figure.points().size() - 1)).isCloseTo(1.2, within(EPSILON));
+    }
+
+    @Test
+    public void randomStrokesStayWithinTolerance() {
+        final Random random = new Random(1);
+        for (int run = 0; run < 100; run++) {
+            final double tolerance = 0.5 + random.nextDouble() * 2;
+            final double step = run % 2 == 0 ? 0.05 : 1;
+            final double[] coords = randomWalk(random, 50 + random.nextInt(2000), step);
+
+            final Figure figure = simplify(coords, tolerance);
+
+            assertWithinTolerance(coords, figure, tolerance);
+        }
+    }
+
+    @Test
+    public void jitterBeyondWindowStaysWithinTolerance() {
+        // many points within the tolerance of each other fill the window of dropped points
+        // before the stroke moves on
+        final Random random = new Random(2);
+        final double[] coords = new double[2000];
+        for (int i = 0; i < coords.length; i += 2) {
+            final double drift = i < 1000 ? 0 : (i - 1000) * 0.02;
+            coords[i] = 10 + drift + random.nextGaussian() * 0.1;
+            coords[i + 1] = 10 + drift * drift * 0.05 + random.nextGaussian() * 0.1;
+        }
+
+        final Figure figure = simplify(coords, 0.5);
+
+        assertThat(figure.points().size()).isLessThan(coords.length / 2);
+        assertWithinTolerance(coords, figure, 0.5);
+    }
+
+    private static Figure simplify(double[] coords, double tolerance) {
+        final int last = coords.length - 2;
+        final StreamingSimplifier simplifier = new StreamingSimplifier(tolerance, coords[0], coords[1]);
+        Figure figure = new Figure(COLOR, 1).withPoint(coords[0], coords[1]);
+        for (int i = 2; i < last; i += 2) {
+            figure = simplifier.add(figure, coords[i], coords[i + 1]);
+        }
+        return simplifier.finish(figure, coords[last], coords[last + 1]);
+    }
+
+    private static double[] randomWalk(Random random, int pointCount, double step) {
+        final double[] coords = new double[pointCount * 2];
+        double x = 0, y = 0;
+        for (int i = 0; i < coords.length; i += 2) {
+            x += random.nextGaussian() * step;
+            y += random.nextGaussian() * step;
+            // the input points of a drawing are floats, too
+            coords[i] = (float) x;
+            coords[i + 1] = (float) y;
+        }
+        return coords;
+    }
+
+    /**
+     * Asserts that each input point lies within the tolerance of the simplified polyline.
+     */
+    private static void assertWithinTolerance(double[] coords, Figure figure, double tolerance) {
+        final PointSequence points = figure.points();
+        for (int i = 0; i < coords.length; i += 2) {
+            double distance = Double.MAX_VALUE;
+            for (int j = 0; j + 1 < points.size(); j++) {
+                distance = Math.min(distance, segmentDistance(coords[i], coords[i + 1],
+                        points.x(j), points.y(j), points.x(j + 1), points.y(j + 1)));
+            }
+            assertThat(distance).as("distance of point %d", i / 2).isLessThanOrEqualTo(tolerance + EPSILON);
+        }
+    }
+
+    private static double segmentDistance(double px, double py, double x0, double y0, double x1, double y1) {
+        final double dx = x1 - x0, dy = y1 - y0;
+        final double lengthSq = dx * dx + dy * dy;
+        final double t = lengthSq > 0
+                ? Math.max(0, Math.min(1, ((px - x0) * dx + (py - y0) * dy) / lengthSq))
+                : 0;
+        return Math.hypot(px - x0 - t * dx, py - y0 - t * dy);
+    }
+}
@@ -16,31 +16,40 @@ import javafx.scene.layout.Pane;
 import javafx.scene.paint.Color;
 import javafx.stage.WindowEvent;
 import net.smackem.lightboard.client.beans.DrawingBean;
+import net.smackem.lightboard.client.beans.DrawingChangeBean;
+import net.smackem.lightboard.client.beans.DrawingDeltaBean;
 import net.smackem.lightboard.client.beans.FigureBean;
 import net.smackem.lightboard.client.beans.PointBean;
 import net.smackem.lightboard.client.beans.RgbaBean;
-import org.locationtech.jts.geom.Coordinate;
-import org.locationtech.jts.geom.Geometry;
-import org.locationtech.jts.geom.GeometryFactory;
+import net.smackem.lightboard.io.BinaryDrawingReader;
+import net.smackem.lightboard.io.BinaryDrawingWriter;
+import net.smackem.lightboard.model.Drawing;
+import net.smackem.lightboard.model.Figure;
+import net.smackem.lightboard.model.PointSequence;
+import net.smackem.lightboard.model.Rgba;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.net.InetSocketAddress;
 import java.net.URI;
 import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
-import java.util.LinkedList;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Objects;
 import java.util.concurrent.CompletableFuture;
-import java.util.stream.Collectors;
 
 public class ClientController {
     private static final Logger log = LoggerFactory.getLogger(ClientController.class);
     private final OSCPortOut outboundPort;
     private final FigureBean currentFigure = new FigureBean(new RgbaBean(255, 255, 255, 255), 2.0);
     private DrawingBean drawing;
+    private String drawingETag;
+    private long syncedDrawingId;
+    private long syncedVersion;
     private DrawTool drawTool = new DefaultDrawTool();
 
     @FXML
@@ -136,26 +145,91 @@ public class ClientController {
 
     private void requestDrawing(String path, String method) {
         final HttpClient http = HttpClient.newHttpClient();
-        final HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:7772" + path))
+        final HttpRequest.Builder builder = HttpRequest.newBuilder(URI.create("http://localhost:7772" + path))
                 .method(method, HttpRequest.BodyPublishers.noBody())
+                .header("Accept", BinaryDrawingWriter.MEDIA_TYPE);
+        if (this.drawingETag != null && Objects.equals(method, "GET")) {
+            builder.header("If-None-Match", this.drawingETag);
+        }
+        final HttpRequest request = builder.build();
+        final CompletableFuture<HttpResponse<byte[]>> cf = http.sendAsync(request, HttpResponse.BodyHandlers.ofByteArray());
+        cf.exceptionally(e -> {
+            log.error("error downloading drawing via http", e);
+            return null;
+        });
+        cf.thenAcceptAsync(response -> {
+            log.info("http response received: {}", response);
+            if (response.statusCode() == 304) {
+                return;
+            }
+            try {
+                this.drawing = toBean(new BinaryDrawingReader().readDrawing(new ByteArrayInputStream(response.body())));
+                this.drawingETag = response.headers().firstValue("ETag").orElse(null);
+                this.syncedDrawingId = 0;
+            } catch (IOException e) {
+                log.error("error downloading drawing via http", e);
+            }
+            render();
+        }, Platform::runLater);
+    }
+
+    private void syncDrawing() {
+        final HttpClient http = HttpClient.newHttpClient();
+        final String query = "?since=" + this.syncedVersion + "&drawing=" + this.syncedDrawingId;
+        final HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:7772/drawing" + query))
+                .GET()
                 .build();
         final CompletableFuture<HttpResponse<String>> cf = http.sendAsync(request, HttpResponse.BodyHandlers.ofString());
         cf.exceptionally(e -> {
-            log.error("error downloading drawing via http", e);
+            log.error("error synchronizing drawing via http", e);
             return null;
         });
         cf.thenAcceptAsync(response -> {
             log.info("http response received: {}", response);
             final ObjectMapper mapper = new ObjectMapper();
             try {
-                this.drawing = mapper.readerFor(DrawingBean.class).readValue(response.body());
+                applyDelta(mapper.readerFor(DrawingDeltaBean.class).readValue(response.body()));
             } catch (IOException e) {
-                log.error("error downloading drawing via http", e);
+                log.error("error synchronizing drawing via http", e);
             }
             render();
         }, Platform::runLater);
     }
 
+    private void applyDelta(DrawingDeltaBean delta) {
+        if (delta.isFull() || this.drawing == null) {
+            this.drawing = new DrawingBean(delta.figures());
+        } else {
+            final List<FigureBean> figures = this.drawing.figures();
+            for (final DrawingChangeBean change : delta.changes()) {
+                switch (change.kind()) {
+                    case "FIGURE_ADDED" -> figures.add(change.index(), change.figure());
+                    case "FIGURE_REMOVED" -> figures.remove(change.index());
+                    case "FIGURE_REPLACED" -> figures.set(change.index(), change.figure());
+                    case "POINT_APPENDED" -> figures.get(change.index()).points().add(new PointBean(change.x(), change.y()));
+                    case "CLEARED" -> figures.clear();
+                    default -> log.warn("unknown drawing change: {}", change.kind());
+                }
+            }
+        }
+        this.syncedDrawingId = delta.drawing();
+        this.syncedVersion = delta.version();
+    }
+
+    private static DrawingBean toBean(Drawing drawing) {
+        final List<FigureBean> figures = new ArrayList<>();
+        for (final Figure figure : drawing.figures()) {
+            final Rgba rgba = figure.color();
+            final FigureBean figureBean = new FigureBean(new RgbaBean(rgba.r(), rgba.g(), rgba.b(), rgba.a()), figure.strokeWidth());
+            final PointSequence points = figure.points();
+            for (int i = 0; i < points.size(); i++) {
+                figureBean.points().add(new PointBean(points.x(i), points.y(i)));
+            }
+            figures.add(figureBean);
+        }
+        return new DrawingBean(figures);
+    }
+
     @FXML
     private void newDrawing(ActionEvent actionEvent) {
         requestDrawing("/drawing/new", "POST");
@@ -210,55 +284,34 @@ public class ClientController {
             } catch (OSCSerializeException | IOException e) {
                 e.printStackTrace();
             }
-            requestDrawing("/drawing", "GET");
+            syncDrawing();
         }
     }
 
     private class EraseDrawTool implements DrawTool {
-        private final GeometryFactory geometryFactory;
-        private final List<Geometry> figureGeometries;
-
-        EraseDrawTool() {
-            this.geometryFactory = new GeometryFactory();
-            this.figureGeometries = drawing.figures().stream()
-                    .map(figure -> figure.points().stream()
-                            .map(pt -> new Coordinate(pt.x(), pt.y()))
-                            .toArray(Coordinate[]::new))
-                    .map(this.geometryFactory::createLineString)
-                    .collect(Collectors.toList());
-        }
+        private static final float ERASE_RADIUS = 5.0f;
 
         @Override
         public void onMousePressed(double x, double y) {
+            erase(x, y);
         }
 
         @Override
         public void onMouseDrag(double x, double y) {
-            final Geometry cursor = this.geometryFactory.createPoint(new Coordinate(x, y));
-            final LinkedList<Integer> figureIndicesToRemove = new LinkedList<>();
-            for (int i = 0; i < this.figureGeometries.size(); i++) {
-                final Geometry geometry = this.figureGeometries.get(i);
-                if (geometry.distance(cursor) < 5.0) {
-                    figureIndicesToRemove.addFirst(i);
-                }
-            }
-            for (final int figureIndex : figureIndicesToRemove) {
-                drawing.figures().remove(figureIndex);
-                this.figureGeometries.remove(figureIndex);
-                try {
-                    outboundPort.send(new OSCMessage("/figure/remove", List.of((float) x, (float) y, figureIndex)));
-                } catch (OSCSerializeException | IOException e) {
-                    e.printStackTrace();
-                }
-            }
-            if (figureIndicesToRemove.isEmpty() == false) {
-                render();
-            }
+            erase(x, y);
         }
 
         @Override
         public void onMouseReleased(double x, double y) {
-            requestDrawing("/drawing", "GET");
+            syncDrawing();
+        }
+
+        private void erase(double x, double y) {
+            try {
+                outboundPort.send(new OSCMessage("/figure/erase", List.of((float) x, (float) y, ERASE_RADIUS)));
+            } catch (OSCSerializeException | IOException e) {
+                e.printStackTrace();
+            }
         }
     }
 }
@@ -4,6 +4,7 @@ import com.fasterxml.jackson.annotation.JsonCreator;
 import com.fasterxml.jackson.annotation.JsonProperty;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 
 public final class DrawingBean {
@@ -13,6 +14,10 @@ public final class DrawingBean {
     private DrawingBean() {
     }
 
+    public DrawingBean(Collection<FigureBean> figures) {
+        this.figures.addAll(figures);
+    }
+
     public List<FigureBean> figures() {
         return this.figures;
     }
@@ -0,0 +1,47 @@
+package net.smackem.lightboard.client.beans;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+public final class DrawingChangeBean {
+    @JsonProperty private final String kind;
+    @JsonProperty private final long sequence;
+    @JsonProperty private final int index;
+    @JsonProperty private final FigureBean figure;
+    @JsonProperty private final double x;
+    @JsonProperty private final double y;
+
+    @JsonCreator
+    private DrawingChangeBean() {
+        this.kind = null;
+        this.sequence = 0;
+        this.index = 0;
+        this.figure = null;
+        this.x = 0;
+        this.y = 0;
+    }
+
+    public String kind() {
+        return this.kind;
+    }
+
+    public long sequence() {
+        return this.sequence;
+    }
+
+    public int index() {
+        return this.index;
+    }
+
+    public FigureBean figure() {
+        return this.figure;
+    }
+
+    public double x() {
+        return this.x;
+    }
+
+    public double y() {
+        return this.y;
+    }
+}
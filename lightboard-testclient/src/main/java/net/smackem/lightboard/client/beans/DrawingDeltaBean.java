@@ -0,0 +1,42 @@
+package net.smackem.lightboard.client.beans;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public final class DrawingDeltaBean {
+    @JsonProperty private final long drawing;
+    @JsonProperty private final long version;
+    @JsonProperty private final boolean full;
+    @JsonProperty private final List<DrawingChangeBean> changes = new ArrayList<>();
+    @JsonProperty private final List<FigureBean> figures = new ArrayList<>();
+
+    @JsonCreator
+    private DrawingDeltaBean() {
+        this.drawing = 0;
+        this.version = 0;
+        this.full = false;
+    }
+
+    public long drawing() {
+        return this.drawing;
+    }
+
+    public long version() {
+        return this.version;
+    }
+
+    public boolean isFull() {
+        return this.full;
+    }
+
+    public List<DrawingChangeBean> changes() {
+        return this.changes;
+    }
+
+    public List<FigureBean> figures() {
+        return this.figures;
+    }
+}